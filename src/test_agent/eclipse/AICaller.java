@@ -13,10 +13,16 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.time.Duration;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -29,7 +35,6 @@ import java.util.regex.Pattern;
  */
 public class AICaller {
     private static final String API_URL = "https://openrouter.ai/api/v1/chat/completions";
-    private static final int DEFAULT_TIMEOUT_SECONDS = 200;
     private int maxRetries = 3;
     private long initialRetryDelayMs = 1000;
     private long maxRetryDelayMs = 10000;
@@ -40,10 +45,13 @@ public class AICaller {
     private final String siteName;
     private final String model;
     private final HttpClient httpClient;
+    private final Executor executor;
+    private volatile RequestRateLimiter rateLimiter;
+    private volatile CancellationToken cancellationToken;
     private final ObjectMapper objectMapper;
 
     /**
-     * Constructs an AICaller configured for a specific model.
+     * Constructs an AICaller configured for a specific model, using the shared client of {@link HttpClientPool}.
      *
      * @param apiKey   The OpenRouter API key.
      * @param siteUrl  The URL of the site making the request (for OpenRouter rankings).
@@ -53,6 +61,19 @@ public class AICaller {
      * @throws IllegalArgumentException if model is empty or blank
      */
     public AICaller(String apiKey, String siteUrl, String siteName, String model) {
+        this(apiKey, siteUrl, siteName, model, HttpClientPool.getDefaultClient());
+    }
+
+    /**
+     * Constructs an AICaller configured for a specific model that sends its requests through the given client.
+     *
+     * @param apiKey     The OpenRouter API key.
+     * @param siteUrl    The URL of the site making the request (for OpenRouter rankings).
+     * @param siteName   The name of the site making the request (for OpenRouter rankings).
+     * @param model      The specific model identifier to use for all calls made by this instance.
+     * @param httpClient The client to use, normally one from {@link HttpClientPool}.
+     */
+    public AICaller(String apiKey, String siteUrl, String siteName, String model, HttpClient httpClient) {
         this.apiKey = apiKey;
         this.siteUrl = siteUrl;
         this.siteName = siteName;
@@ -62,13 +83,38 @@ public class AICaller {
             throw new IllegalArgumentException("Model cannot be empty or blank");
         }
 
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(DEFAULT_TIMEOUT_SECONDS))
-                .build();
+        this.httpClient = Objects.requireNonNull(httpClient, "HttpClient cannot be null");
+        this.executor = httpClient.executor().orElse(ForkJoinPool.commonPool());
         this.objectMapper = new ObjectMapper();
        // logger.info("AICaller initialized for model: " + this.model);
     }
 
+    /**
+     * Limits how often this caller starts requests; share one limiter between callers to apply a common limit.
+     *
+     * @param rateLimiter The limiter, or null for no limit.
+     */
+    public void setRateLimiter(RequestRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Aborts this caller's requests, and its waits for the rate limit or a retry, once the token is cancelled.
+     * The calls then fail with a {@link CancellationException}.
+     *
+     * @param cancellationToken The token, or null.
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * @return the model identifier used for all calls made by this instance.
+     */
+    public String getModel() {
+        return model;
+    }
+
     /**
      * Calls the configured language model with the provided prompt and retrieves the response.
      * If streaming is enabled, this method will use the streaming callback approach
@@ -81,40 +127,153 @@ public class AICaller {
      * @throws InterruptedException If the HTTP request is interrupted.
      */
     public ModelResponse callModel(Map<String, String> prompt, boolean stream) throws IOException, InterruptedException {
-        int attempt = 0;
-        long currentDelay = initialRetryDelayMs;
-        IOException lastException = null;
+        CompletableFuture<ModelResponse> future = callModelAsync(prompt, stream);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CancellationException) {
+                throw (CancellationException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Error calling model " + model + ": " + cause.getMessage(), cause);
+        }
+    }
 
-        while (attempt <= maxRetries) {
-            try {
-                // Original call implementation
-                if (stream) {
-                    StringBuffer responseBuffer = new StringBuffer();
-                    Consumer<String> chunkConsumer = chunk -> {
-                        responseBuffer.append(chunk);
-                        System.out.print(chunk);
-                        System.out.flush();
-                    };
-
-                    CompletableFuture<ModelResponse> future = callModelWithStreamingCallback(prompt, chunkConsumer);
-                    return future.join();
-                } else {
-                    return handleNonStreamingResponse(createRequest(prompt, false), this.model);
-                }
-            } catch (IOException e) {
-                lastException = e;
-                if (attempt++ < maxRetries && isRetryable(e)) {
-                    logger.warning(String.format("Attempt %d/%d failed. Retrying in %dms... (%s)",
-                            attempt, maxRetries, currentDelay, e.getMessage()));
-                    Thread.sleep(currentDelay);
-                    currentDelay = Math.min(currentDelay * 2, maxRetryDelayMs);
-                } else {
-                    break;
-                }
+    /**
+     * Calls the configured language model without blocking the caller. Failed attempts are retried with
+     * exponential backoff on the client's executor. Streamed chunks are printed as they arrive.
+     *
+     * Cancelling the returned future aborts the HTTP request in flight and any pending retry, so a caller
+     * dropping an answer it no longer needs stops paying for it.
+     *
+     * @param prompt A map containing "system" and "user" messages.
+     * @param stream Whether to stream the response or not.
+     * @return A CompletableFuture completing with the ModelResponse, or exceptionally with an IOException
+     *         once the retries are exhausted.
+     */
+    public CompletableFuture<ModelResponse> callModelAsync(Map<String, String> prompt, boolean stream) {
+        return withCallToken(token -> attemptAsync(prompt, stream, 0, initialRetryDelayMs, token));
+    }
+
+    /**
+     * Starts a call under its own token, which is cancelled with this caller's cancellation token and when the
+     * returned future is cancelled. Cancelling a future derived from the call would not reach the HTTP request.
+     */
+    private CompletableFuture<ModelResponse> withCallToken(
+            Function<CancellationToken, CompletableFuture<ModelResponse>> start) {
+        CancellationToken callToken = new CancellationToken();
+        CancellationToken runToken = cancellationToken;
+        CancellationToken.Registration runRegistration = runToken != null ? runToken.onCancel(callToken::cancel) : null;
+        CompletableFuture<ModelResponse> call = start.apply(callToken);
+        call.whenComplete((response, error) -> {
+            if (runRegistration != null) {
+                runRegistration.close();
+            }
+            if (call.isCancelled()) {
+                callToken.cancel();
             }
+        });
+        return call;
+    }
+
+    private CompletableFuture<ModelResponse> attemptAsync(Map<String, String> prompt, boolean stream,
+                                                          int attempt, long delay, CancellationToken token) {
+        if (token.isCancelled()) {
+            return CompletableFuture.failedFuture(new CancellationException("Model call cancelled"));
+        }
+        CompletableFuture<ModelResponse> call;
+        RequestRateLimiter limiter = rateLimiter;
+        long wait = limiter != null ? limiter.reserve() : 0;
+        if (wait > 0) {
+            call = delay(wait, token)
+                    .whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            // Cancelled while waiting: the reserved start is free again.
+                            limiter.release();
+                        }
+                    })
+                    .thenCompose(ignored -> send(prompt, stream, token));
+        } else {
+            call = send(prompt, stream, token);
         }
-        throw new IOException("Failed after " + maxRetries + " retries", lastException);
+
+        return call.handle((response, error) -> {
+            if (error == null) {
+                return CompletableFuture.completedFuture(response);
+            }
+            if (token.isCancelled()) {
+                return CompletableFuture.<ModelResponse>failedFuture(new CancellationException("Model call cancelled"));
+            }
+            IOException cause = findIOException(error);
+            if (cause != null && attempt < maxRetries && isRetryable(cause)) {
+                logger.warning(String.format("Attempt %d/%d failed. Retrying in %dms... (%s)",
+                        attempt + 1, maxRetries, delay, cause.getMessage()));
+                return delay(delay, token)
+                        .thenCompose(ignored -> attemptAsync(prompt, stream, attempt + 1,
+                                Math.min(delay * 2, maxRetryDelayMs), token));
+            }
+            return CompletableFuture.<ModelResponse>failedFuture(
+                    new IOException("Failed after " + attempt + " retries", cause != null ? cause : error));
+        }).thenCompose(Function.identity());
     }
+
+    private CompletableFuture<ModelResponse> send(Map<String, String> prompt, boolean stream, CancellationToken token) {
+        if (stream) {
+            return callModelWithStreamingCallback(prompt, chunk -> {
+                System.out.print(chunk);
+                System.out.flush();
+            }, token);
+        } else {
+            return abortOnCancel(httpClient.sendAsync(createRequest(prompt, false), HttpResponse.BodyHandlers.ofString()),
+                    token)
+                    .thenApply(response -> {
+                        try {
+                            return handleNonStreamingResponse(response, this.model);
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Returns a future completing after the given time, or with a CancellationException as soon as the
+     * call's token is cancelled.
+     */
+    private CompletableFuture<Void> delay(long millis, CancellationToken token) {
+        CompletableFuture<Void> delayed = CompletableFuture.runAsync(() -> { },
+                CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS, executor));
+        return abortOnCancel(delayed, token);
+    }
+
+    /**
+     * Cancels a pending future when the call's token is cancelled; for a future of
+     * {@link HttpClient#sendAsync} this aborts the HTTP exchange.
+     */
+    private <T> CompletableFuture<T> abortOnCancel(CompletableFuture<T> future, CancellationToken token) {
+        CancellationToken.Registration registration = token.onCancel(() -> future.cancel(true));
+        future.whenComplete((ignored, error) -> registration.close());
+        return future;
+    }
+
+    /**
+     * Finds the IOException behind a failed call, looking through CompletionException and RuntimeException wrappers.
+     */
+    private static IOException findIOException(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof IOException) {
+                return (IOException) t;
+            }
+        }
+        return null;
+    }
+
     /**
      * Determines if an exception is retryable based on error type and status code.
      */
@@ -187,17 +346,12 @@ public class AICaller {
 
     /**
      * Handles a non-streaming response from the OpenRouter API.
-     * @param request The HTTP request to send.
+     * @param response The HTTP response.
      * @param expectedModel The model name expected (used for logging comparison).
      * @return A ModelResponse containing the response text and token counts.
-     * @throws IOException If there's an error with the HTTP request or response.
-     * @throws InterruptedException If the HTTP request is interrupted.
+     * @throws IOException If the request failed or the response cannot be parsed.
      */
-    private ModelResponse handleNonStreamingResponse(HttpRequest request, String expectedModel) throws IOException, InterruptedException {
-        HttpResponse<String> response = httpClient.send(
-                request, HttpResponse.BodyHandlers.ofString()
-        );
-
+    private ModelResponse handleNonStreamingResponse(HttpResponse<String> response, String expectedModel) throws IOException {
         if (response.statusCode() != 200) {
             String errorMsg = String.format("API request failed for model %s with status code %d: %s",
                     expectedModel, response.statusCode(), response.body());
@@ -236,10 +390,16 @@ public class AICaller {
      */
     public CompletableFuture<ModelResponse> callModelWithStreamingCallback(
             Map<String, String> prompt, Consumer<String> chunkConsumer) {
+        return withCallToken(token -> callModelWithStreamingCallback(prompt, chunkConsumer, token));
+    }
+
+    private CompletableFuture<ModelResponse> callModelWithStreamingCallback(
+            Map<String, String> prompt, Consumer<String> chunkConsumer, CancellationToken token) {
 
         //logger.info("Calling configured model with streaming callback: " + this.model);
         String instanceModel = this.model;
 
+        // Streaming reads block, so they run on the client's executor rather than the common pool.
         return CompletableFuture.supplyAsync(() -> {
             try {
                 HttpRequest request = createRequest(prompt, true);
@@ -248,15 +408,17 @@ public class AICaller {
                 String[] modelUsed = new String[1];
                 modelUsed[0] = instanceModel;
 
-                HttpResponse<java.io.InputStream> response = httpClient.send(
+                HttpResponse<java.io.InputStream> response = abortOnCancel(httpClient.sendAsync(
                         request, HttpResponse.BodyHandlers.ofInputStream()
-                );
+                ), token).get();
 
                 if (response.statusCode() != 200) {
                     throw new IOException(String.format("API streaming callback request failed for model %s with status code %d",
                             instanceModel, response.statusCode()));
                 }
 
+                // Closing the body stops the blocking read below.
+                CancellationToken.Registration closeBody = token.onCancel(() -> closeQuietly(response.body()));
                 try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body()))) {
                     String line;
                     while ((line = reader.readLine()) != null) {
@@ -301,6 +463,8 @@ public class AICaller {
                             }
                         }
                     }
+                } finally {
+                    closeBody.close();
                 }
 
               
@@ -308,9 +472,20 @@ public class AICaller {
                 return new ModelResponse(contentBuilder.toString(), tokenCounts[0], tokenCounts[1]);
 
             } catch (Exception e) {
+                if (token.isCancelled()) {
+                    throw new CancellationException("Model call cancelled");
+                }
                 logger.severe("Error calling model " + instanceModel + " with streaming callback: " + e.getMessage());
                 throw new RuntimeException("Error calling model with streaming callback", e);
             }
-        });
+        }, executor);
+    }
+
+    private static void closeQuietly(java.io.InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            // The call is being cancelled anyway.
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,150 @@
+package test_agent.eclipse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import test_agent.results.AnalysisResult;
+import test_agent.results.CommandAdaptationResult;
+import test_agent.results.TestGenerationResult;
+
+/**
+ * Non-blocking counterpart of {@link AgentCompletion}. Each operation returns at once with a future of its
+ * result, so failure analysis, the next generation request and test runs can overlap. Futures complete
+ * normally; model errors are reported in the result text as with the blocking interface. Cancelling a returned
+ * future aborts the model call behind it where the implementation can, e.g. a generation requested ahead that is
+ * no longer needed.
+ */
+public interface AsyncAgentCompletion {
+
+    CompletableFuture<TestGenerationResult> generateTestsAsync(
+            String sourceFileName,
+            int maxTests,
+            String sourceFileNumbered,
+            String codeCoverageReport,
+            String language,
+            String testFile,
+            String testFileName,
+            String testingFramework,
+            String additionalInstructionsText,
+            String additionalIncludesSection,
+            String failedTestsSection
+    );
+
+    CompletableFuture<AnalysisResult> analyzeTestFailureAsync(
+            String sourceFileName,
+            String sourceFile,
+            String processedTestFile,
+            String stdout,
+            String stderr,
+            String testFileName
+    );
+
+    CompletableFuture<AnalysisResult> analyzeTestInsertLineAsync(
+            String language,
+            String testFileNumbered,
+            String testFileName
+    );
+
+    CompletableFuture<AnalysisResult> analyzeTestAgainstContextAsync(
+            String language,
+            String testFileContent,
+            String testFileNameRel,
+            String contextFilesNamesRel
+    );
+
+    CompletableFuture<CommandAdaptationResult> adaptTestCommandForSingleTestAsync(
+            String testFileRelativePath,
+            String testCommand,
+            String projectRootDir
+    );
+
+    /**
+     * Makes cancelling a future derived from a call cancel the call too. {@link CompletableFuture} does not pass
+     * cancellation back to the stage a future was derived from, so the call would otherwise keep running.
+     *
+     * @param derived The future handed to the caller.
+     * @param call    The future of the call it was derived from.
+     * @return The derived future.
+     */
+    static <T> CompletableFuture<T> cancelling(CompletableFuture<T> derived, CompletableFuture<?> call) {
+        derived.whenComplete((result, error) -> {
+            if (derived.isCancelled()) {
+                call.cancel(true);
+            }
+        });
+        return derived;
+    }
+
+    /**
+     * Returns an asynchronous view of the given completion. Implementations that are already asynchronous are
+     * returned as they are; others run their blocking calls on a shared pool of daemon threads.
+     *
+     * @param completion The completion to adapt.
+     * @return The asynchronous completion.
+     */
+    static AsyncAgentCompletion of(AgentCompletion completion) {
+        if (completion instanceof AsyncAgentCompletion) {
+            return (AsyncAgentCompletion) completion;
+        }
+        return new BlockingAdapter(completion, BlockingAdapter.EXECUTOR);
+    }
+
+    /**
+     * Runs the operations of a blocking {@link AgentCompletion} on an executor.
+     */
+    class BlockingAdapter implements AsyncAgentCompletion {
+        static final Executor EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "coveragent-completion");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private final AgentCompletion delegate;
+        private final Executor executor;
+
+        BlockingAdapter(AgentCompletion delegate, Executor executor) {
+            this.delegate = delegate;
+            this.executor = executor;
+        }
+
+        @Override
+        public CompletableFuture<TestGenerationResult> generateTestsAsync(
+                String sourceFileName, int maxTests, String sourceFileNumbered, String codeCoverageReport,
+                String language, String testFile, String testFileName, String testingFramework,
+                String additionalInstructionsText, String additionalIncludesSection, String failedTestsSection) {
+            return CompletableFuture.supplyAsync(() -> delegate.generateTests(sourceFileName, maxTests,
+                    sourceFileNumbered, codeCoverageReport, language, testFile, testFileName, testingFramework,
+                    additionalInstructionsText, additionalIncludesSection, failedTestsSection), executor);
+        }
+
+        @Override
+        public CompletableFuture<AnalysisResult> analyzeTestFailureAsync(
+                String sourceFileName, String sourceFile, String processedTestFile,
+                String stdout, String stderr, String testFileName) {
+            return CompletableFuture.supplyAsync(() -> delegate.analyzeTestFailure(sourceFileName, sourceFile,
+                    processedTestFile, stdout, stderr, testFileName), executor);
+        }
+
+        @Override
+        public CompletableFuture<AnalysisResult> analyzeTestInsertLineAsync(
+                String language, String testFileNumbered, String testFileName) {
+            return CompletableFuture.supplyAsync(() -> delegate.analyzeTestInsertLine(language, testFileNumbered,
+                    testFileName), executor);
+        }
+
+        @Override
+        public CompletableFuture<AnalysisResult> analyzeTestAgainstContextAsync(
+                String language, String testFileContent, String testFileNameRel, String contextFilesNamesRel) {
+            return CompletableFuture.supplyAsync(() -> delegate.analyzeTestAgainstContext(language, testFileContent,
+                    testFileNameRel, contextFilesNamesRel), executor);
+        }
+
+        @Override
+        public CompletableFuture<CommandAdaptationResult> adaptTestCommandForSingleTestAsync(
+                String testFileRelativePath, String testCommand, String projectRootDir) {
+            return CompletableFuture.supplyAsync(() -> delegate.adaptTestCommandForSingleTest(testFileRelativePath,
+                    testCommand, projectRootDir), executor);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package test_agent.eclipse;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Shows the progress of a running build in a progress monitor. It recognizes the Maven reactor module and
+ * plugin goal, the test class Surefire is running and its "Tests run:" summaries, and Gradle tasks, and sets
+ * them as the sub-task, e.g. {@code core: surefire:test, running com.example.FooTest (42 tests run, 1 failed)}.
+ * These lines and build errors are also printed to the console as they arrive, so a slow or hung build
+ * shows where it is.
+ */
+public class BuildProgressListener implements Runner.OutputListener {
+
+    // [INFO] Building core 1.0-SNAPSHOT                                     [2/5]
+    private static final Pattern MAVEN_MODULE = Pattern.compile("^\\[INFO\\] Building ([^\\s:]+)(?: \\S+)?(?:\\s+\\[(\\d+/\\d+)\\])?\\s*$");
+    // [INFO] --- maven-surefire-plugin:3.0.0:test (default-test) @ core ---
+    private static final Pattern MAVEN_GOAL = Pattern.compile("^\\[INFO\\] --- (?:maven-)?([\\w.-]+?)(?:-plugin)?:[^:\\s]+:(\\S+).*? @ (\\S+) ---");
+    // [INFO] Running com.example.FooTest
+    private static final Pattern SUREFIRE_RUNNING = Pattern.compile("^(?:\\[INFO\\] )?Running (\\S+)\\s*$");
+    // [INFO] Tests run: 5, Failures: 0, Errors: 0, Skipped: 0, Time elapsed: 0.1 s - in com.example.FooTest
+    private static final Pattern SUREFIRE_TESTS_RUN = Pattern.compile(
+            "Tests run: (\\d+), Failures: (\\d+), Errors: (\\d+), Skipped: \\d+.*? (?:-|<<<.*?) in (\\S+)");
+    // > Task :core:test
+    private static final Pattern GRADLE_TASK = Pattern.compile("^> Task (\\S+)");
+    private static final Pattern BUILD_RESULT = Pattern.compile("^(?:\\[INFO\\] |\\[ERROR\\] )?(BUILD \\w+)");
+
+    private final IProgressMonitor monitor;
+    private String module;
+    private String goal;
+    private String testClass;
+    private int testsRun;
+    private int testsFailed;
+
+    /**
+     * @param monitor The monitor whose sub-task shows the build's progress.
+     */
+    public BuildProgressListener(IProgressMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    @Override
+    public synchronized void commandStarted(String command) {
+        module = null;
+        goal = null;
+        testClass = null;
+        testsRun = 0;
+        testsFailed = 0;
+        monitor.subTask("Running " + command);
+    }
+
+    @Override
+    public synchronized void outputLine(String line, boolean error) {
+        Matcher matcher;
+        if ((matcher = SUREFIRE_TESTS_RUN.matcher(line)).find()) {
+            testsRun += Integer.parseInt(matcher.group(1));
+            testsFailed += Integer.parseInt(matcher.group(2)) + Integer.parseInt(matcher.group(3));
+            testClass = null;
+        } else if ((matcher = SUREFIRE_RUNNING.matcher(line)).find()) {
+            testClass = matcher.group(1);
+        } else if ((matcher = MAVEN_GOAL.matcher(line)).find()) {
+            goal = matcher.group(1) + ":" + matcher.group(2);
+            module = matcher.group(3);
+            testClass = null;
+        } else if ((matcher = MAVEN_MODULE.matcher(line)).find()) {
+            module = matcher.group(2) != null ? matcher.group(1) + " [" + matcher.group(2) + "]" : matcher.group(1);
+            goal = null;
+            testClass = null;
+        } else if ((matcher = GRADLE_TASK.matcher(line)).find()) {
+            goal = matcher.group(1);
+            testClass = null;
+        } else {
+            if (line.startsWith("[ERROR]") || BUILD_RESULT.matcher(line).find()) {
+                System.out.println(line);
+            }
+            return;
+        }
+        System.out.println(line);
+        monitor.subTask(describe());
+    }
+
+    private String describe() {
+        StringBuilder text = new StringBuilder();
+        if (module != null) {
+            text.append(module);
+        }
+        if (goal != null) {
+            text.append(text.length() > 0 ? ": " : "").append(goal);
+        }
+        if (testClass != null) {
+            text.append(text.length() > 0 ? ", " : "").append("running ").append(testClass);
+        }
+        if (testsRun > 0) {
+            text.append(" (").append(testsRun).append(" tests run");
+            if (testsFailed > 0) {
+                text.append(", ").append(testsFailed).append(" failed");
+            }
+            text.append(')');
+        }
+        return text.toString();
+    }
+}
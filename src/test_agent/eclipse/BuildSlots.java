@@ -0,0 +1,74 @@
+package test_agent.eclipse;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the number of builds running at once when several {@link CoverAgent}s work on the same project.
+ * Validating a candidate takes one slot; a full coverage run takes all of them, because it rebuilds the
+ * project and rewrites the shared coverage report.
+ */
+public class BuildSlots {
+
+    // How often a waiting agent checks whether it was cancelled.
+    private static final long CANCEL_POLL_MILLIS = 100;
+
+    private final int slots;
+    private final Semaphore semaphore;
+
+    /**
+     * @param slots The number of builds allowed to run at the same time.
+     */
+    public BuildSlots(int slots) {
+        this.slots = Math.max(1, slots);
+        this.semaphore = new Semaphore(this.slots, true);
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    /**
+     * Runs an action while holding one build slot.
+     */
+    public <T> T shared(Callable<T> action) throws Exception {
+        return runWith(1, action, null);
+    }
+
+    /**
+     * Runs an action while holding one build slot, waiting for it only until the token is cancelled.
+     */
+    public <T> T shared(Callable<T> action, CancellationToken cancellationToken) throws Exception {
+        return runWith(1, action, cancellationToken);
+    }
+
+    /**
+     * Runs an action while holding every build slot.
+     */
+    public <T> T exclusive(Callable<T> action) throws Exception {
+        return runWith(slots, action, null);
+    }
+
+    /**
+     * Runs an action while holding every build slot, waiting for them only until the token is cancelled.
+     */
+    public <T> T exclusive(Callable<T> action, CancellationToken cancellationToken) throws Exception {
+        return runWith(slots, action, cancellationToken);
+    }
+
+    private <T> T runWith(int permits, Callable<T> action, CancellationToken cancellationToken) throws Exception {
+        if (cancellationToken == null) {
+            semaphore.acquire(permits);
+        } else {
+            while (!semaphore.tryAcquire(permits, CANCEL_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                cancellationToken.throwIfCancelled();
+            }
+        }
+        try {
+            return action.call();
+        } finally {
+            semaphore.release(permits);
+        }
+    }
+}
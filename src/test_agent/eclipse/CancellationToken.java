@@ -0,0 +1,97 @@
+package test_agent.eclipse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.logging.Logger;
+
+/**
+ * Signals that a run was cancelled, e.g. from the Eclipse progress view. Long operations check it between
+ * steps and register actions that abort their work at once: {@link Runner} destroys the command's process
+ * tree, {@link TestWorkerPool} destroys the worker JVM running a test, {@link AICaller} aborts its HTTP request
+ * and {@link BuildSlots} stops waiting for a slot.
+ * Cancelled operations throw {@link CancellationException}, so {@code finally} blocks restore the test file
+ * and release slots on the way out.
+ */
+public class CancellationToken {
+
+    private static final Logger logger = Logger.getLogger(CancellationToken.class.getName());
+
+    private final List<Runnable> actions = new ArrayList<>();
+    private volatile boolean cancelled;
+
+    /**
+     * An action registered with {@link #onCancel}; closing it unregisters the action.
+     */
+    public final class Registration implements AutoCloseable {
+        private final Runnable action;
+
+        private Registration(Runnable action) {
+            this.action = action;
+        }
+
+        @Override
+        public void close() {
+            synchronized (actions) {
+                actions.remove(action);
+            }
+        }
+    }
+
+    /**
+     * Cancels the run and runs every registered action once.
+     */
+    public void cancel() {
+        List<Runnable> toRun;
+        synchronized (actions) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            toRun = new ArrayList<>(actions);
+            actions.clear();
+        }
+        for (Runnable action : toRun) {
+            run(action);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @throws CancellationException If the run was cancelled.
+     */
+    public void throwIfCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Cancelled");
+        }
+    }
+
+    /**
+     * Registers an action that aborts an operation in progress. If the run is already cancelled, the action
+     * runs at once.
+     *
+     * @param action The action, run on the thread calling {@link #cancel()}.
+     * @return The registration; close it when the operation is over.
+     */
+    public Registration onCancel(Runnable action) {
+        synchronized (actions) {
+            if (!cancelled) {
+                actions.add(action);
+                return new Registration(action);
+            }
+        }
+        run(action);
+        return new Registration(action);
+    }
+
+    private static void run(Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            logger.warning("Error cancelling an operation: " + e.getMessage());
+        }
+    }
+}
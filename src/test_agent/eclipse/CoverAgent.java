@@ -8,11 +8,18 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 
 /**
@@ -26,6 +33,11 @@ public class CoverAgent {
     private final UnitTestGenerator testGen;
     private final UnitTestValidator testValidator;
     private final AgentCompletion agentCompletion;
+    private BuildSlots buildSlots;
+    private List<String> projectClasspath;
+    // The model client, if this agent created it.
+    private AICaller aiCaller;
+    private CancellationToken cancellationToken;
 
     /**
      * Initialize the CoverAgent class with the provided arguments and run the test generation process.
@@ -54,15 +66,19 @@ public class CoverAgent {
             }
 
 
-            AICaller aiCaller = new AICaller(
+            this.aiCaller = new AICaller(
                     args.getApiKey(),
                     args.getSiteUrl(),
                     args.getSiteName(),
                     modelToUse
             );
+            ResponseCache responseCache = args.getResponseCacheDir() != null
+                    ? new ResponseCache(args.getResponseCacheDir())
+                    : null;
             this.agentCompletion = new DefaultAgentCompletion(
                     aiCaller,
-                    ConfigManager.getInstance().getConfig()
+                    ConfigManager.getInstance().getConfig(),
+                    responseCache
             );
         }
 
@@ -75,19 +91,24 @@ public class CoverAgent {
                     .toString();
 
 
-            // logger.info("Attempting AI-based command adaptation : " + testCommand);
-            CommandAdaptationResult adaptationResult = this.agentCompletion.adaptTestCommandForSingleTest(
-                    testFileRelativePath,
-                    testCommand,
-                    args.getTestCommandDir()
-            );
-
-            if (adaptationResult != null && adaptationResult.getResponse() != null &&
-                    !adaptationResult.getResponse().startsWith("Error:") && !adaptationResult.getResponse().isBlank()) {
-                newCommandLine = adaptationResult.getResponse();
-                //  logger.info("AI successfully adapted command.");
+            String testClassName = TestCommandAdapter.testClassNameOf(args.getTestFileOutputPath());
+            newCommandLine = TestCommandAdapter.adaptForTestClass(testCommand, testClassName);
+            if (newCommandLine != null) {
+                System.out.println("Adapted test command to run a single test class: \"" + newCommandLine + "\"");
             } else {
-                logger.warning("AI failed to adapt test command or returned an error/empty string. Response: " + (adaptationResult != null ? adaptationResult.getResponse() : "null"));
+                // Unrecognised build tool: let the model rewrite the command.
+                CommandAdaptationResult adaptationResult = this.agentCompletion.adaptTestCommandForSingleTest(
+                        testFileRelativePath,
+                        testCommand,
+                        args.getTestCommandDir()
+                );
+
+                if (adaptationResult != null && adaptationResult.getResponse() != null &&
+                        !adaptationResult.getResponse().startsWith("Error:") && !adaptationResult.getResponse().isBlank()) {
+                    newCommandLine = adaptationResult.getResponse();
+                } else {
+                    logger.warning("AI failed to adapt test command or returned an error/empty string. Response: " + (adaptationResult != null ? adaptationResult.getResponse() : "null"));
+                }
             }
 
 
@@ -105,6 +126,7 @@ public class CoverAgent {
                 args.getAdditionalInstructions(),
                 args.getProjectRoot()
         );
+        this.testGen.setPromptCompaction(args.isPromptCompaction());
 
         this.testValidator = new UnitTestValidator(
                 args.getTestFileOutputPath(),
@@ -115,8 +137,15 @@ public class CoverAgent {
                 args.getDesiredCoverage(),
                 args.getProjectRoot(),
                 this.agentCompletion,
-                args.getRunTestsMultipleTimes()
+                args.getRunTestsMultipleTimes(),
+                args.getClassFilesDir()
         );
+        this.testValidator.setRunEachTestMethodSeparately(args.isRunEachTestSeparately());
+        this.testValidator.setCoverageMetric(CoverageProcessor.Metric.fromName(args.getCoverageMetric()));
+        this.testValidator.setCoverageTimeoutSeconds(args.getCoverageTimeoutSeconds());
+        this.testValidator.setTestTimeoutSeconds(args.getTestTimeoutSeconds());
+        this.testValidator.setTestResourceLimits(
+                new Runner.ResourceLimits(args.getTestCpuSeconds(), args.getTestMemoryMegabytes()));
 
     }
 
@@ -231,8 +260,16 @@ public class CoverAgent {
     public InitResult init() throws Exception {
         System.out.println("Starting initial test suite analysis...");
         testValidator.initialTestSuiteAnalysis();
-        System.out.println("Running initial coverage analysis...");
-        testValidator.runCoverage();
+        if (args.getCoverageRunStartTime() > 0) {
+            System.out.println("Using the coverage report of the shared coverage run...");
+            testValidator.loadCoverageReport(args.getCoverageRunStartTime());
+        } else {
+            System.out.println("Running initial coverage analysis...");
+            withBuildSlots(true, () -> {
+                testValidator.runCoverage();
+                return null;
+            });
+        }
         System.out.println("Initial analysis complete.");
 
 
@@ -287,92 +324,322 @@ public class CoverAgent {
     ) {
         int iterationCount = 0;
         boolean targetReached = false;
+        // In pipelined mode, the next batch, requested while the coverage run of an iteration builds.
+        CompletableFuture<Map<String, Object>> nextBatch = null;
+        // The coverage report and failed runs count the current batch was generated from.
+        String batchCoverageReport = null;
+        int batchFailedRuns = 0;
 
         System.out.println("Starting test generation loop. Max iterations: " + args.getMaxIterations() +
-                ", Desired coverage: " + args.getDesiredCoverage() + "%");
+                ", Desired " + metricName() + " coverage: " + args.getDesiredCoverage() + "%");
 
 
-        while (iterationCount < args.getMaxIterations()) {
-        	System.out.println("--- Iteration " + (iterationCount + 1) + "/" + args.getMaxIterations() + " ---");
-            logCoverage();
+        try {
+            while (iterationCount < args.getMaxIterations()) {
+                checkCancelled();
+            	System.out.println("--- Iteration " + (iterationCount + 1) + "/" + args.getMaxIterations() + " ---");
+                logCoverage();
 
-            System.out.println("Generating new tests...");
-            Map<String, Object> generatedTestsDict = testGen.generateTests(
-                    failedTestRuns,
-                    language,
-                    testFramework,
-                    coverageReport
-            );
+                Map<String, Object> generatedTestsDict;
+                boolean speculative = nextBatch != null;
+                if (speculative) {
+                    System.out.println("Collecting tests generated during the previous coverage run...");
+                    generatedTestsDict = nextBatch.join();
+                    nextBatch = null;
+                } else {
+                    System.out.println("Generating new tests...");
+                    batchCoverageReport = coverageReport;
+                    batchFailedRuns = failedTestRuns != null ? failedTestRuns.size() : 0;
+                    generatedTestsDict = testGen.generateTests(
+                            failedTestRuns,
+                            language,
+                            testFramework,
+                            coverageReport,
+                            testValidator.getCurrentCoverageData()
+                    );
+                }
 
-            List<GeneratedTest> newTests = null;
-            if (generatedTestsDict != null && generatedTestsDict.containsKey("new_tests")) {
-                try {
+                List<GeneratedTest> newTests = null;
+                if (generatedTestsDict != null && generatedTestsDict.containsKey("new_tests")) {
+                    try {
 
-                    newTests = (List<GeneratedTest>) generatedTestsDict.get("new_tests");
-                } catch (ClassCastException e) {
-                    logger.severe("Unexpected type for 'new_tests' in generation result: " + e.getMessage());
-                    newTests = null;
+                        newTests = (List<GeneratedTest>) generatedTestsDict.get("new_tests");
+                    } catch (ClassCastException e) {
+                        logger.severe("Unexpected type for 'new_tests' in generation result: " + e.getMessage());
+                        newTests = null;
+                    }
+                }
+                checkCancelled();
+                if (speculative && newTests != null) {
+                    newTests = reconcileSpeculativeTests(newTests);
                 }
-            }
 
 
-            if (newTests == null || newTests.isEmpty()) {
-                logger.warning("No new tests were generated in this iteration.");
+                if (newTests == null || newTests.isEmpty()) {
+                    logger.warning("No new tests were generated in this iteration.");
 
-            } else {
-            	System.out.println("Generated " + newTests.size() + " new test(s). Validating...");
-                for (GeneratedTest generatedTest : newTests) {
-                    if (generatedTest == null || generatedTest.getTestCode() == null || generatedTest.getTestCode().isBlank()) {
-                        logger.warning("Skipping validation for an empty or null generated test.");
-                        continue;
-                    }
-                    logger.fine("AI-Generated Test:\n" + generatedTest.getTestCode());
-                    try {
-                        testValidator.validateTest(generatedTest);
-                    } catch (Exception e) {
-                        logger.log(Level.SEVERE, "Failed to validate generated test: " + e.getMessage(), e);
+                } else {
+                    validateGeneratedTests(newTests);
+                }
+
+                if (args.isPipelinedGeneration() && iterationCount + 1 < args.getMaxIterations()
+                        && testValidator.getCurrentCoverage() * 100.0 < testValidator.getDesiredCoverage()) {
+                    // Ask for the next batch now, from the coverage after this validation, so the model works
+                    // while the coverage run builds. Until validation has changed the coverage or recorded
+                    // failures, the prompt would be the current batch's again.
+                    String nextCoverageReport = testValidator.getCurrentCoverageReport();
+                    List<Map<String, Object>> nextFailedTestRuns = testValidator.getFailedTestRuns();
+                    if (!nextCoverageReport.equals(batchCoverageReport)
+                            || nextFailedTestRuns.size() != batchFailedRuns) {
+                        batchCoverageReport = nextCoverageReport;
+                        batchFailedRuns = nextFailedTestRuns.size();
+                        nextBatch = testGen.generateTestsAsync(nextFailedTestRuns, language, testFramework,
+                                nextCoverageReport, testValidator.getCurrentCoverageData());
                     }
                 }
-                System.out.println("Finished validating generated tests for this iteration.");
-            }
 
 
-            iterationCount++;
+                iterationCount++;
 
-            try {
-            	System.out.println("Re-running coverage analysis after iteration " + iterationCount + "...");
-                testValidator.runCoverage();
-                System.out.println("Coverage analysis complete.");
+                checkCancelled();
+                try {
+                	System.out.println("Re-running coverage analysis after iteration " + iterationCount + "...");
+                    withBuildSlots(true, () -> {
+                        testValidator.runCoverage();
+                        return null;
+                    });
+                    System.out.println("Coverage analysis complete.");
 
 
-                failedTestRuns = testValidator.getFailedTestRuns();
-                language = testValidator.getLanguage();
-                testFramework = testValidator.getTestingFramework();
-                coverageReport = testValidator.getCodeCoverageReport();
+                    failedTestRuns = testValidator.getFailedTestRuns();
+                    language = testValidator.getLanguage();
+                    testFramework = testValidator.getTestingFramework();
+                    coverageReport = testValidator.getCodeCoverageReport();
 
 
-                double currentCoveragePercent = testValidator.getCurrentCoverage() * 100.0;
-                double desiredCoveragePercent = (double) testValidator.getDesiredCoverage();
+                    double currentCoveragePercent = testValidator.getCurrentCoverage() * 100.0;
+                    double desiredCoveragePercent = (double) testValidator.getDesiredCoverage();
 
 
-                if (currentCoveragePercent >= desiredCoveragePercent) {
-                	System.out.println("Target coverage reached or exceeded.");
-                    targetReached = true;
-                    break;
-                } else {
-                	System.out.println(String.format("Coverage %.2f%% is still below target %.2f%%.",
-                            currentCoveragePercent, desiredCoveragePercent));
+                    if (currentCoveragePercent >= desiredCoveragePercent) {
+                    	System.out.println("Target coverage reached or exceeded.");
+                        targetReached = true;
+                        break;
+                    } else {
+                    	System.out.println(String.format("%s coverage %.2f%% is still below target %.2f%%.",
+                                testValidator.getCoverageMetric().getDisplayName(), currentCoveragePercent,
+                                desiredCoveragePercent));
+                    }
+                } catch (CancellationException e) {
+                    throw e;
+                } catch (Exception e) {
+                    logger.log(Level.SEVERE, "Error running or checking coverage after iteration: " + e.getMessage(), e);
                 }
-            } catch (Exception e) {
-                logger.log(Level.SEVERE, "Error running or checking coverage after iteration: " + e.getMessage(), e);
+            }
+        } finally {
+            if (nextBatch != null) {
+                System.out.println("Discarding tests generated ahead of a finished run.");
+                // Aborts the model request behind the batch, see UnitTestGenerator.generateTestsAsync.
+                nextBatch.cancel(true);
             }
         }
 
-
         logFinalCoverage(targetReached, iterationCount);
+        String contributionReport = testValidator.formatContributionReport();
+        if (!contributionReport.isEmpty()) {
+            System.out.println(contributionReport);
+        }
         logTokenUsage();
     }
 
+    /**
+     * Shares the build slots of a project with other agents. Validation then holds one slot and a full
+     * coverage run holds all of them.
+     *
+     * @param buildSlots The project's build slots, or null when this agent builds alone.
+     */
+    public void setBuildSlots(BuildSlots buildSlots) {
+        this.buildSlots = buildSlots;
+    }
+
+    /**
+     * Passes the output of the test command to a listener while it runs, e.g. to show the build's progress.
+     *
+     * @param outputListener The listener, or null.
+     */
+    public void setOutputListener(Runner.OutputListener outputListener) {
+        testValidator.setOutputListener(outputListener);
+    }
+
+    /**
+     * Stops this agent's builds and model calls as soon as the token is cancelled. The run then ends with a
+     * {@link CancellationException}, after restoring the test file and releasing its build slots.
+     *
+     * @param cancellationToken The token, or null.
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+        testValidator.setCancellationToken(cancellationToken);
+        if (aiCaller != null) {
+            aiCaller.setCancellationToken(cancellationToken);
+        }
+    }
+
+    private void checkCancelled() {
+        if (cancellationToken != null) {
+            cancellationToken.throwIfCancelled();
+        }
+    }
+
+    private <T> T withBuildSlots(boolean exclusive, Callable<T> action) throws Exception {
+        if (buildSlots == null) {
+            return action.call();
+        }
+        return exclusive ? buildSlots.exclusive(action, cancellationToken)
+                : buildSlots.shared(action, cancellationToken);
+    }
+
+    /**
+     * Validates one generated batch. If the run is cancelled meanwhile, the test file is restored to its
+     * content before the batch, whichever validation mode was changing it.
+     * @param newTests The generated tests.
+     */
+    private void validateGeneratedTests(List<GeneratedTest> newTests) {
+        Path testFile = Paths.get(args.getTestFileOutputPath());
+        byte[] testFileBefore;
+        try {
+            testFileBefore = Files.readAllBytes(testFile);
+        } catch (IOException e) {
+            logger.warning("Could not read the test file before validation: " + e.getMessage());
+            testFileBefore = null;
+        }
+        try {
+            validateInConfiguredMode(newTests);
+        } catch (CancellationException e) {
+            if (testFileBefore != null) {
+                try {
+                    Files.write(testFile, testFileBefore);
+                    System.out.println("Cancelled; restored the test file.");
+                } catch (IOException ioException) {
+                    logger.severe("Error restoring the test file: " + ioException.getMessage());
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Validates one generated batch in the configured mode: as a batch, in parallel sandboxes or one by one.
+     * @param newTests The generated tests.
+     */
+    private void validateInConfiguredMode(List<GeneratedTest> newTests) {
+        if (args.isBatchValidation()) {
+            System.out.println("Generated " + newTests.size() + " new test(s). Validating as a batch...");
+            try {
+                withBuildSlots(false, () -> testValidator.validateTestsInBatch(nonEmptyTests(newTests)));
+            } catch (CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Failed to validate generated tests: " + e.getMessage(), e);
+            }
+        } else if (args.getValidationParallelism() > 1) {
+            System.out.println("Generated " + newTests.size() + " new test(s). Validating in parallel (up to "
+                    + args.getValidationParallelism() + " sandboxes)...");
+            try {
+                withBuildSlots(false, () ->
+                        testValidator.validateTestsInParallel(nonEmptyTests(newTests), args.getValidationParallelism()));
+            } catch (CancellationException e) {
+                throw e;
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Failed to validate generated tests: " + e.getMessage(), e);
+            }
+        } else {
+        	System.out.println("Generated " + newTests.size() + " new test(s). Validating...");
+            for (GeneratedTest generatedTest : newTests) {
+                if (generatedTest == null || generatedTest.getTestCode() == null || generatedTest.getTestCode().isBlank()) {
+                    logger.warning("Skipping validation for an empty or null generated test.");
+                    continue;
+                }
+                logger.fine("AI-Generated Test:\n" + generatedTest.getTestCode());
+                try {
+                    withBuildSlots(false, () -> testValidator.validateTest(generatedTest));
+                } catch (CancellationException e) {
+                    throw e;
+                } catch (Exception e) {
+                    logger.log(Level.SEVERE, "Failed to validate generated test: " + e.getMessage(), e);
+                }
+            }
+        }
+        System.out.println("Finished validating generated tests for this iteration.");
+    }
+
+    /**
+     * Reconciles a batch that was requested before the last coverage run. Tests whose method is now declared
+     * in the test file duplicate an accepted test, and tests whose code matches a failed run (a failing or
+     * redundant test) would fail the same way, so both are dropped. The others still have to increase
+     * coverage during validation, so they are kept.
+     * @param newTests The tests of the batch.
+     * @return The tests worth validating.
+     */
+    private List<GeneratedTest> reconcileSpeculativeTests(List<GeneratedTest> newTests) {
+        String testFileContent;
+        try {
+            testFileContent = Files.readString(Paths.get(args.getTestFileOutputPath()));
+        } catch (IOException e) {
+            logger.warning("Could not read test file to reconcile a speculative batch: " + e.getMessage());
+            return newTests;
+        }
+        Set<String> failedCode = new HashSet<>();
+        for (Map<String, Object> failedTest : testValidator.getFailedTestRuns()) {
+            Object code = failedTest.get("code");
+            if (code instanceof Map && ((Map<?, ?>) code).get("test_code") instanceof String) {
+                failedCode.add(normalizeTestCode((String) ((Map<?, ?>) code).get("test_code")));
+            }
+        }
+        List<GeneratedTest> kept = new ArrayList<>();
+        int duplicates = 0;
+        for (GeneratedTest generatedTest : newTests) {
+            String methodName = generatedTest != null ? generatedTest.getTestMethodName() : null;
+            if (methodName != null && Pattern.compile("\\b" + Pattern.quote(methodName) + "\\s*\\(")
+                    .matcher(testFileContent).find()) {
+                duplicates++;
+                continue;
+            }
+            if (generatedTest != null && generatedTest.getTestCode() != null
+                    && failedCode.contains(normalizeTestCode(generatedTest.getTestCode()))) {
+                continue;
+            }
+            kept.add(generatedTest);
+        }
+        if (kept.size() < newTests.size()) {
+            System.out.println("Discarded " + (newTests.size() - kept.size()) + " test(s) of a speculative batch: "
+                    + duplicates + " already in the test file, " + (newTests.size() - kept.size() - duplicates)
+                    + " identical to a failed run.");
+        }
+        return kept;
+    }
+
+    private static String normalizeTestCode(String testCode) {
+        return testCode.replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * Filter out empty or null generated tests before validating them together.
+     * @param newTests The generated tests.
+     * @return The tests that have test code.
+     */
+    private List<GeneratedTest> nonEmptyTests(List<GeneratedTest> newTests) {
+        List<GeneratedTest> candidates = new ArrayList<>();
+        for (GeneratedTest generatedTest : newTests) {
+            if (generatedTest == null || generatedTest.getTestCode() == null || generatedTest.getTestCode().isBlank()) {
+                logger.warning("Skipping validation for an empty or null generated test.");
+                continue;
+            }
+            candidates.add(generatedTest);
+        }
+        return candidates;
+    }
+
     /**
      * Log the final coverage status after the loop finishes.
      * @param targetReached Whether the desired coverage was reached.
@@ -384,7 +651,8 @@ public class CoverAgent {
 
         if (targetReached) {
         	System.out.println(String.format(
-                    "SUCCESS: Reached target coverage of %d%% (Actual: %.2f%%) in %d iteration(s).",
+                    "SUCCESS: Reached target %s coverage of %d%% (Actual: %.2f%%) in %d iteration(s).",
+                    metricName(),
                     desiredCoveragePercent,
                     finalCoveragePercent,
                     iterationCount
@@ -433,12 +701,17 @@ public class CoverAgent {
         double currentCoveragePercent = testValidator.getCurrentCoverage() * 100.0;
 
         System.out.println(String.format(
-                "Current coverage: %.2f%% (Target: %d%%)",
+                "Current %s coverage: %.2f%% (Target: %d%%)",
+                metricName(),
                 currentCoveragePercent,
                 testValidator.getDesiredCoverage()
         ));
     }
 
+    private String metricName() {
+        return testValidator.getCoverageMetric().getDisplayName().toLowerCase();
+    }
+
    
 
     /**
@@ -448,13 +721,192 @@ public class CoverAgent {
      */
     public void run() throws Exception {
         InitResult initResult = init();
-        runTestGen(
-                initResult.getFailedTestRuns(),
-                initResult.getLanguage(),
-                initResult.getTestFramework(),
-                initResult.getCoverageReport()
-        );
+        JUnitLauncherEngine testEngine = args.isInProcessValidation() ? createTestEngine() : null;
+        testValidator.setTestEngine(testEngine);
+        if (testEngine == null && args.isIncrementalCompilation()) {
+            testValidator.setTestCompiler(createTestCompiler());
+        }
+        testValidator.setSourceChecker(createSourceChecker());
+        // Closing the engine kills its worker JVMs, which ends a request waiting for one of them.
+        CancellationToken.Registration closeEngine = testEngine != null && cancellationToken != null
+                ? cancellationToken.onCancel(testEngine::close) : null;
+        try {
+            runTestGen(
+                    initResult.getFailedTestRuns(),
+                    initResult.getLanguage(),
+                    initResult.getTestFramework(),
+                    initResult.getCoverageReport()
+            );
+        } finally {
+            if (closeEngine != null) {
+                closeEngine.close();
+            }
+            testValidator.setTestEngine(null);
+            testValidator.setTestCompiler(null);
+            testValidator.setSourceChecker(null);
+            if (testEngine != null) {
+                testEngine.close();
+            }
+        }
         logger.info("CoverAgent run finished.");
     }
 
+    /**
+     * Create the engine that compiles and runs generated tests in a worker JVM.
+     * Falls back to the test command (returns null) when the engine cannot be set up.
+     *
+     * @return The engine, or null.
+     */
+    private JUnitLauncherEngine createTestEngine() {
+        if (!JUnitLauncherEngine.isCompilerAvailable()) {
+            logger.warning("No Java compiler available; validating generated tests with the test command.");
+            return null;
+        }
+        List<String> classpath = resolveProjectClasspath();
+        if (classpath == null) {
+            logger.warning("Could not determine the test class path; validating generated tests with the test command.");
+            return null;
+        }
+
+        String jacocoAgent = args.getJacocoAgentPath();
+        if (jacocoAgent == null || jacocoAgent.isBlank()) {
+            jacocoAgent = JUnitLauncherEngine.findBundledJacocoAgent();
+        }
+        if (jacocoAgent == null) {
+            logger.warning("No JaCoCo agent found; validating generated tests with the test command.");
+            return null;
+        }
+
+        String[] packageAndClass = CoverageProcessor.extractPackageAndClassJava(args.getSourceFilePath());
+        String includes = (packageAndClass[0].isEmpty() ? "" : packageAndClass[0] + ".") + packageAndClass[1] + "*";
+        try {
+            System.out.println("Validating generated tests in a pool of JUnit launcher worker JVMs.");
+            JUnitLauncherEngine engine = new JUnitLauncherEngine(classpath, resolveTestClassesDir(), jacocoAgent,
+                    includes, Math.max(1, args.getValidationParallelism()));
+            engine.setRunTimeoutSeconds(args.getTestTimeoutSeconds());
+            return engine;
+        } catch (IOException e) {
+            logger.warning("Could not create the test engine: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Create the compiler that checks the test file on its own before the test command runs.
+     *
+     * @return The compiler, or null if the test file cannot be compiled separately.
+     */
+    private TestCompiler createTestCompiler() {
+        if (!TestCompiler.isAvailable()) {
+            logger.warning("No Java compiler available; generated tests are compiled by the test command.");
+            return null;
+        }
+        List<String> classpath = resolveProjectClasspath();
+        if (classpath == null) {
+            logger.warning("Could not determine the test class path; generated tests are compiled by the test command.");
+            return null;
+        }
+        return new TestCompiler(classpath, resolveTestClassesDir());
+    }
+
+    /**
+     * Create the JDT checker run on every candidate before it is built. It resolves types against the
+     * project class path when that has been resolved for the engine or compiler, and checks syntax otherwise.
+     *
+     * @return The checker, or null if the JDT is not available.
+     */
+    private TestSourceChecker createSourceChecker() {
+        try {
+            List<String> classpath = projectClasspath != null && !projectClasspath.isEmpty() ? projectClasspath : null;
+            return new TestSourceChecker(classpath, classpath != null ? resolveTestClassesDir() : null);
+        } catch (LinkageError e) {
+            logger.warning("JDT not available; generated tests are not checked before running: " + e);
+            return null;
+        }
+    }
+
+    private String getBuildDir() {
+        return args.getTestCommandDir() != null ? args.getTestCommandDir() : args.getProjectRoot();
+    }
+
+    private boolean isGradleBuild() {
+        String baseDir = getBuildDir();
+        return Files.isDirectory(Paths.get(baseDir, "build")) && !Files.isDirectory(Paths.get(baseDir, "target"));
+    }
+
+    /**
+     * Resolve the compiled test classes directory, following the Maven or Gradle layout unless configured.
+     *
+     * @return The test classes directory.
+     */
+    private String resolveTestClassesDir() {
+        String testClassesDir = args.getTestClassesDir();
+        if (testClassesDir != null && !testClassesDir.isBlank()) {
+            return testClassesDir;
+        }
+        return isGradleBuild() ? Paths.get(getBuildDir(), "build", "classes", "java", "test").toString()
+                : Paths.get(getBuildDir(), "target", "test-classes").toString();
+    }
+
+    /**
+     * Resolve the project's main classes and test dependencies, once per run.
+     *
+     * @return The class path entries, or null if the dependencies cannot be determined.
+     */
+    private List<String> resolveProjectClasspath() {
+        if (projectClasspath != null) {
+            return projectClasspath.isEmpty() ? null : projectClasspath;
+        }
+        String mainClassesDir = args.getClassFilesDir();
+        if (mainClassesDir == null || mainClassesDir.isBlank()) {
+            mainClassesDir = isGradleBuild() ? Paths.get(getBuildDir(), "build", "classes", "java", "main").toString()
+                    : Paths.get(getBuildDir(), "target", "classes").toString();
+        }
+
+        List<String> dependencies = new ArrayList<>();
+        if (args.getTestClasspath() != null && !args.getTestClasspath().isEmpty()) {
+            dependencies.addAll(args.getTestClasspath());
+        } else if (!isGradleBuild()) {
+            dependencies.addAll(resolveMavenTestClasspath(getBuildDir()));
+        }
+        projectClasspath = new ArrayList<>();
+        if (!dependencies.isEmpty()) {
+            projectClasspath.add(mainClassesDir);
+            projectClasspath.addAll(dependencies);
+        }
+        return projectClasspath.isEmpty() ? null : projectClasspath;
+    }
+
+    /**
+     * Resolve the test runtime class path of a Maven project with the dependency plugin.
+     *
+     * @param baseDir The directory containing the pom.xml.
+     * @return The class path entries, or an empty list on failure.
+     */
+    private List<String> resolveMavenTestClasspath(String baseDir) {
+        List<String> entries = new ArrayList<>();
+        try {
+            Path outputFile = Files.createTempFile("coveragent-classpath", ".txt");
+            try {
+                Runner.CommandResult result = Runner.runCommand(
+                        "mvn -q dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=\"" + outputFile + "\"",
+                        baseDir, new Runner.CommandOptions.Builder().cancellationToken(cancellationToken).build());
+                if (result.getExitCode() != 0) {
+                    logger.warning("Could not resolve the Maven test class path: " + result.getStderr());
+                    return entries;
+                }
+                for (String entry : new String(Files.readAllBytes(outputFile)).trim().split(java.io.File.pathSeparator)) {
+                    if (!entry.isBlank()) {
+                        entries.add(entry);
+                    }
+                }
+            } finally {
+                Files.deleteIfExists(outputFile);
+            }
+        } catch (IOException e) {
+            logger.warning("Could not resolve the Maven test class path: " + e.getMessage());
+        }
+        return entries;
+    }
+
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package test_agent.eclipse;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -18,6 +19,7 @@ public class CoverAgentArgs {
     private List<String> includedFiles;
     private String coverageType;
     private int desiredCoverage;
+    private String coverageMetric;
     private String additionalInstructions;
     private String projectRoot;
     private int maxIterations;
@@ -26,6 +28,22 @@ public class CoverAgentArgs {
     private String apiKey;
     private String siteUrl;
     private String siteName;
+    private String classFilesDir;
+    private int validationParallelism;
+    private boolean batchValidation;
+    private boolean inProcessValidation;
+    private boolean incrementalCompilation;
+    private List<String> testClasspath;
+    private String testClassesDir;
+    private String jacocoAgentPath;
+    private String responseCacheDir;
+    private boolean pipelinedGeneration;
+    private boolean promptCompaction;
+    private int coverageTimeoutSeconds;
+    private int testTimeoutSeconds;
+    private int testCpuSeconds;
+    private int testMemoryMegabytes;
+    private long coverageRunStartTime;
 
     /**
      * Default constructor
@@ -36,6 +54,10 @@ public class CoverAgentArgs {
         this.desiredCoverage = 80;
         this.runEachTestSeparately = false;
         this.runTestsMultipleTimes = 1;
+        this.validationParallelism = 1;
+        this.promptCompaction = true;
+        this.coverageTimeoutSeconds = Runner.DEFAULT_TIMEOUT_SECONDS;
+        this.testTimeoutSeconds = 600;
     }
 
     /**
@@ -69,6 +91,53 @@ public class CoverAgentArgs {
         this.siteName = siteName;
     }
 
+    /**
+     * Creates a copy of these arguments, e.g. to derive the arguments of one class from a project-wide template.
+     * The included files list is copied; the test class path is shared.
+     *
+     * @return The copy.
+     */
+    public CoverAgentArgs copy() {
+        CoverAgentArgs copy = new CoverAgentArgs();
+        copy.sourceFilePath = this.sourceFilePath;
+        copy.testFilePath = this.testFilePath;
+        copy.testFileOutputPath = this.testFileOutputPath;
+        copy.codeCoverageReportPath = this.codeCoverageReportPath;
+        copy.testCommand = this.testCommand;
+        copy.testCommandOriginal = this.testCommandOriginal;
+        copy.model = this.model;
+        copy.testCommandDir = this.testCommandDir;
+        copy.coverageType = this.coverageType;
+        copy.desiredCoverage = this.desiredCoverage;
+        copy.coverageMetric = this.coverageMetric;
+        copy.additionalInstructions = this.additionalInstructions;
+        copy.projectRoot = this.projectRoot;
+        copy.maxIterations = this.maxIterations;
+        copy.runEachTestSeparately = this.runEachTestSeparately;
+        copy.runTestsMultipleTimes = this.runTestsMultipleTimes;
+        copy.apiKey = this.apiKey;
+        copy.siteUrl = this.siteUrl;
+        copy.siteName = this.siteName;
+        copy.classFilesDir = this.classFilesDir;
+        copy.validationParallelism = this.validationParallelism;
+        copy.batchValidation = this.batchValidation;
+        copy.inProcessValidation = this.inProcessValidation;
+        copy.incrementalCompilation = this.incrementalCompilation;
+        copy.testClasspath = this.testClasspath;
+        copy.testClassesDir = this.testClassesDir;
+        copy.jacocoAgentPath = this.jacocoAgentPath;
+        copy.responseCacheDir = this.responseCacheDir;
+        copy.pipelinedGeneration = this.pipelinedGeneration;
+        copy.promptCompaction = this.promptCompaction;
+        copy.coverageTimeoutSeconds = this.coverageTimeoutSeconds;
+        copy.testTimeoutSeconds = this.testTimeoutSeconds;
+        copy.testCpuSeconds = this.testCpuSeconds;
+        copy.testMemoryMegabytes = this.testMemoryMegabytes;
+        copy.coverageRunStartTime = this.coverageRunStartTime;
+        copy.includedFiles = this.includedFiles != null ? new ArrayList<>(this.includedFiles) : null;
+        return copy;
+    }
+
     // Getters and setters
     public String getSourceFilePath() {
         return sourceFilePath;
@@ -158,6 +227,17 @@ public class CoverAgentArgs {
         this.desiredCoverage = desiredCoverage;
     }
 
+    /**
+     * @return the metric the desired coverage refers to: "line", "branch" or "instruction"; null means line.
+     */
+    public String getCoverageMetric() {
+        return coverageMetric;
+    }
+
+    public void setCoverageMetric(String coverageMetric) {
+        this.coverageMetric = coverageMetric;
+    }
+
     public String getAdditionalInstructions() {
         return additionalInstructions;
     }
@@ -227,6 +307,174 @@ public class CoverAgentArgs {
         this.siteName = siteName;
     }
 
+    public String getClassFilesDir() {
+        return classFilesDir;
+    }
+
+    public void setClassFilesDir(String classFilesDir) {
+        this.classFilesDir = classFilesDir;
+    }
+
+    /**
+     * @return the number of generated tests validated concurrently in isolated sandboxes; 1 validates serially.
+     */
+    public int getValidationParallelism() {
+        return validationParallelism;
+    }
+
+    public void setValidationParallelism(int validationParallelism) {
+        this.validationParallelism = validationParallelism;
+    }
+
+    /**
+     * @return true to validate all generated tests of an iteration in a single test command run.
+     */
+    public boolean isBatchValidation() {
+        return batchValidation;
+    }
+
+    public void setBatchValidation(boolean batchValidation) {
+        this.batchValidation = batchValidation;
+    }
+
+    /**
+     * @return true to compile and run generated tests through the JUnit launcher worker instead of the test command.
+     */
+    public boolean isInProcessValidation() {
+        return inProcessValidation;
+    }
+
+    public void setInProcessValidation(boolean inProcessValidation) {
+        this.inProcessValidation = inProcessValidation;
+    }
+
+    /**
+     * @return true to compile the test file on its own before running the test command.
+     */
+    public boolean isIncrementalCompilation() {
+        return incrementalCompilation;
+    }
+
+    public void setIncrementalCompilation(boolean incrementalCompilation) {
+        this.incrementalCompilation = incrementalCompilation;
+    }
+
+    /**
+     * @return the project's test runtime class path entries, or null to resolve them with the build tool.
+     */
+    public List<String> getTestClasspath() {
+        return testClasspath;
+    }
+
+    public void setTestClasspath(List<String> testClasspath) {
+        this.testClasspath = testClasspath;
+    }
+
+    public String getTestClassesDir() {
+        return testClassesDir;
+    }
+
+    public void setTestClassesDir(String testClassesDir) {
+        this.testClassesDir = testClassesDir;
+    }
+
+    public String getJacocoAgentPath() {
+        return jacocoAgentPath;
+    }
+
+    public void setJacocoAgentPath(String jacocoAgentPath) {
+        this.jacocoAgentPath = jacocoAgentPath;
+    }
+
+    /**
+     * @return the directory of the on-disk model response cache, or null to disable caching.
+     */
+    public String getResponseCacheDir() {
+        return responseCacheDir;
+    }
+
+    public void setResponseCacheDir(String responseCacheDir) {
+        this.responseCacheDir = responseCacheDir;
+    }
+
+    /**
+     * @return true to request the next batch of tests while the coverage run of an iteration builds.
+     */
+    public boolean isPipelinedGeneration() {
+        return pipelinedGeneration;
+    }
+
+    public void setPipelinedGeneration(boolean pipelinedGeneration) {
+        this.pipelinedGeneration = pipelinedGeneration;
+    }
+
+    /**
+     * @return true to send only the code around the missed lines with each test generation prompt.
+     */
+    public boolean isPromptCompaction() {
+        return promptCompaction;
+    }
+
+    public void setPromptCompaction(boolean promptCompaction) {
+        this.promptCompaction = promptCompaction;
+    }
+
+    /**
+     * @return the time in seconds the baseline coverage run may take before it is killed.
+     */
+    public int getCoverageTimeoutSeconds() {
+        return coverageTimeoutSeconds;
+    }
+
+    public void setCoverageTimeoutSeconds(int coverageTimeoutSeconds) {
+        this.coverageTimeoutSeconds = coverageTimeoutSeconds;
+    }
+
+    /**
+     * @return the time in seconds each test run validating generated tests may take before it is killed.
+     */
+    public int getTestTimeoutSeconds() {
+        return testTimeoutSeconds;
+    }
+
+    public void setTestTimeoutSeconds(int testTimeoutSeconds) {
+        this.testTimeoutSeconds = testTimeoutSeconds;
+    }
+
+    /**
+     * @return the CPU time in seconds each process of a validating test run may use, or 0 for no limit.
+     */
+    public int getTestCpuSeconds() {
+        return testCpuSeconds;
+    }
+
+    public void setTestCpuSeconds(int testCpuSeconds) {
+        this.testCpuSeconds = testCpuSeconds;
+    }
+
+    /**
+     * @return the memory in megabytes a validating test run may use, or 0 for no limit.
+     */
+    public int getTestMemoryMegabytes() {
+        return testMemoryMegabytes;
+    }
+
+    public void setTestMemoryMegabytes(int testMemoryMegabytes) {
+        this.testMemoryMegabytes = testMemoryMegabytes;
+    }
+
+    /**
+     * @return the start time of a coverage run already made for this project, whose report init() reuses,
+     * or 0 to run the test command in init().
+     */
+    public long getCoverageRunStartTime() {
+        return coverageRunStartTime;
+    }
+
+    public void setCoverageRunStartTime(long coverageRunStartTime) {
+        this.coverageRunStartTime = coverageRunStartTime;
+    }
+
     /**
      * Builder class for CoverAgentArgs
      */
@@ -283,6 +531,11 @@ public class CoverAgentArgs {
             return this;
         }
 
+        public Builder coverageMetric(String coverageMetric) {
+            args.setCoverageMetric(coverageMetric);
+            return this;
+        }
+
         public Builder additionalInstructions(String additionalInstructions) {
             args.setAdditionalInstructions(additionalInstructions);
             return this;
@@ -329,6 +582,86 @@ public class CoverAgentArgs {
             return this;
         }
 
+        public Builder classFilesDir(String classFilesDir) {
+            args.setClassFilesDir(classFilesDir);
+            return this;
+        }
+
+        public Builder validationParallelism(int validationParallelism) {
+            args.setValidationParallelism(validationParallelism);
+            return this;
+        }
+
+        public Builder batchValidation(boolean batchValidation) {
+            args.setBatchValidation(batchValidation);
+            return this;
+        }
+
+        public Builder inProcessValidation(boolean inProcessValidation) {
+            args.setInProcessValidation(inProcessValidation);
+            return this;
+        }
+
+        public Builder incrementalCompilation(boolean incrementalCompilation) {
+            args.setIncrementalCompilation(incrementalCompilation);
+            return this;
+        }
+
+        public Builder testClasspath(List<String> testClasspath) {
+            args.setTestClasspath(testClasspath);
+            return this;
+        }
+
+        public Builder testClassesDir(String testClassesDir) {
+            args.setTestClassesDir(testClassesDir);
+            return this;
+        }
+
+        public Builder jacocoAgentPath(String jacocoAgentPath) {
+            args.setJacocoAgentPath(jacocoAgentPath);
+            return this;
+        }
+
+        public Builder responseCacheDir(String responseCacheDir) {
+            args.setResponseCacheDir(responseCacheDir);
+            return this;
+        }
+
+        public Builder pipelinedGeneration(boolean pipelinedGeneration) {
+            args.setPipelinedGeneration(pipelinedGeneration);
+            return this;
+        }
+
+        public Builder promptCompaction(boolean promptCompaction) {
+            args.setPromptCompaction(promptCompaction);
+            return this;
+        }
+
+        public Builder coverageTimeoutSeconds(int coverageTimeoutSeconds) {
+            args.setCoverageTimeoutSeconds(coverageTimeoutSeconds);
+            return this;
+        }
+
+        public Builder testTimeoutSeconds(int testTimeoutSeconds) {
+            args.setTestTimeoutSeconds(testTimeoutSeconds);
+            return this;
+        }
+
+        public Builder testCpuSeconds(int testCpuSeconds) {
+            args.setTestCpuSeconds(testCpuSeconds);
+            return this;
+        }
+
+        public Builder testMemoryMegabytes(int testMemoryMegabytes) {
+            args.setTestMemoryMegabytes(testMemoryMegabytes);
+            return this;
+        }
+
+        public Builder coverageRunStartTime(long coverageRunStartTime) {
+            args.setCoverageRunStartTime(coverageRunStartTime);
+            return this;
+        }
+
         public CoverAgentArgs build() {
             return args;
         }
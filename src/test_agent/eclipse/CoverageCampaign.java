@@ -0,0 +1,323 @@
+package test_agent.eclipse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import test_agent.settings.ConfigManager;
+
+/**
+ * Raises coverage across a whole project instead of a single source/test pair.
+ * The test command is run once; its JaCoCo XML report ranks the project's classes by missed lines and
+ * is reused by every {@link CoverAgent} as its initial coverage. The agents then run concurrently, bounded
+ * by a number of concurrent runs, by shared {@link BuildSlots} and by a shared {@link RequestRateLimiter}
+ * on the model API. Classes without a test file get an empty JUnit 5 test class to start from.
+ */
+public class CoverageCampaign {
+
+    private static final Logger logger = Logger.getLogger(CoverageCampaign.class.getName());
+
+    /**
+     * One class of the campaign.
+     */
+    public static class Target {
+        private final String className;
+        private final String sourceFilePath;
+        private final String testFilePath;
+        private final int missedLines;
+        private final int coveredLines;
+
+        public Target(String className, String sourceFilePath, String testFilePath, int missedLines, int coveredLines) {
+            this.className = className;
+            this.sourceFilePath = sourceFilePath;
+            this.testFilePath = testFilePath;
+            this.missedLines = missedLines;
+            this.coveredLines = coveredLines;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getSourceFilePath() {
+            return sourceFilePath;
+        }
+
+        public String getTestFilePath() {
+            return testFilePath;
+        }
+
+        public int getMissedLines() {
+            return missedLines;
+        }
+
+        public int getCoveredLines() {
+            return coveredLines;
+        }
+    }
+
+    /**
+     * Receives the progress of a campaign. Methods may be called from several threads.
+     */
+    public interface Listener {
+        void campaignStarted(List<Target> targets);
+
+        void targetStarted(Target target);
+
+        void targetFinished(Target target, boolean success, String message);
+    }
+
+    private final CoverAgentArgs template;
+    private final String sourceRoot;
+    private final String testRoot;
+    private int maxTargets = 10;
+    private int concurrentRuns = 2;
+    private int buildSlots = 1;
+    private int requestsPerMinute = 20;
+    private Runner.OutputListener outputListener;
+    private CancellationToken cancellationToken;
+
+    /**
+     * @param template   Arguments shared by all classes: test command, report path, model, API settings and
+     *                   generation options. The source and test file paths are replaced for each class.
+     * @param sourceRoot The main source directory, e.g. {@code src/main/java}.
+     * @param testRoot   The test source directory, e.g. {@code src/test/java}.
+     */
+    public CoverageCampaign(CoverAgentArgs template, String sourceRoot, String testRoot) {
+        this.template = template;
+        this.sourceRoot = sourceRoot;
+        this.testRoot = testRoot;
+    }
+
+    public void setMaxTargets(int maxTargets) {
+        this.maxTargets = Math.max(1, maxTargets);
+    }
+
+    public void setConcurrentRuns(int concurrentRuns) {
+        this.concurrentRuns = Math.max(1, concurrentRuns);
+    }
+
+    /**
+     * Sets how many validation builds may run at once. The test command builds in the project directory,
+     * so more than one slot is only used with in-process validation, which compiles each test on its own.
+     */
+    public void setBuildSlots(int buildSlots) {
+        this.buildSlots = Math.max(1, buildSlots);
+    }
+
+    public void setRequestsPerMinute(int requestsPerMinute) {
+        this.requestsPerMinute = Math.max(1, requestsPerMinute);
+    }
+
+    /**
+     * Passes the output of the shared coverage run and of every class's test commands to a listener while
+     * they run. With concurrent classes, the lines of several builds interleave.
+     *
+     * @param outputListener The listener, or null.
+     */
+    public void setOutputListener(Runner.OutputListener outputListener) {
+        this.outputListener = outputListener;
+    }
+
+    /**
+     * Cancels the shared coverage run, the running classes' builds and model calls and the classes not yet
+     * started once the token is cancelled.
+     *
+     * @param cancellationToken The token, or null.
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Runs the campaign.
+     *
+     * @param listener  Receives progress, or null.
+     * @param cancelled Polled before each class is started; once true no further class is started.
+     * @return The number of classes whose run completed.
+     * @throws Exception If the shared coverage run fails or the report cannot be read.
+     */
+    public int run(Listener listener, BooleanSupplier cancelled) throws Exception {
+        System.out.println("Running the test command once to rank classes: \"" + template.getTestCommand() + "\"");
+        Runner.CommandResult coverageRun = Runner.runCommand(template.getTestCommand(), template.getTestCommandDir(),
+                new Runner.CommandOptions.Builder()
+                        .outputListener(outputListener)
+                        .cancellationToken(cancellationToken)
+                        .timeoutSeconds(template.getCoverageTimeoutSeconds())
+                        .build());
+        if (coverageRun.getExitCode() != 0) {
+            throw new RuntimeException("Test command failed with exit code " + coverageRun.getExitCode()
+                    + ":\n" + coverageRun.getStderr());
+        }
+
+        List<Target> targets = rankTargets(template.getCodeCoverageReportPath(),
+                coverageRun.getCommandStartTime());
+        if (targets.size() > maxTargets) {
+            targets = new ArrayList<>(targets.subList(0, maxTargets));
+        }
+        System.out.println("Campaign targets (by missed lines):");
+        for (Target target : targets) {
+            System.out.println(String.format("  %s: %d missed, %d covered", target.getClassName(),
+                    target.getMissedLines(), target.getCoveredLines()));
+        }
+        if (listener != null) {
+            listener.campaignStarted(targets);
+        }
+
+        AgentCompletion agentCompletion = createAgentCompletion();
+        BuildSlots slots = new BuildSlots(template.isInProcessValidation() ? buildSlots : 1);
+        ExecutorService executor = Executors.newFixedThreadPool(concurrentRuns);
+        List<Future<Boolean>> runs = new ArrayList<>();
+        for (Target target : targets) {
+            runs.add(executor.submit(() -> {
+                if (cancelled.getAsBoolean() || (cancellationToken != null && cancellationToken.isCancelled())) {
+                    return false;
+                }
+                return runTarget(target, coverageRun.getCommandStartTime(), agentCompletion, slots, listener);
+            }));
+        }
+        executor.shutdown();
+
+        int completed = 0;
+        try {
+            for (Future<Boolean> run : runs) {
+                if (run.get()) {
+                    completed++;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        System.out.println("Campaign finished: " + completed + "/" + targets.size() + " class(es) completed.");
+        return completed;
+    }
+
+    private boolean runTarget(Target target, long coverageRunStartTime, AgentCompletion agentCompletion,
+                              BuildSlots slots, Listener listener) {
+        if (listener != null) {
+            listener.targetStarted(target);
+        }
+        try {
+            ensureTestFile(target);
+            CoverAgentArgs args = template.copy();
+            args.setSourceFilePath(target.getSourceFilePath());
+            args.setTestFilePath(target.getTestFilePath());
+            args.setTestFileOutputPath(target.getTestFilePath());
+            args.setCoverageRunStartTime(coverageRunStartTime);
+
+            System.out.println("=== " + target.getClassName() + " ===");
+            CoverAgent coverAgent = new CoverAgent(args, agentCompletion);
+            coverAgent.setBuildSlots(slots);
+            coverAgent.setOutputListener(outputListener);
+            coverAgent.setCancellationToken(cancellationToken);
+            coverAgent.run();
+            if (listener != null) {
+                listener.targetFinished(target, true, null);
+            }
+            return true;
+        } catch (CancellationException e) {
+            System.out.println("Cancelled " + target.getClassName() + ".");
+            if (listener != null) {
+                listener.targetFinished(target, false, "Cancelled");
+            }
+            return false;
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "CoverAgent failed for " + target.getClassName() + ": " + e.getMessage(), e);
+            if (listener != null) {
+                listener.targetFinished(target, false, e.getMessage());
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Creates the model client shared by all classes, so they share connections and the request rate limit.
+     */
+    private AgentCompletion createAgentCompletion() {
+        AICaller aiCaller = new AICaller(template.getApiKey(), template.getSiteUrl(), template.getSiteName(),
+                template.getModel());
+        aiCaller.setRateLimiter(new RequestRateLimiter(requestsPerMinute));
+        aiCaller.setCancellationToken(cancellationToken);
+        ResponseCache responseCache = template.getResponseCacheDir() != null
+                ? new ResponseCache(template.getResponseCacheDir())
+                : null;
+        return new DefaultAgentCompletion(aiCaller, ConfigManager.getInstance().getConfig(), responseCache);
+    }
+
+    /**
+     * Reads the classes of a coverage report whose source is under the source root, ordered by missed lines.
+     * The report is read through the shared {@link CoverageReportIndex}, so the agents started for the same
+     * test run look their classes up in it without parsing the report again.
+     *
+     * @param reportPath        The jacoco.xml report or jacoco.exec execution data file.
+     * @param timeOfTestCommand The time when the test command that wrote the report was started.
+     * @return The classes with at least one missed line, most missed first.
+     */
+    public List<Target> rankTargets(String reportPath, long timeOfTestCommand) {
+        List<Target> targets = new ArrayList<>();
+        CoverageReportIndex index = CoverageReportIndex.forReport(reportPath, template.getClassFilesDir(),
+                timeOfTestCommand);
+        for (CoverageReportIndex.SourceFileCoverage sourceFile : index.getSourceFiles()) {
+            Target target = toTarget(sourceFile.getPackagePath(), sourceFile.getSourceFileName(),
+                    sourceFile.getMissedCount(), sourceFile.getCoveredCount());
+            if (target != null) {
+                targets.add(target);
+            }
+        }
+        targets.sort(Comparator.comparingInt(Target::getMissedLines).reversed());
+        return targets;
+    }
+
+    private Target toTarget(String packageName, String sourceFile, int missed, int covered) {
+        if (missed == 0 || !sourceFile.endsWith(".java")) {
+            return null;
+        }
+        String packagePath = packageName != null ? packageName : "";
+        Path source = Paths.get(sourceRoot, packagePath, sourceFile);
+        if (!Files.isRegularFile(source)) {
+            // Generated or foreign sources have nothing to write tests against.
+            return null;
+        }
+        String simpleName = sourceFile.substring(0, sourceFile.length() - ".java".length());
+        String className = packagePath.isEmpty() ? simpleName : packagePath.replace('/', '.') + "." + simpleName;
+        Path test = Paths.get(testRoot, packagePath, simpleName + "Test.java");
+        return new Target(className, source.toString(), test.toString(), missed, covered);
+    }
+
+    /**
+     * Creates an empty JUnit 5 test class for a target that has none yet.
+     */
+    private static void ensureTestFile(Target target) throws IOException {
+        Path testFile = Paths.get(target.getTestFilePath());
+        if (Files.exists(testFile)) {
+            return;
+        }
+        String className = target.getClassName();
+        int lastDot = className.lastIndexOf('.');
+        String simpleName = testFile.getFileName().toString().replace(".java", "");
+        StringBuilder content = new StringBuilder();
+        if (lastDot > 0) {
+            content.append("package ").append(className, 0, lastDot).append(";\n\n");
+        }
+        content.append("import org.junit.jupiter.api.Test;\n")
+                .append("import static org.junit.jupiter.api.Assertions.*;\n\n")
+                .append("class ").append(simpleName).append(" {\n}\n");
+        Files.createDirectories(testFile.getParent());
+        Files.write(testFile, content.toString().getBytes(StandardCharsets.UTF_8));
+        System.out.println("Created test file " + testFile);
+    }
+}
@@ -7,6 +7,10 @@ import java.util.regex.*;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import org.w3c.dom.*;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -15,27 +19,85 @@ import org.xml.sax.SAXException;
  * CoverageProcessor processes a JaCoCo XML coverage report for a specific source file.
  * It verifies that the report exists and is up-to-date and then parses the XML to extract
  * the covered and missed line numbers and computes the overall coverage percentage.
+ * By default the report is parsed with a streaming (StAX) parser that stops as soon as the target
+ * {@code <sourcefile>} has been consumed; the DOM parser is kept as an opt-out. Callers reading many source
+ * files of the same report opt into the shared {@link CoverageReportIndex}, which parses the report once per
+ * test run however many processors read it.
  */
 public class CoverageProcessor {
 
-    private String jacocoReportPath;
-    private String srcFilePath;
+    private static final String JACOCO_CORE_PROBE_CLASS = "org.jacoco.core.tools.ExecFileLoader";
+
+    protected String jacocoReportPath;
+    protected String srcFilePath;
+    private boolean streamingParse;
     private static final Logger logger = Logger.getLogger(CoverageProcessor.class.getName());
 
     /**
-     * Constructor.
+     * Constructor. Streams the report and stops after the source file.
      *
      * @param jacocoReportPath                    the path to the coverage report file.
      * @param srcFilePath                  the fully qualified path of the source file.
      */
     public CoverageProcessor(String jacocoReportPath, String srcFilePath
                             ) {
+        this(jacocoReportPath, srcFilePath, true);
+    }
+
+    /**
+     * Constructor. Reads only the source file's part of the report.
+     *
+     * @param jacocoReportPath the path to the coverage report file.
+     * @param srcFilePath      the fully qualified path of the source file.
+     * @param streamingParse   true to parse the report with StAX and stop after the target source file,
+     *                         false to build the full DOM of the report.
+     */
+    public CoverageProcessor(String jacocoReportPath, String srcFilePath, boolean streamingParse) {
         this.jacocoReportPath = jacocoReportPath;
         this.srcFilePath = srcFilePath;
+        this.streamingParse = streamingParse;
        // logger.info("CoverageProcessor initialized with srcFilePath: " + srcFilePath);
 
     }
 
+    /**
+     * Creates the coverage backend matching the report type.
+     * A {@code .exec} path selects {@link ExecCoverageProcessor}, which reads JaCoCo execution data and the
+     * compiled classes directly, so the build does not need to render the XML report. Any other path is
+     * treated as a JaCoCo XML report.
+     *
+     * @param reportPath    the path to the jacoco.xml report or jacoco.exec execution data file.
+     * @param srcFilePath   the fully qualified path of the source file.
+     * @param classFilesDir the directory of the compiled main classes, only used for {@code .exec} data.
+     *                      May be null to infer it from the execution data location.
+     * @return the coverage processor for the report.
+     * @throws IllegalStateException if execution data is requested but the JaCoCo core bundle is not installed.
+     */
+    public static CoverageProcessor forReport(String reportPath, String srcFilePath, String classFilesDir) {
+        if (reportPath == null || !reportPath.toLowerCase().endsWith(".exec")) {
+            return new CoverageProcessor(reportPath, srcFilePath);
+        }
+        if (!isExecutionDataSupported()) {
+            throw new IllegalStateException("Reading JaCoCo execution data (" + reportPath + ") requires the "
+                    + "org.jacoco.core bundle. Install EclEmma or point the coverage report to jacoco.xml.");
+        }
+        if (classFilesDir == null || classFilesDir.isBlank()) {
+            classFilesDir = ExecCoverageProcessor.inferClassFilesDir(reportPath);
+        }
+        return new ExecCoverageProcessor(reportPath, classFilesDir, srcFilePath);
+    }
+
+    /**
+     * @return true if the optional JaCoCo core bundle is installed, so execution data can be read.
+     */
+    public static boolean isExecutionDataSupported() {
+        try {
+            Class.forName(JACOCO_CORE_PROBE_CLASS, false, CoverageProcessor.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
 
     /**
      * Processes the coverage report by verifying its update time and then parsing it.
@@ -44,7 +106,51 @@ public class CoverageProcessor {
      * @return a CoverageData object containing the covered lines, missed lines, and coverage percentage.
      */
     public CoverageData processCoverageReport(long timeOfTestCommand) {
+        return processCoverageReport(timeOfTestCommand, false);
+    }
+
+    /**
+     * Processes the coverage report, optionally through the shared {@link CoverageReportIndex}.
+     * The index parses the whole report, so it only pays off when several source files are read from the
+     * same test run, e.g. by the agents of a coverage campaign.
+     *
+     * @param timeOfTestCommand the time  when the test command was run.
+     * @param useIndex          true to look the source file up in the shared report index.
+     * @return a CoverageData object containing the covered lines, missed lines, and coverage percentage.
+     */
+    public CoverageData processCoverageReport(long timeOfTestCommand, boolean useIndex) {
         verifyReportUpdate(timeOfTestCommand);
+        if (!useIndex) {
+            return parseCoverageReport();
+        }
+        String[] packageAndClass = extractPackageAndClassJava(srcFilePath);
+        String className = packageAndClass[1];
+        CoverageReportIndex.SourceFileCoverage coverage = CoverageReportIndex
+                .forReport(jacocoReportPath, getClassFilesDir(), timeOfTestCommand)
+                .find(packageAndClass[0].replace('.', '/'), className + ".java");
+        if (coverage == null) {
+            logger.warning("No matching <sourcefile> element found for class: " + className);
+            return new CoverageData.Builder().build();
+        }
+        return coverage.getCoverage();
+    }
+
+    /**
+     * Returns the compiled classes directory needed to read the report, or null if the report format does
+     * not need one.
+     *
+     * @return the classes directory.
+     */
+    protected String getClassFilesDir() {
+        return null;
+    }
+
+    /**
+     * Parses the coverage report for the source file. Subclasses reading other report formats override this.
+     *
+     * @return the coverage data.
+     */
+    protected CoverageData parseCoverageReport() {
         return parseCoverageReportJacoco();
     }
 
@@ -93,12 +199,9 @@ public class CoverageProcessor {
         }
 
         // Parse the JaCoCo XML report to get line-level data for the class.
-        LineData lineData = parseMissedCoveredLinesJacocoXml(className);
-        int totalLines = lineData.covered.size() + lineData.missed.size();
-        double coveragePercentage = (totalLines > 0) ? ((double) lineData.covered.size() / totalLines) : 0.0;
-
-        // Return the final coverage results.
-        return new CoverageData(lineData.covered, lineData.missed, coveragePercentage);
+        return streamingParse
+                ? parseMissedCoveredLinesJacocoXmlStreaming(packageName, className)
+                : parseMissedCoveredLinesJacocoXml(className);
     }
 
     /**
@@ -121,7 +224,7 @@ public class CoverageProcessor {
      * @param srcFilePath the path to the Java source file.
      * @return a String array where index 0 is the package name and index 1 is the class name.
      */
-    private String[] extractPackageAndClassJava(String srcFilePath) {
+    protected static String[] extractPackageAndClassJava(String srcFilePath) {
         String packageName = "";
         String className = "";
         Pattern packagePattern = Pattern.compile("^\\s*package\\s+([\\w\\.]+)\\s*;.*$");
@@ -158,11 +261,10 @@ public class CoverageProcessor {
      * Parses a JaCoCo XML report to extract the covered and missed line numbers for the specified class.
      *
      * @param className the class name to look for (without extension).
-     * @return a LineData object containing lists of covered and missed lines.
+     * @return the coverage of the class.
      */
-    private LineData parseMissedCoveredLinesJacocoXml(String className) {
-        List<Integer> coveredLines = new ArrayList<>();
-        List<Integer> missedLines = new ArrayList<>();
+    private CoverageData parseMissedCoveredLinesJacocoXml(String className) {
+        CoverageData.Builder coverage = new CoverageData.Builder();
         try {
             File xmlFile = new File(jacocoReportPath);
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
@@ -198,7 +300,7 @@ public class CoverageProcessor {
 
             if (matchingSourceFile == null) {
                 logger.warning("No matching <sourcefile> element found for class: " + className);
-                return new LineData(coveredLines, missedLines);
+                return coverage.build();
             }
 
             NodeList lineNodes = matchingSourceFile.getElementsByTagName("line");
@@ -206,15 +308,9 @@ public class CoverageProcessor {
                 Node lineNode = lineNodes.item(i);
                 if (lineNode.getNodeType() == Node.ELEMENT_NODE) {
                     Element lineElement = (Element) lineNode;
-                    String nrAttr = lineElement.getAttribute("nr");
-                    String miAttr = lineElement.getAttribute("mi");
-                    int lineNumber = Integer.parseInt(nrAttr);
-                    // If missed instructions ("mi") is "0", consider the line as covered.
-                    if ("0".equals(miAttr)) {
-                        coveredLines.add(lineNumber);
-                    } else {
-                        missedLines.add(lineNumber);
-                    }
+                    coverage.addLine(Integer.parseInt(lineElement.getAttribute("nr")),
+                            intAttribute(lineElement.getAttribute("mi")), intAttribute(lineElement.getAttribute("ci")),
+                            intAttribute(lineElement.getAttribute("mb")), intAttribute(lineElement.getAttribute("cb")));
                 }
             }
 
@@ -222,47 +318,411 @@ public class CoverageProcessor {
             logger.severe("Error parsing XML file " + jacocoReportPath + ": " + e.getMessage());
             throw new RuntimeException(e);
         }
-        return new LineData(coveredLines, missedLines);
+        return coverage.build();
     }
 
+    /**
+     * Streams a JaCoCo XML report to extract the covered and missed line numbers for the specified class.
+     * Only the {@code <line>} elements of the matching {@code <sourcefile>} are read; parsing stops as soon
+     * as that element ends, so the rest of the report is never materialized.
+     * A source file inside the expected package is preferred. If none is found, the first source file with
+     * a matching name is used, which is what the DOM parser returns.
+     *
+     * @param packageName the Java package of the source file (may be empty).
+     * @param className   the class name to look for (without extension).
+     * @return the coverage of the class.
+     */
+    private CoverageData parseMissedCoveredLinesJacocoXmlStreaming(String packageName, String className) {
+        String expectedPackage = packageName.replace('.', '/');
+        String expectedSourceFile = className + ".java";
+        CoverageData fallback = null;
+
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // JaCoCo reports reference an external report.dtd; never try to resolve it.
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(jacocoReportPath))) {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                String currentPackage = null;
+                CoverageData.Builder current = null;
+                boolean currentInExpectedPackage = false;
+
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if ("package".equals(name)) {
+                            currentPackage = reader.getAttributeValue(null, "name");
+                        } else if ("sourcefile".equals(name)
+                                && expectedSourceFile.equals(reader.getAttributeValue(null, "name"))) {
+                            currentInExpectedPackage = expectedPackage.equals(currentPackage);
+                            if (currentInExpectedPackage || fallback == null) {
+                                current = new CoverageData.Builder();
+                            }
+                        } else if ("line".equals(name) && current != null) {
+                            current.addLine(reader);
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if ("sourcefile".equals(name) && current != null) {
+                            if (currentInExpectedPackage) {
+                                return current.build();
+                            }
+                            fallback = current.build();
+                            current = null;
+                        } else if ("package".equals(name)) {
+                            currentPackage = null;
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | IOException | NumberFormatException e) {
+            logger.severe("Error parsing XML file " + jacocoReportPath + ": " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+
+        if (fallback == null) {
+            logger.warning("No matching <sourcefile> element found for class: " + className);
+            return new CoverageData.Builder().build();
+        }
+        logger.warning("No <sourcefile> for class " + className + " found in package \"" + expectedPackage
+                + "\"; using the first source file with the same name.");
+        return fallback;
+    }
+
+
+    private static int intAttribute(String value) {
+        return value == null || value.isEmpty() ? 0 : Integer.parseInt(value);
+    }
 
     /**
-     * A simple container to hold lists of covered and missed line numbers.
+     * Covered and missed instructions or branches.
      */
-    private static class LineData {
-        List<Integer> covered;
-        List<Integer> missed;
+    public static final class Counter {
+        private final int covered;
+        private final int missed;
 
-        public LineData(List<Integer> covered, List<Integer> missed) {
+        public Counter(int covered, int missed) {
             this.covered = covered;
             this.missed = missed;
         }
+
+        public int getCovered() {
+            return covered;
+        }
+
+        public int getMissed() {
+            return missed;
+        }
+
+        public int getTotal() {
+            return covered + missed;
+        }
+
+        /**
+         * @return the covered fraction, or 0 if there is nothing to cover.
+         */
+        public double getCoveredRatio() {
+            int total = getTotal();
+            return total > 0 ? (double) covered / total : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return covered + "/" + getTotal();
+        }
+    }
+
+    /**
+     * The coverage measure a desired coverage refers to.
+     */
+    public enum Metric {
+        /** Lines without missed instructions. */
+        LINE,
+        /** Branches of conditions and switches; classes without branches fall back to lines. */
+        BRANCH,
+        /** Bytecode instructions; reports without instruction counts fall back to lines. */
+        INSTRUCTION;
+
+        /**
+         * Parses a metric name, case-insensitively.
+         *
+         * @param name the metric name, e.g. "branch"; null or blank selects {@link #LINE}.
+         * @return the metric.
+         * @throws IllegalArgumentException if the name is not a metric.
+         */
+        public static Metric fromName(String name) {
+            if (name == null || name.isBlank()) {
+                return LINE;
+            }
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+
+        public String getDisplayName() {
+            return name().charAt(0) + name().substring(1).toLowerCase(Locale.ROOT);
+        }
     }
 
     /**
      * A data class representing the final coverage results.
+     * Line states are kept as bit sets indexed by line number, so comparing and merging the coverage of
+     * validation runs are word-wise set operations instead of boxed list scans. The instruction and branch
+     * counts of each line are kept in arrays indexed the same way. Instances are immutable: accessors return
+     * copies and the set operations return new instances.
      */
     public static class CoverageData {
-        private List<Integer> coveredLines;
-        private List<Integer> missedLines;
-        private double coveragePercentage;
-
+        private static final int[] NO_COUNTS = new int[0];
+
+        private final BitSet coveredLines;
+        private final BitSet missedLines;
+        private final int coveredCount;
+        private final int missedCount;
+        // Per line number; empty when the report has no counts.
+        private final int[] missedInstructions;
+        private final int[] coveredInstructions;
+        private final int[] missedBranches;
+        private final int[] coveredBranches;
+        private final Counter instructions;
+        private final Counter branches;
+
+        /**
+         * @param coveredLines       the covered line numbers.
+         * @param missedLines        the missed line numbers.
+         * @param coveragePercentage ignored; the percentage is always computed from the lines.
+         */
         public CoverageData(List<Integer> coveredLines, List<Integer> missedLines, double coveragePercentage) {
+            this(toBitSet(coveredLines), toBitSet(missedLines), NO_COUNTS, NO_COUNTS, NO_COUNTS, NO_COUNTS);
+        }
+
+        private CoverageData(BitSet coveredLines, BitSet missedLines, int[] missedInstructions,
+                             int[] coveredInstructions, int[] missedBranches, int[] coveredBranches) {
             this.coveredLines = coveredLines;
             this.missedLines = missedLines;
-            this.coveragePercentage = coveragePercentage;
+            this.coveredCount = coveredLines.cardinality();
+            this.missedCount = missedLines.cardinality();
+            this.missedInstructions = missedInstructions;
+            this.coveredInstructions = coveredInstructions;
+            this.missedBranches = missedBranches;
+            this.coveredBranches = coveredBranches;
+            this.instructions = new Counter(sum(coveredInstructions), sum(missedInstructions));
+            this.branches = new Counter(sum(coveredBranches), sum(missedBranches));
         }
 
+        private static BitSet toBitSet(List<Integer> lines) {
+            BitSet set = new BitSet();
+            for (int line : lines) {
+                set.set(line);
+            }
+            return set;
+        }
+
+        private static List<Integer> toList(BitSet lines) {
+            List<Integer> list = new ArrayList<>(lines.cardinality());
+            for (int line = lines.nextSetBit(0); line >= 0; line = lines.nextSetBit(line + 1)) {
+                list.add(line);
+            }
+            return list;
+        }
+
+        private static int sum(int[] counts) {
+            int sum = 0;
+            for (int count : counts) {
+                sum += count;
+            }
+            return sum;
+        }
+
+        private static int at(int[] counts, int line) {
+            return line < counts.length ? counts[line] : 0;
+        }
+
+        /**
+         * @return the covered line numbers in ascending order. Prefer {@link #getCoveredLineSet()} or
+         *         {@link #getCoveredCount()} where a list is not needed.
+         */
         public List<Integer> getCoveredLines() {
-            return coveredLines;
+            return toList(coveredLines);
         }
 
+        /**
+         * @return the missed line numbers in ascending order.
+         */
         public List<Integer> getMissedLines() {
-            return missedLines;
+            return toList(missedLines);
+        }
+
+        public BitSet getCoveredLineSet() {
+            return (BitSet) coveredLines.clone();
         }
 
+        public BitSet getMissedLineSet() {
+            return (BitSet) missedLines.clone();
+        }
+
+        public boolean isCovered(int line) {
+            return coveredLines.get(line);
+        }
+
+        public boolean isMissed(int line) {
+            return missedLines.get(line);
+        }
+
+        public int getCoveredCount() {
+            return coveredCount;
+        }
+
+        public int getMissedCount() {
+            return missedCount;
+        }
+
+        public Counter getInstructionCounter() {
+            return instructions;
+        }
+
+        public Counter getBranchCounter() {
+            return branches;
+        }
+
+        /**
+         * @param line a line number.
+         * @return the covered and missed branches of the line.
+         */
+        public Counter getLineBranches(int line) {
+            return new Counter(at(coveredBranches, line), at(missedBranches, line));
+        }
+
+        /**
+         * Returns the lines that have at least one missed branch although the line itself was executed,
+         * i.e. the conditions a line-coverage goal would count as done.
+         *
+         * @return the line numbers with missed branches among the covered lines.
+         */
+        public BitSet getPartlyCoveredBranchLines() {
+            BitSet lines = new BitSet();
+            for (int line = 0; line < missedBranches.length; line++) {
+                if (missedBranches[line] > 0 && (coveredLines.get(line) || coveredBranches[line] > 0)) {
+                    lines.set(line);
+                }
+            }
+            return lines;
+        }
+
+        /**
+         * @return the line coverage.
+         */
         public double getCoveragePercentage() {
-            return coveragePercentage;
+            int totalLines = coveredCount + missedCount;
+            return (totalLines > 0) ? ((double) coveredCount / totalLines) : 0.0;
+        }
+
+        /**
+         * Returns the coverage in a metric. Falls back to line coverage where the report has nothing to
+         * measure in that metric.
+         *
+         * @param metric the metric.
+         * @return the covered fraction.
+         */
+        public double getCoverage(Metric metric) {
+            switch (metric) {
+                case BRANCH:
+                    return branches.getTotal() > 0 ? branches.getCoveredRatio() : getCoveragePercentage();
+                case INSTRUCTION:
+                    return instructions.getTotal() > 0 ? instructions.getCoveredRatio() : getCoveragePercentage();
+                default:
+                    return getCoveragePercentage();
+            }
+        }
+
+        /**
+         * Returns the lines covered here but not in an earlier coverage (this AND NOT before).
+         *
+         * @param before the earlier coverage, or null if nothing was covered.
+         * @return the newly covered lines.
+         */
+        public BitSet newlyCoveredSince(CoverageData before) {
+            BitSet newlyCovered = (BitSet) coveredLines.clone();
+            if (before != null) {
+                newlyCovered.andNot(before.coveredLines);
+            }
+            return newlyCovered;
+        }
+
+        /**
+         * Tells whether any line is covered here but not in an earlier coverage, without allocating.
+         *
+         * @param before the earlier coverage, or null if nothing was covered.
+         * @return true if at least one line is newly covered.
+         */
+        public boolean coversLinesNotIn(CoverageData before) {
+            if (before == null) {
+                return coveredCount > 0;
+            }
+            for (int line = coveredLines.nextSetBit(0); line >= 0; line = coveredLines.nextSetBit(line + 1)) {
+                if (!before.coveredLines.get(line)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Tells whether this coverage adds to an earlier one in a metric: a newly covered line, or for branch
+         * and instruction goals also a line whose covered branches or instructions increased. Counts only tell
+         * how many branches of a line were covered, not which, so this is exact only when this coverage includes
+         * the earlier one, e.g. for the suite's execution data merged with a new test's
+         * (see {@link MergedExecutionData}).
+         *
+         * @param before the earlier coverage, or null if nothing was covered.
+         * @param metric the metric of the coverage goal.
+         * @return true if the coverage adds to the earlier one.
+         */
+        public boolean coversMoreThan(CoverageData before, Metric metric) {
+            if (coversLinesNotIn(before)) {
+                return true;
+            }
+            if (before == null || metric == Metric.LINE) {
+                return false;
+            }
+            int[] covered = metric == Metric.BRANCH ? coveredBranches : coveredInstructions;
+            int[] coveredBefore = metric == Metric.BRANCH ? before.coveredBranches : before.coveredInstructions;
+            for (int line = 0; line < covered.length; line++) {
+                if (covered[line] > at(coveredBefore, line)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Counts the branches covered here beyond an earlier coverage, line by line.
+         *
+         * @param before the earlier coverage, or null if nothing was covered.
+         * @return the number of newly covered branches.
+         */
+        public int newlyCoveredBranchCount(CoverageData before) {
+            return gain(coveredBranches, before != null ? before.coveredBranches : NO_COUNTS);
+        }
+
+        /**
+         * Counts the instructions covered here beyond an earlier coverage, line by line.
+         *
+         * @param before the earlier coverage, or null if nothing was covered.
+         * @return the number of newly covered instructions.
+         */
+        public int newlyCoveredInstructionCount(CoverageData before) {
+            return gain(coveredInstructions, before != null ? before.coveredInstructions : NO_COUNTS);
+        }
+
+        private static int gain(int[] covered, int[] coveredBefore) {
+            int gain = 0;
+            for (int line = 0; line < covered.length; line++) {
+                gain += Math.max(0, covered[line] - at(coveredBefore, line));
+            }
+            return gain;
         }
 
         @Override
@@ -270,10 +730,65 @@ public class CoverageProcessor {
             return "CoverageData{" +
                     "coveredLines=" + coveredLines +
                     ", missedLines=" + missedLines +
-                    ", coveragePercentage=" + coveragePercentage +
+                    ", coveragePercentage=" + getCoveragePercentage() +
+                    ", instructions=" + instructions +
+                    ", branches=" + branches +
                     '}';
         }
+
+        /**
+         * Accumulates the lines of a report into a {@link CoverageData}.
+         */
+        public static class Builder {
+            private final BitSet coveredLines = new BitSet();
+            private final BitSet missedLines = new BitSet();
+            private int[] missedInstructions = new int[64];
+            private int[] coveredInstructions = new int[64];
+            private int[] missedBranches = new int[64];
+            private int[] coveredBranches = new int[64];
+            private int length;
+
+            /**
+             * Adds one line. As in the JaCoCo report, a line without missed instructions is covered.
+             */
+            public Builder addLine(int lineNumber, int missedInstr, int coveredInstr, int missedBr, int coveredBr) {
+                if (missedInstr == 0) {
+                    coveredLines.set(lineNumber);
+                } else {
+                    missedLines.set(lineNumber);
+                }
+                if (lineNumber >= missedInstructions.length) {
+                    int capacity = Math.max(lineNumber + 1, missedInstructions.length * 2);
+                    missedInstructions = Arrays.copyOf(missedInstructions, capacity);
+                    coveredInstructions = Arrays.copyOf(coveredInstructions, capacity);
+                    missedBranches = Arrays.copyOf(missedBranches, capacity);
+                    coveredBranches = Arrays.copyOf(coveredBranches, capacity);
+                }
+                missedInstructions[lineNumber] = missedInstr;
+                coveredInstructions[lineNumber] = coveredInstr;
+                missedBranches[lineNumber] = missedBr;
+                coveredBranches[lineNumber] = coveredBr;
+                length = Math.max(length, lineNumber + 1);
+                return this;
+            }
+
+            /**
+             * Adds the {@code <line>} element the reader is positioned on.
+             */
+            Builder addLine(XMLStreamReader reader) {
+                return addLine(Integer.parseInt(reader.getAttributeValue(null, "nr")),
+                        intAttribute(reader.getAttributeValue(null, "mi")),
+                        intAttribute(reader.getAttributeValue(null, "ci")),
+                        intAttribute(reader.getAttributeValue(null, "mb")),
+                        intAttribute(reader.getAttributeValue(null, "cb")));
+            }
+
+            public CoverageData build() {
+                return new CoverageData((BitSet) coveredLines.clone(), (BitSet) missedLines.clone(),
+                        Arrays.copyOf(missedInstructions, length), Arrays.copyOf(coveredInstructions, length),
+                        Arrays.copyOf(missedBranches, length), Arrays.copyOf(coveredBranches, length));
+            }
+        }
     }
 
 }
-
@@ -0,0 +1,225 @@
+package test_agent.eclipse;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Line coverage of every source file of one coverage report, read once per test run.
+ * A {@link CoverageProcessor} is built per source file; with several validators or campaign targets reading
+ * the same report, each of them used to parse the whole file to find its own {@code <sourcefile>}. The index
+ * parses the report a single time into line bit sets per package and source file, and
+ * {@link #forReport} hands the same index to every caller until the report is written again.
+ */
+public class CoverageReportIndex {
+
+    private static final Logger logger = Logger.getLogger(CoverageReportIndex.class.getName());
+
+    // Reports kept in memory; older ones are parsed again if they are asked for.
+    private static final int MAX_CACHED_REPORTS = 8;
+
+    private static final Map<String, CoverageReportIndex> cache =
+            new LinkedHashMap<String, CoverageReportIndex>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CoverageReportIndex> eldest) {
+                    return size() > MAX_CACHED_REPORTS;
+                }
+            };
+
+    /**
+     * The coverage of one source file of the report.
+     */
+    public static final class SourceFileCoverage {
+        private final String packagePath;
+        private final String sourceFileName;
+        private final CoverageProcessor.CoverageData coverage;
+
+        public SourceFileCoverage(String packagePath, String sourceFileName, CoverageProcessor.CoverageData coverage) {
+            this.packagePath = packagePath;
+            this.sourceFileName = sourceFileName;
+            this.coverage = coverage;
+        }
+
+        /**
+         * @return the package in report form, e.g. {@code com/example}; empty for the default package.
+         */
+        public String getPackagePath() {
+            return packagePath;
+        }
+
+        public String getSourceFileName() {
+            return sourceFileName;
+        }
+
+        public int getCoveredCount() {
+            return coverage.getCoveredCount();
+        }
+
+        public int getMissedCount() {
+            return coverage.getMissedCount();
+        }
+
+        /**
+         * @return the coverage of the source file; it is immutable and shared by every caller.
+         */
+        public CoverageProcessor.CoverageData getCoverage() {
+            return coverage;
+        }
+    }
+
+    protected final String reportPath;
+    private final long reportModified;
+    private final long reportSize;
+    private final long loadedAt;
+    private Map<String, SourceFileCoverage> sourceFiles;
+
+    protected CoverageReportIndex(String reportPath) {
+        File reportFile = new File(reportPath);
+        this.reportPath = reportPath;
+        this.reportModified = reportFile.lastModified();
+        this.reportSize = reportFile.length();
+        this.loadedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the index of a coverage report, parsing it only if no index of the same report is cached.
+     * A cached index is reused while the report file is unchanged and the index was read after the test
+     * command that wrote the report was started, so each test run is parsed once however many source files
+     * are looked up in it.
+     *
+     * @param reportPath        The jacoco.xml report or jacoco.exec execution data file.
+     * @param classFilesDir     The compiled main classes, only used for execution data. May be null to infer it.
+     * @param timeOfTestCommand The time when the test command that wrote the report was started.
+     * @return The index of the report.
+     */
+    public static CoverageReportIndex forReport(String reportPath, String classFilesDir, long timeOfTestCommand) {
+        boolean execData = reportPath.toLowerCase().endsWith(".exec");
+        if (execData && (classFilesDir == null || classFilesDir.isBlank())) {
+            classFilesDir = ExecCoverageProcessor.inferClassFilesDir(reportPath);
+        }
+        String key = new File(reportPath).getAbsolutePath() + (execData ? File.pathSeparator + classFilesDir : "");
+        File reportFile = new File(reportPath);
+        synchronized (cache) {
+            CoverageReportIndex index = cache.get(key);
+            if (index != null && index.loadedAt >= timeOfTestCommand
+                    && index.reportModified == reportFile.lastModified() && index.reportSize == reportFile.length()) {
+                return index;
+            }
+            index = execData ? new ExecCoverageReportIndex(reportPath, classFilesDir) : new CoverageReportIndex(reportPath);
+            cache.put(key, index);
+            return index;
+        }
+    }
+
+    /**
+     * Looks up the coverage of a source file. A source file inside the expected package is preferred; if there
+     * is none, the first source file with the same name is used.
+     *
+     * @param packagePath    The package in report form, e.g. {@code com/example}.
+     * @param sourceFileName The source file name, e.g. {@code Foo.java}.
+     * @return The coverage of the source file, or null if the report has none.
+     */
+    public SourceFileCoverage find(String packagePath, String sourceFileName) {
+        Map<String, SourceFileCoverage> files = load();
+        SourceFileCoverage coverage = files.get(key(packagePath, sourceFileName));
+        if (coverage != null) {
+            return coverage;
+        }
+        for (SourceFileCoverage candidate : files.values()) {
+            if (candidate.getSourceFileName().equals(sourceFileName)) {
+                logger.warning("No <sourcefile> " + sourceFileName + " found in package \"" + packagePath
+                        + "\"; using the one in \"" + candidate.getPackagePath() + "\".");
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return every source file of the report, in report order.
+     */
+    public Collection<SourceFileCoverage> getSourceFiles() {
+        return Collections.unmodifiableCollection(load().values());
+    }
+
+    public String getReportPath() {
+        return reportPath;
+    }
+
+    private synchronized Map<String, SourceFileCoverage> load() {
+        if (sourceFiles == null) {
+            long start = System.currentTimeMillis();
+            sourceFiles = parse();
+            logger.fine("Indexed " + sourceFiles.size() + " source files of " + reportPath + " in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        }
+        return sourceFiles;
+    }
+
+    protected static String key(String packagePath, String sourceFileName) {
+        return packagePath.isEmpty() ? sourceFileName : packagePath + "/" + sourceFileName;
+    }
+
+    /**
+     * Reads all source files of the report. Subclasses reading other report formats override this.
+     *
+     * @return the source files by {@link #key}, in report order.
+     */
+    protected Map<String, SourceFileCoverage> parse() {
+        Map<String, SourceFileCoverage> files = new LinkedHashMap<>();
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // JaCoCo reports reference an external report.dtd; never try to resolve it.
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(reportPath))) {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                String packagePath = "";
+                String sourceFileName = null;
+                CoverageProcessor.CoverageData.Builder coverage = null;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if ("package".equals(name)) {
+                            packagePath = reader.getAttributeValue(null, "name");
+                        } else if ("sourcefile".equals(name)) {
+                            sourceFileName = reader.getAttributeValue(null, "name");
+                            coverage = new CoverageProcessor.CoverageData.Builder();
+                        } else if ("line".equals(name) && coverage != null) {
+                            coverage.addLine(reader);
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if ("sourcefile".equals(name) && coverage != null) {
+                            // Keep the first of duplicate entries, like the single-file parsers.
+                            files.putIfAbsent(key(packagePath, sourceFileName),
+                                    new SourceFileCoverage(packagePath, sourceFileName, coverage.build()));
+                            coverage = null;
+                        } else if ("package".equals(name)) {
+                            packagePath = "";
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | IOException | NumberFormatException e) {
+            logger.severe("Error parsing XML file " + reportPath + ": " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+        return files;
+    }
+}
@@ -1,9 +1,11 @@
 package test_agent.eclipse;
 
 import com.typesafe.config.Config;
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import test_agent.results.AnalysisResult;
@@ -12,15 +14,105 @@ import test_agent.results.ModelResponse;
 import test_agent.results.TestGenerationResult;
 import test_agent.utils.YamlParser;
 
-public class DefaultAgentCompletion implements AgentCompletion {
+public class DefaultAgentCompletion implements AgentCompletion, AsyncAgentCompletion {
     private final Logger logger = Logger.getLogger(DefaultAgentCompletion.class.getName());
     private final AICaller caller;
     private final PromptBuilder promptBuilder;
+    private final ResponseCache responseCache;
+
+    /**
+     * Creates the result object of an operation from the model's answer.
+     */
+    private interface ResultFactory<T> {
+        T create(String response, int inputTokens, int outputTokens, String userPrompt);
+    }
 
 
     public DefaultAgentCompletion(AICaller caller, Config config) {
+        this(caller, config, null);
+    }
+
+    /**
+     * @param caller        The model caller.
+     * @param config        The prompt templates.
+     * @param responseCache Cache for the analysis and command adaptation responses, or null to always call the model.
+     */
+    public DefaultAgentCompletion(AICaller caller, Config config, ResponseCache responseCache) {
         this.caller = caller;
         this.promptBuilder = new PromptBuilder(config);
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Calls the model, answering identical prompts from the response cache when one is configured.
+     * A cached response reports zero tokens, since no tokens were spent on it.
+     * Only responses accepted by {@code usable} are stored, so a malformed answer is asked for again on the
+     * caller's next attempt instead of being replayed; a cached entry that is no longer accepted is evicted.
+     *
+     * @param prompt The prompt to send.
+     * @param usable Whether a response can be parsed by the caller and is worth caching.
+     */
+    private CompletableFuture<ModelResponse> callModelCached(Map<String, String> prompt, Predicate<String> usable) {
+        if (responseCache == null) {
+            return caller.callModelAsync(prompt, false);
+        }
+        String key = ResponseCache.key(caller.getModel(), prompt);
+        String cached = responseCache.get(key);
+        if (cached != null) {
+            if (usable.test(cached)) {
+                logger.fine("Using cached model response " + key);
+                return CompletableFuture.completedFuture(new ModelResponse(cached, 0, 0));
+            }
+            logger.warning("Evicting unusable cached model response " + key);
+            responseCache.remove(key);
+        }
+        CompletableFuture<ModelResponse> call = caller.callModelAsync(prompt, false);
+        return AsyncAgentCompletion.cancelling(call.thenApply(response -> {
+            if (response != null && response.getResponse() != null && usable.test(response.getResponse())) {
+                responseCache.put(key, caller.getModel(), response.getResponse());
+            }
+            return response;
+        }), call);
+    }
+
+    private static boolean isNotBlank(String response) {
+        return !response.isBlank();
+    }
+
+    /**
+     * Whether an insert line analysis has both line numbers the test suite analysis retries for.
+     */
+    private static boolean hasInsertLines(String response) {
+        try {
+            Map<String, Object> yaml = YamlParser.loadYaml(response);
+            return yaml != null
+                    && yaml.get("relevant_line_number_to_insert_tests_after") instanceof Number
+                    && yaml.get("relevant_line_number_to_insert_imports_after") instanceof Number;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Turns the model call into the operation's result. Errors and empty answers become error results,
+     * so the returned future always completes normally unless it is cancelled, which cancels the call.
+     */
+    private <T> CompletableFuture<T> toResult(Map<String, String> prompt, CompletableFuture<ModelResponse> call,
+                                              ResultFactory<T> factory) {
+        return AsyncAgentCompletion.cancelling(call.handle((response, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                logger.log(Level.SEVERE, "Error calling configured AICaller model: " + cause.getMessage(), cause);
+                return factory.create("Error calling model: " + cause.getMessage(), 0, 0, prompt.get("user"));
+            }
+            if (response == null || response.getResponse() == null) {
+                logger.severe("Received null response from configured AICaller model.");
+                return factory.create("Error: No response from model", 0, 0, prompt.get("user"));
+            }
+            return factory.create(response.getResponse(), response.getPromptTokens(),
+                    response.getCompletionTokens(), prompt.get("user"));
+        }), call);
     }
 
 
@@ -30,6 +122,18 @@ public class DefaultAgentCompletion implements AgentCompletion {
             String codeCoverageReport, String language, String testFile,
             String testFileName, String testingFramework, String additionalInstructionsText,
             String additionalIncludesSection, String failedTestsSection
+    ) {
+        return generateTestsAsync(sourceFileName, maxTests, sourceFileNumbered, codeCoverageReport, language,
+                testFile, testFileName, testingFramework, additionalInstructionsText, additionalIncludesSection,
+                failedTestsSection).join();
+    }
+
+    @Override
+    public CompletableFuture<TestGenerationResult> generateTestsAsync(
+            String sourceFileName, int maxTests, String sourceFileNumbered,
+            String codeCoverageReport, String language, String testFile,
+            String testFileName, String testingFramework, String additionalInstructionsText,
+            String additionalIncludesSection, String failedTestsSection
     ) {
         Map<String, Object> variables = new HashMap<>();
         variables.put("source_file_name", sourceFileName);
@@ -47,35 +151,23 @@ public class DefaultAgentCompletion implements AgentCompletion {
         Map<String, String> prompt = promptBuilder.buildPrompt("test_generation_prompt", variables);
        // System.out.println("Sending prompt for test generation using configured AICaller model."+prompt);
 
-        try {
-
-            ModelResponse response = caller.callModel(prompt, true);
-
-            if (response != null && response.getResponse() != null) {
-                return new TestGenerationResult(
-                        response.getResponse(),
-                        response.getPromptTokens(),
-                        response.getCompletionTokens(),
-                        prompt.get("user")
-                );
-            } else {
-                logger.severe("Received null response from configured AICaller model.");
-                return new TestGenerationResult(
-                        "Error: No response from model", 0, 0, prompt.get("user")
-                );
-            }
-        } catch (IOException | InterruptedException e) {
-            logger.log(Level.SEVERE, "Error calling configured AICaller model: " + e.getMessage(), e);
-            return new TestGenerationResult(
-                    "Error calling model: " + e.getMessage(), 0, 0, prompt.get("user")
-            );
-        }
+        // Generation is never cached: each iteration must be able to get new tests.
+        return toResult(prompt, caller.callModelAsync(prompt, true), TestGenerationResult::new);
     }
 
     @Override
     public AnalysisResult analyzeTestFailure(
             String sourceFileName, String sourceFile, String processedTestFile,
             String stdout, String stderr, String testFileName
+    ) {
+        return analyzeTestFailureAsync(sourceFileName, sourceFile, processedTestFile, stdout, stderr, testFileName)
+                .join();
+    }
+
+    @Override
+    public CompletableFuture<AnalysisResult> analyzeTestFailureAsync(
+            String sourceFileName, String sourceFile, String processedTestFile,
+            String stdout, String stderr, String testFileName
     ) {
         Map<String, Object> variables = new HashMap<>();
         variables.put("source_file_name", sourceFileName);
@@ -88,34 +180,20 @@ public class DefaultAgentCompletion implements AgentCompletion {
         Map<String, String> prompt = promptBuilder.buildPrompt("analyze_test_run_failure", variables);
         //logger.info("Sending prompt for test failure analysis using configured AICaller model.");
 
-        try {
-            ModelResponse response = caller.callModel(prompt, false);
-
-            if (response != null && response.getResponse() != null) {
-                return new AnalysisResult(
-                        response.getResponse(),
-                        response.getPromptTokens(),
-                        response.getCompletionTokens(),
-                        prompt.get("user")
-                );
-            } else {
-                logger.severe("Received null response from configured AICaller model.");
-                return new AnalysisResult(
-                        "Error: No response from model", 0, 0, prompt.get("user")
-                );
-            }
-        } catch (IOException | InterruptedException e) {
-            logger.log(Level.SEVERE, "Error calling configured AICaller model: " + e.getMessage(), e);
-            return new AnalysisResult(
-                    "Error calling model: " + e.getMessage(), 0, 0, prompt.get("user")
-            );
-        }
+        return toResult(prompt, callModelCached(prompt, DefaultAgentCompletion::isNotBlank), AnalysisResult::new);
     }
 
     @Override
     public AnalysisResult analyzeTestInsertLine(
             String language, String testFileNumbered, String testFileName
 
+    ) {
+        return analyzeTestInsertLineAsync(language, testFileNumbered, testFileName).join();
+    }
+
+    @Override
+    public CompletableFuture<AnalysisResult> analyzeTestInsertLineAsync(
+            String language, String testFileNumbered, String testFileName
     ) {
         Map<String, Object> variables = new HashMap<>();
         variables.put("language", language);
@@ -125,34 +203,21 @@ public class DefaultAgentCompletion implements AgentCompletion {
         Map<String, String> prompt = promptBuilder.buildPrompt("analyze_suite_test_insert_line", variables);
         //System.out.println("Sending prompt for test insert line analysis using configured AICaller model."+prompt);
 
-        try {
-            ModelResponse response = caller.callModel(prompt, false);
-
-            if (response != null && response.getResponse() != null) {
-                return new AnalysisResult(
-                        response.getResponse(),
-                        response.getPromptTokens(),
-                        response.getCompletionTokens(),
-                        prompt.get("user")
-                );
-            } else {
-                logger.severe("Received null response from configured AICaller model.");
-                return new AnalysisResult(
-                        "Error: No response from model", 0, 0, prompt.get("user")
-                );
-            }
-        } catch (IOException | InterruptedException e) {
-            logger.log(Level.SEVERE, "Error calling configured AICaller model: " + e.getMessage(), e);
-            return new AnalysisResult(
-                    "Error calling model: " + e.getMessage(), 0, 0, prompt.get("user")
-            );
-        }
+        return toResult(prompt, callModelCached(prompt, DefaultAgentCompletion::hasInsertLines), AnalysisResult::new);
     }
 
     @Override
     public AnalysisResult analyzeTestAgainstContext(
             String language, String testFileContent, String testFileNameRel,
             String contextFilesNamesRel
+    ) {
+        return analyzeTestAgainstContextAsync(language, testFileContent, testFileNameRel, contextFilesNamesRel).join();
+    }
+
+    @Override
+    public CompletableFuture<AnalysisResult> analyzeTestAgainstContextAsync(
+            String language, String testFileContent, String testFileNameRel,
+            String contextFilesNamesRel
     ) {
         Map<String, Object> variables = new HashMap<>();
         variables.put("language", language);
@@ -163,34 +228,20 @@ public class DefaultAgentCompletion implements AgentCompletion {
         Map<String, String> prompt = promptBuilder.buildPrompt("analyze_test_against_context", variables);
         logger.info("Sending prompt for test analysis against context using configured AICaller model.");
 
-        try {
-            ModelResponse response = caller.callModel(prompt, false);
-
-            if (response != null && response.getResponse() != null) {
-                return new AnalysisResult(
-                        response.getResponse(),
-                        response.getPromptTokens(),
-                        response.getCompletionTokens(),
-                        prompt.get("user")
-                );
-            } else {
-                logger.severe("Received null response from configured AICaller model.");
-                return new AnalysisResult(
-                        "Error: No response from model", 0, 0, prompt.get("user")
-                );
-            }
-        } catch (IOException | InterruptedException e) {
-            logger.log(Level.SEVERE, "Error calling configured AICaller model: " + e.getMessage(), e);
-            return new AnalysisResult(
-                    "Error calling model: " + e.getMessage(), 0, 0, prompt.get("user")
-            );
-        }
+        return toResult(prompt, callModelCached(prompt, DefaultAgentCompletion::isNotBlank), AnalysisResult::new);
     }
 
 
-@Override
+    @Override
     public CommandAdaptationResult adaptTestCommandForSingleTest(
             String testFileRelativePath, String testCommand, String projectRootDir
+    ) {
+        return adaptTestCommandForSingleTestAsync(testFileRelativePath, testCommand, projectRootDir).join();
+    }
+
+    @Override
+    public CompletableFuture<CommandAdaptationResult> adaptTestCommandForSingleTestAsync(
+            String testFileRelativePath, String testCommand, String projectRootDir
     ) {
         Map<String, Object> variables = new HashMap<>();
         variables.put("test_file_relative_path", testFileRelativePath);
@@ -200,38 +251,25 @@ public class DefaultAgentCompletion implements AgentCompletion {
         Map<String, String> prompt = promptBuilder.buildPrompt("adapt_test_command_for_a_single_test_via_ai", variables);
        // logger.info("Sending prompt for command adaptation using configured AICaller model.");
 
-        try {
-            ModelResponse response = caller.callModel(prompt, false);
-
-
-            if (response == null || response.getResponse() == null) {
-                logger.severe("Received null response from configured AICaller model.");
-                return new CommandAdaptationResult(
-                        "Error: No response from model", 0, 0, prompt.get("user")
-                );
-            }
+        CompletableFuture<ModelResponse> modelCall = callModelCached(prompt,
+                response -> !parseNewCommandLine(response).startsWith("Error:"));
+        CompletableFuture<ModelResponse> call = AsyncAgentCompletion.cancelling(modelCall.thenApply(response ->
+                response == null || response.getResponse() == null ? response
+                        : new ModelResponse(parseNewCommandLine(response.getResponse()),
+                                response.getPromptTokens(), response.getCompletionTokens())), modelCall);
+        return toResult(prompt, call, CommandAdaptationResult::new);
+    }
 
-            String newCommandLine = null;
-            try {
-                Map<String, Object> responseYaml = YamlParser.loadYaml(response.getResponse());
-                if (responseYaml != null && responseYaml.containsKey("new_command_line")) {
-                    newCommandLine = ((String) responseYaml.get("new_command_line")).trim();
-                }
-            } catch (Exception e) {
-                logger.log(Level.SEVERE, "Failed parsing YAML for adapt_test_command. response: " + response.getResponse() + ". Error: " + e.getMessage(), e);
+    private String parseNewCommandLine(String response) {
+        String newCommandLine = null;
+        try {
+            Map<String, Object> responseYaml = YamlParser.loadYaml(response);
+            if (responseYaml != null && responseYaml.containsKey("new_command_line")) {
+                newCommandLine = ((String) responseYaml.get("new_command_line")).trim();
             }
-
-            return new CommandAdaptationResult(
-                    newCommandLine != null ? newCommandLine : "Error: Could not parse command",
-                    response.getPromptTokens(),
-                    response.getCompletionTokens(),
-                    prompt.get("user")
-            );
-        } catch (IOException | InterruptedException e) {
-            logger.log(Level.SEVERE, "Error calling configured AICaller model: " + e.getMessage(), e);
-            return new CommandAdaptationResult(
-                    "Error calling model: " + e.getMessage(), 0, 0, prompt.get("user")
-            );
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Failed parsing YAML for adapt_test_command. response: " + response + ". Error: " + e.getMessage(), e);
         }
+        return newCommandLine != null ? newCommandLine : "Error: Could not parse command";
     }
-}
\ No newline at end of file
+}
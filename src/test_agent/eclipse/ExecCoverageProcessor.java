@@ -0,0 +1,147 @@
+package test_agent.eclipse;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ILine;
+import org.jacoco.core.analysis.ISourceFileCoverage;
+
+/**
+ * ExecCoverageProcessor reads a JaCoCo execution data file (jacoco.exec) together with the compiled
+ * class files of the class under test and produces the same {@link CoverageProcessor.CoverageData} as
+ * the XML report. This removes the need for the build to run the {@code jacoco:report} goal on every
+ * validation cycle.
+ */
+public class ExecCoverageProcessor extends CoverageProcessor {
+
+    private static final Logger logger = Logger.getLogger(ExecCoverageProcessor.class.getName());
+
+    private final String classFilesDir;
+
+    /**
+     * Constructor.
+     *
+     * @param execFilePath  the path to the jacoco.exec execution data file.
+     * @param classFilesDir the directory containing the compiled main classes (e.g. target/classes).
+     * @param srcFilePath   the fully qualified path of the source file.
+     */
+    public ExecCoverageProcessor(String execFilePath, String classFilesDir, String srcFilePath) {
+        super(execFilePath, srcFilePath);
+        this.classFilesDir = classFilesDir;
+    }
+
+    /**
+     * Guesses the compiled classes directory from the location of the execution data file, following the
+     * Maven ({@code target/jacoco.exec}) and Gradle ({@code build/jacoco/test.exec}) conventions.
+     *
+     * @param execFilePath the path to the execution data file.
+     * @return the inferred classes directory, or the directory containing the execution data file.
+     */
+    public static String inferClassFilesDir(String execFilePath) {
+        Path execPath = Paths.get(execFilePath).toAbsolutePath();
+        for (Path dir = execPath.getParent(); dir != null; dir = dir.getParent()) {
+            String name = dir.getFileName() != null ? dir.getFileName().toString() : "";
+            if ("target".equals(name)) {
+                return dir.resolve("classes").toString();
+            }
+            if ("build".equals(name)) {
+                return dir.resolve("classes").resolve("java").resolve("main").toString();
+            }
+        }
+        logger.warning("Could not infer the classes directory for " + execFilePath
+                + "; using the directory of the execution data file.");
+        return execPath.getParent().toString();
+    }
+
+    /**
+     * Guesses the execution data file an XML report was rendered from, following the Maven
+     * ({@code target/site/jacoco/jacoco.xml} from {@code target/jacoco.exec}) and Gradle
+     * ({@code build/reports/jacoco/test/*.xml} from {@code build/jacoco/test.exec}) conventions.
+     *
+     * @param reportPath the path to the XML report, or to the execution data file itself.
+     * @return the execution data file, or null if there is none at the conventional location.
+     */
+    public static String inferExecFile(String reportPath) {
+        if (reportPath == null) {
+            return null;
+        }
+        if (reportPath.toLowerCase().endsWith(".exec")) {
+            return reportPath;
+        }
+        for (Path dir = Paths.get(reportPath).toAbsolutePath().getParent(); dir != null; dir = dir.getParent()) {
+            String name = dir.getFileName() != null ? dir.getFileName().toString() : "";
+            Path execFile = null;
+            if ("target".equals(name)) {
+                execFile = dir.resolve("jacoco.exec");
+            } else if ("build".equals(name)) {
+                execFile = dir.resolve("jacoco").resolve("test.exec");
+            }
+            if (execFile != null) {
+                return execFile.toFile().isFile() ? execFile.toString() : null;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected String getClassFilesDir() {
+        return classFilesDir;
+    }
+
+    @Override
+    protected CoverageData parseCoverageReport() {
+        String[] packageAndClass = extractPackageAndClassJava(srcFilePath);
+        String packagePath = packageAndClass[0].replace('.', '/');
+        String className = packageAndClass[1];
+
+        // An unshared index analyzes only the class files of this source file.
+        CoverageReportIndex.SourceFileCoverage coverage = new ExecCoverageReportIndex(jacocoReportPath, classFilesDir)
+                .find(packagePath, className + ".java");
+        if (coverage == null) {
+            return new CoverageData.Builder().build();
+        }
+        return coverage.getCoverage();
+    }
+
+    /**
+     * Converts an analyzed source file to {@link CoverageData}, by the same rule as the XML report: a line
+     * without missed instructions is covered. Lines without code are skipped.
+     */
+    static CoverageData toCoverageData(ISourceFileCoverage sourceFile) {
+        CoverageData.Builder coverage = new CoverageData.Builder();
+        for (int nr = sourceFile.getFirstLine(); nr <= sourceFile.getLastLine(); nr++) {
+            ILine line = sourceFile.getLine(nr);
+            if (line.getStatus() == ICounter.EMPTY) {
+                continue;
+            }
+            coverage.addLine(nr, line.getInstructionCounter().getMissedCount(),
+                    line.getInstructionCounter().getCoveredCount(),
+                    line.getBranchCounter().getMissedCount(), line.getBranchCounter().getCoveredCount());
+        }
+        return coverage.build();
+    }
+
+    /**
+     * Lists the class files compiled from the source file: the top-level class and its nested,
+     * local and anonymous classes.
+     */
+    static List<File> findClassFiles(String classFilesDir, String packagePath, String className) {
+        List<File> classFiles = new ArrayList<>();
+        File packageDir = packagePath.isEmpty() ? new File(classFilesDir) : new File(classFilesDir, packagePath);
+        File[] candidates = packageDir.listFiles((dir, name) ->
+                name.equals(className + ".class") || (name.startsWith(className + "$") && name.endsWith(".class")));
+        if (candidates == null || candidates.length == 0) {
+            logger.warning("No class files found for " + className + " in " + packageDir);
+            return classFiles;
+        }
+        for (File candidate : candidates) {
+            classFiles.add(candidate);
+        }
+        return classFiles;
+    }
+}
@@ -0,0 +1,124 @@
+package test_agent.eclipse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.ISourceFileCoverage;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.tools.ExecFileLoader;
+
+/**
+ * {@link CoverageReportIndex} of a JaCoCo execution data file. The execution data is loaded once; class files
+ * are analyzed per looked-up source file and remembered, so a single target does not pay for analyzing the
+ * whole classes directory. Listing all source files analyzes the whole directory once.
+ */
+public class ExecCoverageReportIndex extends CoverageReportIndex {
+
+    private static final Logger logger = Logger.getLogger(ExecCoverageReportIndex.class.getName());
+
+    private final String classFilesDir;
+    private final Map<String, SourceFileCoverage> analyzed = new ConcurrentHashMap<>();
+    private ExecutionDataStore executionData;
+
+    /**
+     * @param execFilePath  the path to the jacoco.exec execution data file.
+     * @param classFilesDir the directory containing the compiled main classes (e.g. target/classes).
+     */
+    public ExecCoverageReportIndex(String execFilePath, String classFilesDir) {
+        super(execFilePath);
+        this.classFilesDir = classFilesDir;
+    }
+
+    @Override
+    public SourceFileCoverage find(String packagePath, String sourceFileName) {
+        String key = key(packagePath, sourceFileName);
+        SourceFileCoverage coverage = analyzed.get(key);
+        if (coverage != null) {
+            return coverage;
+        }
+        ISourceFileCoverage sourceFile;
+        try {
+            sourceFile = analyzeSourceFile(getExecutionData(), classFilesDir, packagePath, sourceFileName);
+        } catch (IOException e) {
+            logger.severe("Error analyzing execution data " + reportPath + ": " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+        if (sourceFile == null) {
+            return null;
+        }
+        coverage = toCoverage(sourceFile);
+        analyzed.put(key, coverage);
+        return coverage;
+    }
+
+    /**
+     * Analyzes the class files compiled from one source file against execution data.
+     *
+     * @param executionData  the execution data.
+     * @param classFilesDir  the directory containing the compiled main classes.
+     * @param packagePath    the package in report form, e.g. {@code com/example}.
+     * @param sourceFileName the source file name, e.g. {@code Foo.java}.
+     * @return the coverage of the source file, or null if none of its classes were found.
+     * @throws IOException if a class file cannot be read.
+     */
+    static ISourceFileCoverage analyzeSourceFile(ExecutionDataStore executionData, String classFilesDir,
+                                                 String packagePath, String sourceFileName) throws IOException {
+        String className = sourceFileName.endsWith(".java")
+                ? sourceFileName.substring(0, sourceFileName.length() - ".java".length())
+                : sourceFileName;
+        CoverageBuilder coverageBuilder = new CoverageBuilder();
+        Analyzer analyzer = new Analyzer(executionData, coverageBuilder);
+        for (File classFile : ExecCoverageProcessor.findClassFiles(classFilesDir, packagePath, className)) {
+            analyzer.analyzeAll(classFile);
+        }
+        for (ISourceFileCoverage sourceFile : coverageBuilder.getSourceFiles()) {
+            if (sourceFileName.equals(sourceFile.getName()) && packagePath.equals(sourceFile.getPackageName())) {
+                return sourceFile;
+            }
+        }
+        logger.warning("No coverage data found for " + key(packagePath, sourceFileName) + " in " + classFilesDir);
+        return null;
+    }
+
+    @Override
+    protected Map<String, SourceFileCoverage> parse() {
+        CoverageBuilder coverageBuilder = new CoverageBuilder();
+        analyze(coverageBuilder, new File(classFilesDir));
+        Map<String, SourceFileCoverage> files = new LinkedHashMap<>();
+        for (ISourceFileCoverage sourceFile : coverageBuilder.getSourceFiles()) {
+            SourceFileCoverage coverage = toCoverage(sourceFile);
+            files.put(key(coverage.getPackagePath(), coverage.getSourceFileName()), coverage);
+        }
+        analyzed.putAll(files);
+        return files;
+    }
+
+    private void analyze(CoverageBuilder coverageBuilder, File classFilesDir) {
+        try {
+            new Analyzer(getExecutionData(), coverageBuilder).analyzeAll(classFilesDir);
+        } catch (IOException e) {
+            logger.severe("Error analyzing execution data " + reportPath + ": " + e.getMessage());
+            throw new RuntimeException(e);
+        }
+    }
+
+    private synchronized ExecutionDataStore getExecutionData() throws IOException {
+        if (executionData == null) {
+            ExecFileLoader loader = new ExecFileLoader();
+            loader.load(new File(reportPath));
+            executionData = loader.getExecutionDataStore();
+        }
+        return executionData;
+    }
+
+    private static SourceFileCoverage toCoverage(ISourceFileCoverage sourceFile) {
+        return new SourceFileCoverage(sourceFile.getPackageName(), sourceFile.getName(),
+                ExecCoverageProcessor.toCoverageData(sourceFile));
+    }
+}
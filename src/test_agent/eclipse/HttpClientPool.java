@@ -0,0 +1,177 @@
+package test_agent.eclipse;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide {@link HttpClient}s shared by all {@link AICaller}s.
+ * An {@code HttpClient} keeps its connections alive between requests and multiplexes concurrent HTTP/2 streams
+ * over one connection, so sharing a client across agent runs and jobs means the TLS handshake is paid once
+ * instead of once per run. Clients are cached per {@link Settings}; callers asking for the same settings get
+ * the same client.
+ */
+public final class HttpClientPool {
+
+    private static final Logger logger = Logger.getLogger(HttpClientPool.class.getName());
+
+    // Read by the JDK when its connection pool is first used, so it must be set before any client is built.
+    private static final String KEEP_ALIVE_PROPERTY = "jdk.httpclient.keepalive.timeout";
+
+    private static final Map<Settings, HttpClient> clients = new ConcurrentHashMap<>();
+    private static final Executor DEFAULT_EXECUTOR = newDefaultExecutor();
+    private static volatile Settings defaultSettings = new Settings.Builder().build();
+
+    /**
+     * Connection settings of a shared client.
+     */
+    public static final class Settings {
+        private final HttpClient.Version version;
+        private final Duration connectTimeout;
+        private final Duration keepAlive;
+        private final Executor executor;
+
+        private Settings(Builder builder) {
+            this.version = builder.version;
+            this.connectTimeout = builder.connectTimeout;
+            this.keepAlive = builder.keepAlive;
+            this.executor = builder.executor;
+        }
+
+        public HttpClient.Version getVersion() {
+            return version;
+        }
+
+        public Duration getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public Duration getKeepAlive() {
+            return keepAlive;
+        }
+
+        public Executor getExecutor() {
+            return executor;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Settings)) return false;
+            Settings other = (Settings) o;
+            return executor == other.executor && version == other.version
+                    && connectTimeout.equals(other.connectTimeout) && keepAlive.equals(other.keepAlive);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(version, connectTimeout, keepAlive, System.identityHashCode(executor));
+        }
+
+        public static class Builder {
+            private HttpClient.Version version = HttpClient.Version.HTTP_2;
+            private Duration connectTimeout = Duration.ofSeconds(200);
+            private Duration keepAlive = Duration.ofMinutes(5);
+            private Executor executor = DEFAULT_EXECUTOR;
+
+            /**
+             * The preferred protocol version; HTTP/2 falls back to HTTP/1.1 when the server does not offer it.
+             */
+            public Builder version(HttpClient.Version version) {
+                this.version = Objects.requireNonNull(version);
+                return this;
+            }
+
+            public Builder connectTimeout(Duration connectTimeout) {
+                this.connectTimeout = Objects.requireNonNull(connectTimeout);
+                return this;
+            }
+
+            /**
+             * How long an idle connection is kept open for reuse. The JDK reads this once per JVM, so only the
+             * first client built applies it, and only when {@code jdk.httpclient.keepalive.timeout} is not set.
+             */
+            public Builder keepAlive(Duration keepAlive) {
+                this.keepAlive = Objects.requireNonNull(keepAlive);
+                return this;
+            }
+
+            /**
+             * The executor handling responses and streaming reads. Blocking calls wait on it, so a bounded
+             * executor must have at least as many threads as concurrent calls.
+             */
+            public Builder executor(Executor executor) {
+                this.executor = Objects.requireNonNull(executor);
+                return this;
+            }
+
+            public Settings build() {
+                return new Settings(this);
+            }
+        }
+    }
+
+    private HttpClientPool() {
+    }
+
+    /**
+     * Changes the settings used by {@link #getDefaultClient()}. Clients already handed out are not affected.
+     *
+     * @param settings The new default settings.
+     */
+    public static void setDefaultSettings(Settings settings) {
+        defaultSettings = Objects.requireNonNull(settings, "Settings cannot be null");
+    }
+
+    public static Settings getDefaultSettings() {
+        return defaultSettings;
+    }
+
+    /**
+     * @return the shared client for the default settings.
+     */
+    public static HttpClient getDefaultClient() {
+        return getClient(defaultSettings);
+    }
+
+    /**
+     * Returns the shared client for the given settings, building it on first use.
+     *
+     * @param settings The connection settings.
+     * @return The shared client.
+     */
+    public static HttpClient getClient(Settings settings) {
+        return clients.computeIfAbsent(settings, HttpClientPool::createClient);
+    }
+
+    private static HttpClient createClient(Settings settings) {
+        if (System.getProperty(KEEP_ALIVE_PROPERTY) == null) {
+            System.setProperty(KEEP_ALIVE_PROPERTY, Long.toString(settings.getKeepAlive().getSeconds()));
+        }
+        logger.info("Creating shared HTTP client (" + settings.getVersion() + ")");
+        return HttpClient.newBuilder()
+                .version(settings.getVersion())
+                .connectTimeout(settings.getConnectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(settings.getExecutor())
+                .build();
+    }
+
+    private static Executor newDefaultExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "coveragent-http-" + counter.incrementAndGet());
+            // Never keep the IDE from shutting down.
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newCachedThreadPool(factory);
+    }
+}
@@ -0,0 +1,282 @@
+package test_agent.eclipse;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Platform;
+import org.osgi.framework.Bundle;
+
+import test_agent.results.CompilationResult;
+import test_agent.utils.FileUtils;
+
+/**
+ * Executes generated tests without shelling out to the build tool.
+ * The modified test class is compiled on its own by {@link TestCompiler} against the project class path,
+ * and only the requested test methods are run through the JUnit Platform Launcher in a warm worker JVM from a
+ * {@link TestWorkerPool}, with a JaCoCo agent attached. The worker resets the agent before each run and writes
+ * the execution data of just that run to a file, which {@link ExecCoverageProcessor} reads. Several test methods
+ * can also be run as separate coverage sessions of one request, to attribute coverage to each test. Runs may be issued
+ * from several threads; each compiles into its own directory and takes its own worker.
+ * <p>
+ * The engine returns {@link Runner.CommandResult}s so callers can treat it like {@link Runner#runCommand}.
+ */
+public class JUnitLauncherEngine implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(JUnitLauncherEngine.class.getName());
+
+    // Eclipse bundles that provide the JUnit Platform Launcher when the project does not declare it.
+    private static final List<String> LAUNCHER_BUNDLES = Arrays.asList(
+            "org.junit.platform.launcher",
+            "org.junit.platform.engine",
+            "org.junit.platform.commons",
+            "org.opentest4j"
+    );
+
+    /**
+     * The result of a single engine run: the command-style result, the compilation and the execution data file.
+     */
+    public static class EngineResult {
+        private final Runner.CommandResult commandResult;
+        private final String execFile;
+        private final CompilationResult compilation;
+        private final List<TestWorkerPool.Session> sessions;
+
+        public EngineResult(Runner.CommandResult commandResult, String execFile, CompilationResult compilation) {
+            this(commandResult, execFile, compilation, new ArrayList<>());
+        }
+
+        public EngineResult(Runner.CommandResult commandResult, String execFile, CompilationResult compilation,
+                            List<TestWorkerPool.Session> sessions) {
+            this.commandResult = commandResult;
+            this.execFile = execFile;
+            this.compilation = compilation;
+            this.sessions = sessions;
+        }
+
+        /**
+         * @return the per-method sessions of {@link #runTestSessions}; empty for other runs.
+         */
+        public List<TestWorkerPool.Session> getSessions() {
+            return sessions;
+        }
+
+        public Runner.CommandResult getCommandResult() {
+            return commandResult;
+        }
+
+        /**
+         * @return the JaCoCo execution data of the run, or null if the tests did not run or no agent is attached.
+         */
+        public String getExecFile() {
+            return execFile;
+        }
+
+        public boolean isCompiled() {
+            return compilation == null || compilation.isSuccess();
+        }
+
+        /**
+         * @return the compilation of the test source, or null if the run failed before compiling.
+         */
+        public CompilationResult getCompilation() {
+            return compilation;
+        }
+    }
+
+    private final String testClassesDir;
+    private final TestCompiler testCompiler;
+    private final Path workDir;
+    private final TestWorkerPool workerPool;
+    private final AtomicInteger runCounter = new AtomicInteger();
+    private volatile CancellationToken cancellationToken;
+
+    /**
+     * @param projectClasspath The project's runtime class path (main classes and test dependencies).
+     * @param testClassesDir   The compiled test classes directory; it is loaded per run, never by the workers.
+     * @param jacocoAgentPath  The jacocoagent.jar to attach, or null to run without coverage.
+     * @param coverageIncludes JaCoCo {@code includes} pattern (e.g. {@code com.acme.Foo*}), or null for all classes.
+     * @param workers          The number of worker JVMs kept warm.
+     * @throws IOException If the engine's work directory cannot be created.
+     */
+    public JUnitLauncherEngine(List<String> projectClasspath, String testClassesDir, String jacocoAgentPath,
+                               String coverageIncludes, int workers) throws IOException {
+        this.testClassesDir = testClassesDir;
+        this.testCompiler = new TestCompiler(projectClasspath, testClassesDir);
+        this.workDir = Files.createTempDirectory("coveragent-engine-");
+
+        List<String> workerClasspath = new ArrayList<>();
+        for (String entry : projectClasspath) {
+            // Test classes are loaded per run so that recompiled versions are picked up.
+            if (!Paths.get(entry).equals(Paths.get(testClassesDir))) {
+                workerClasspath.add(entry);
+            }
+        }
+        workerClasspath.addAll(findBundledLauncherClasspath());
+        this.workerPool = new TestWorkerPool(workerClasspath, jacocoAgentPath, coverageIncludes, workers);
+        this.workerPool.prestart();
+    }
+
+    public JUnitLauncherEngine(List<String> projectClasspath, String testClassesDir, String jacocoAgentPath,
+                               String coverageIncludes) throws IOException {
+        this(projectClasspath, testClassesDir, jacocoAgentPath, coverageIncludes, 1);
+    }
+
+    /**
+     * Sets the time one run may take in its worker JVM before the worker's process tree is killed and the run
+     * fails, like the timeout of a test command.
+     *
+     * @param timeoutSeconds The timeout in seconds; non-positive values keep the current timeout.
+     */
+    public void setRunTimeoutSeconds(int timeoutSeconds) {
+        workerPool.setResponseTimeoutMillis(timeoutSeconds * 1000L);
+    }
+
+    /**
+     * Makes runs stop as soon as the token is cancelled: a run that has not started throws
+     * {@link java.util.concurrent.CancellationException}, and a running one also destroys its worker JVM.
+     *
+     * @param cancellationToken The token, or null.
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+        workerPool.setCancellationToken(cancellationToken);
+    }
+
+    /**
+     * @return true if this JVM can compile Java sources, which the engine requires.
+     */
+    public static boolean isCompilerAvailable() {
+        return TestCompiler.isAvailable();
+    }
+
+    /**
+     * Locates jacocoagent.jar inside the org.jacoco.agent bundle installed with EclEmma.
+     *
+     * @return The agent jar path, or null if the bundle is not installed.
+     */
+    public static String findBundledJacocoAgent() {
+        try {
+            Bundle bundle = Platform.getBundle("org.jacoco.agent");
+            if (bundle == null) {
+                return null;
+            }
+            URL url = FileLocator.find(bundle, new org.eclipse.core.runtime.Path("jacocoagent.jar"), null);
+            return url != null ? new File(FileLocator.toFileURL(url).getPath()).getAbsolutePath() : null;
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Could not locate the JaCoCo agent bundle: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the jar locations of the Eclipse bundles providing the JUnit Platform Launcher, so that projects
+     * whose test class path only contains the Jupiter API and engine can still be launched.
+     *
+     * @return The bundle files that could be located.
+     */
+    public static List<String> findBundledLauncherClasspath() {
+        List<String> entries = new ArrayList<>();
+        for (String name : LAUNCHER_BUNDLES) {
+            try {
+                Bundle bundle = Platform.getBundle(name);
+                if (bundle != null) {
+                    FileLocator.getBundleFileLocation(bundle).ifPresent(file -> entries.add(file.getAbsolutePath()));
+                }
+            } catch (RuntimeException e) {
+                logger.fine("Could not locate bundle " + name + ": " + e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Compiles the given test source and runs the selected test methods in the worker JVM.
+     *
+     * @param testSource    The full source of the test compilation unit.
+     * @param testClassName The fully qualified name of the test class.
+     * @param testMethods   The test methods to run; empty to run the whole class.
+     * @return The run result. A compilation failure is reported with exit code 1 and the diagnostics on stderr.
+     */
+    public EngineResult runTests(String testSource, String testClassName, List<String> testMethods) {
+        long startTime = System.currentTimeMillis();
+        if (cancellationToken != null) {
+            cancellationToken.throwIfCancelled();
+        }
+        Path runDir = workDir.resolve("run-" + runCounter.incrementAndGet());
+        Path classesOut = runDir.resolve("classes");
+        try {
+            CompilationResult compilation = testCompiler.compile(testSource, testClassName, classesOut);
+            if (!compilation.isSuccess()) {
+                String diagnostics = "Compilation of " + testClassName + " failed:" + System.lineSeparator()
+                        + compilation.formatDiagnostics();
+                return new EngineResult(new Runner.CommandResult("", diagnostics, 1, startTime), null, compilation);
+            }
+
+            String execFile = workerPool.hasCoverage() ? runDir.resolve("jacoco.exec").toString() : null;
+            Runner.CommandResult result = workerPool.runTests(
+                    Arrays.asList(classesOut.toString(), testClassesDir), testClassName, testMethods, execFile);
+            return new EngineResult(result, execFile, compilation);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error running tests in worker JVM: " + e.getMessage(), e);
+            return new EngineResult(new Runner.CommandResult("", "Error running tests in worker JVM: " + e.getMessage(),
+                    -1, startTime), null, null);
+        }
+    }
+
+    /**
+     * Compiles the given test source once and runs the selected test methods one after the other, each as its
+     * own coverage session, so the coverage of every method is known from a single compilation and request.
+     *
+     * @param testSource    The full source of the test compilation unit.
+     * @param testClassName The fully qualified name of the test class.
+     * @param testMethods   The test methods to run, in order.
+     * @return The run result with one session per method. A compilation failure is reported with exit code 1,
+     *         the diagnostics on stderr and no sessions.
+     */
+    public EngineResult runTestSessions(String testSource, String testClassName, List<String> testMethods) {
+        long startTime = System.currentTimeMillis();
+        if (cancellationToken != null) {
+            cancellationToken.throwIfCancelled();
+        }
+        Path runDir = workDir.resolve("run-" + runCounter.incrementAndGet());
+        Path classesOut = runDir.resolve("classes");
+        try {
+            CompilationResult compilation = testCompiler.compile(testSource, testClassName, classesOut);
+            if (!compilation.isSuccess()) {
+                String diagnostics = "Compilation of " + testClassName + " failed:" + System.lineSeparator()
+                        + compilation.formatDiagnostics();
+                return new EngineResult(new Runner.CommandResult("", diagnostics, 1, startTime), null, compilation);
+            }
+
+            List<TestWorkerPool.Session> sessions = new ArrayList<>();
+            Runner.CommandResult result = workerPool.runTestSessions(
+                    Arrays.asList(classesOut.toString(), testClassesDir), testClassName, testMethods,
+                    runDir.resolve("sessions").toString(), sessions);
+            return new EngineResult(result, null, compilation, sessions);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error running tests in worker JVM: " + e.getMessage(), e);
+            return new EngineResult(new Runner.CommandResult("", "Error running tests in worker JVM: " + e.getMessage(),
+                    -1, startTime), null, null);
+        }
+    }
+
+    /**
+     * Stops the worker JVMs and deletes the engine's temporary files.
+     */
+    @Override
+    public void close() {
+        workerPool.close();
+        FileUtils.deleteDirectory(workDir);
+    }
+}
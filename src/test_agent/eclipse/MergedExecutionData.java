@@ -0,0 +1,91 @@
+package test_agent.eclipse;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.jacoco.core.analysis.ISourceFileCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.tools.ExecFileLoader;
+
+/**
+ * JaCoCo execution data of several test runs, merged probe by probe as JaCoCo merges the data of a suite.
+ * The coverage of runs cannot be merged from their reports: a run covering one branch of a line and a run
+ * covering the other both report one covered branch, while together they cover both. Merging the probes and
+ * analyzing the class files again gives the exact coverage of the runs together, in every metric.
+ * Instances are immutable; merging returns a new instance.
+ */
+public final class MergedExecutionData {
+
+    private final ExecutionDataStore store;
+
+    private MergedExecutionData(ExecutionDataStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Loads the execution data written by one test run.
+     *
+     * @param execFilePath the path to the jacoco.exec execution data file.
+     * @return the execution data of the run.
+     * @throws IOException if the file cannot be read.
+     */
+    public static MergedExecutionData load(String execFilePath) throws IOException {
+        ExecFileLoader loader = new ExecFileLoader();
+        loader.load(new File(execFilePath));
+        return new MergedExecutionData(loader.getExecutionDataStore());
+    }
+
+    /**
+     * Merges the execution data of another run into a copy of this data.
+     *
+     * @param execFilePath the path to the execution data file of the other run.
+     * @return the execution data of both.
+     * @throws IOException           if the file cannot be read.
+     * @throws IllegalStateException if a class was compiled differently in the two runs.
+     */
+    public MergedExecutionData merge(String execFilePath) throws IOException {
+        return merge(load(execFilePath));
+    }
+
+    /**
+     * Merges other execution data into a copy of this data.
+     *
+     * @param other the execution data of the other runs.
+     * @return the execution data of both.
+     * @throws IllegalStateException if a class was compiled differently in the two runs.
+     */
+    public MergedExecutionData merge(MergedExecutionData other) {
+        ExecutionDataStore merged = copy(store);
+        for (ExecutionData data : other.store.getContents()) {
+            merged.put(new ExecutionData(data.getId(), data.getName(), data.getProbes().clone()));
+        }
+        return new MergedExecutionData(merged);
+    }
+
+    /**
+     * Analyzes the classes of one source file against the merged execution data.
+     *
+     * @param classFilesDir the directory containing the compiled main classes (e.g. target/classes).
+     * @param srcFilePath   the fully qualified path of the source file.
+     * @return the coverage of the source file; empty if its classes are not in the directory.
+     * @throws IOException if the class files cannot be read.
+     */
+    public CoverageProcessor.CoverageData analyze(String classFilesDir, String srcFilePath) throws IOException {
+        String[] packageAndClass = CoverageProcessor.extractPackageAndClassJava(srcFilePath);
+        ISourceFileCoverage sourceFile = ExecCoverageReportIndex.analyzeSourceFile(store, classFilesDir,
+                packageAndClass[0].replace('.', '/'), packageAndClass[1] + ".java");
+        if (sourceFile == null) {
+            return new CoverageProcessor.CoverageData.Builder().build();
+        }
+        return ExecCoverageProcessor.toCoverageData(sourceFile);
+    }
+
+    private static ExecutionDataStore copy(ExecutionDataStore store) {
+        ExecutionDataStore copy = new ExecutionDataStore();
+        for (ExecutionData data : store.getContents()) {
+            copy.put(new ExecutionData(data.getId(), data.getName(), data.getProbes().clone()));
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,222 @@
+package test_agent.eclipse;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.logging.Logger;
+
+/**
+ * Captures one output stream of a command with bounded memory.
+ * The first characters are kept as the head and the last lines in a ring buffer as the tail. As long as the
+ * whole output fits into both, nothing is lost; once the tail has to drop a line, or a line is longer than the
+ * head or tail could hold and is shortened, the complete output so far is written to a temporary file and
+ * every further line is appended to it. {@link #getText()} then returns the
+ * head and the tail with a marker in between, and {@link #openReader()} streams the complete output from the
+ * file. Memory use therefore does not grow with the length of the output.
+ */
+public class OutputCapture implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(OutputCapture.class.getName());
+
+    // Long enough for the build and test summary Maven and Gradle print at the start and the end.
+    public static final int DEFAULT_HEAD_CHARS = 16 * 1024;
+    public static final int DEFAULT_TAIL_CHARS = 64 * 1024;
+
+    // Spill files kept on disk; older ones are deleted when a new one is created.
+    private static final int MAX_SPILL_FILES = 16;
+    private static final Deque<Path> spillFiles = new ArrayDeque<>();
+
+    private final String name;
+    private final int headChars;
+    private final int tailChars;
+    private final StringBuilder head = new StringBuilder();
+    private final Deque<String> tail = new ArrayDeque<>();
+    private int tailLength;
+    private long omittedLines;
+    private long shortenedLines;
+    private Path spillFile;
+    private BufferedWriter spill;
+    private boolean spillFailed;
+    private boolean closed;
+
+    /**
+     * @param name      The name of the stream, used for the temporary file, e.g. "stdout".
+     * @param headChars The number of characters kept from the start of the output.
+     * @param tailChars The number of characters kept from the end of the output.
+     */
+    public OutputCapture(String name, int headChars, int tailChars) {
+        this.name = name;
+        this.headChars = headChars;
+        this.tailChars = tailChars;
+    }
+
+    /**
+     * Adds one line of output; the line separator is added here.
+     *
+     * @param line The line, without separator.
+     */
+    public synchronized void appendLine(String line) {
+        String text = line + System.lineSeparator();
+        if (spill != null) {
+            write(text);
+        }
+        boolean toHead = tail.isEmpty() && head.length() < headChars;
+        int budget = toHead ? headChars - head.length() : tailChars;
+        if (text.length() > budget) {
+            // A single line, e.g. a serialized object in a log, must not hold megabytes in memory either.
+            if (canStartSpill()) {
+                startSpill();
+                if (spill != null) {
+                    write(text);
+                }
+            }
+            text = shorten(text, budget);
+            shortenedLines++;
+        }
+        if (toHead) {
+            head.append(text);
+            return;
+        }
+        tail.addLast(text);
+        tailLength += text.length();
+        while (tailLength > tailChars && tail.size() > 1) {
+            if (canStartSpill()) {
+                startSpill();
+            }
+            tailLength -= tail.removeFirst().length();
+            omittedLines++;
+        }
+    }
+
+    private static String shorten(String text, int budget) {
+        String marker = "[... " + (text.length() - budget) + " characters omitted]" + System.lineSeparator();
+        return text.substring(0, Math.max(0, budget - marker.length())) + marker;
+    }
+
+    /**
+     * @return the whole output, or its head and tail if it was too long to keep in memory.
+     */
+    public synchronized String getText() {
+        StringBuilder text = new StringBuilder(head.length() + tailLength + 128);
+        text.append(head);
+        if (isTruncated()) {
+            text.append("[... ");
+            if (omittedLines > 0) {
+                text.append(omittedLines).append(" lines omitted");
+            } else {
+                text.append(shortenedLines).append(" long lines shortened");
+            }
+            if (spillFile != null) {
+                text.append("; the complete output is in ").append(spillFile);
+            }
+            text.append(" ...]").append(System.lineSeparator());
+        }
+        for (String line : tail) {
+            text.append(line);
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return true if {@link #getText()} leaves out part of the output.
+     */
+    public synchronized boolean isTruncated() {
+        return omittedLines > 0 || shortenedLines > 0;
+    }
+
+    /**
+     * @return the file holding the complete output, or null if it fit into memory.
+     */
+    public synchronized Path getSpillFile() {
+        return spillFile;
+    }
+
+    /**
+     * Opens the complete output for reading, from the spill file if there is one.
+     *
+     * @return A reader of the whole output; the caller closes it.
+     * @throws IOException If the spill file cannot be read.
+     */
+    public synchronized Reader openReader() throws IOException {
+        if (spill != null) {
+            spill.flush();
+        }
+        if (spillFile == null || !Files.exists(spillFile)) {
+            // The spill file failed or was deleted to make room for newer ones.
+            return new StringReader(getText());
+        }
+        return Files.newBufferedReader(spillFile, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Finishes the spill file. The captured text and the file stay available; lines added later are only kept
+     * in memory.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (spill != null) {
+            try {
+                spill.close();
+            } catch (IOException e) {
+                logger.warning("Error closing " + spillFile + ": " + e.getMessage());
+            }
+            spill = null;
+        }
+    }
+
+    private boolean canStartSpill() {
+        return spill == null && spillFile == null && !spillFailed && !closed;
+    }
+
+    private void startSpill() {
+        try {
+            spillFile = Files.createTempFile("coveragent-" + name, ".log");
+            spillFile.toFile().deleteOnExit();
+            spill = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8);
+            spill.write(head.toString());
+            for (String line : tail) {
+                spill.write(line);
+            }
+            registerSpillFile(spillFile);
+        } catch (IOException e) {
+            logger.warning("Could not write the " + name + " output to a temporary file; only its head and tail "
+                    + "are kept: " + e.getMessage());
+            close();
+            spillFile = null;
+            spillFailed = true;
+        }
+    }
+
+    private void write(String text) {
+        try {
+            spill.write(text);
+        } catch (IOException e) {
+            logger.warning("Error writing " + spillFile + "; only the head and tail of the " + name
+                    + " output are kept: " + e.getMessage());
+            close();
+            spillFile = null;
+            spillFailed = true;
+        }
+    }
+
+    private static void registerSpillFile(Path file) {
+        synchronized (spillFiles) {
+            spillFiles.addLast(file);
+            while (spillFiles.size() > MAX_SPILL_FILES) {
+                try {
+                    Files.deleteIfExists(spillFiles.removeFirst());
+                } catch (IOException e) {
+                    logger.fine("Could not delete an old output file: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
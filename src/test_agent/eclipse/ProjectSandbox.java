@@ -0,0 +1,225 @@
+package test_agent.eclipse;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * A private, disposable copy of a project tree used to build and test one candidate in isolation.
+ * Everything under a {@code src} directory is copied, so build steps that rewrite sources in place
+ * (formatters, code generators) only change the sandbox. Other files, such as libraries and build scripts,
+ * are hard-linked where the file system allows it and copied otherwise; they are shared with the original
+ * project and must only be modified through {@link #writeFile(String, String)}, which replaces the link
+ * instead of writing through it. Build output next to the project root or a module build file, and
+ * VCS and IDE directories, are not carried over, so every sandbox builds from its own sources.
+ */
+public class ProjectSandbox implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(ProjectSandbox.class.getName());
+
+    // Directories that hold IDE state or VCS metadata and are never shared with a sandbox, at any depth.
+    private static final Set<String> METADATA_DIRECTORIES = Set.of(
+            ".git", ".svn", ".hg", ".gradle", ".idea"
+    );
+
+    // Build output directories; only skipped at the project root or next to a module build file, since a
+    // source package may have the same name (e.g. src/main/java/com/acme/build).
+    private static final Set<String> BUILD_OUTPUT_DIRECTORIES = Set.of("target", "build", "bin", "out");
+
+    private static final String[] BUILD_FILES = {"pom.xml", "build.gradle", "build.gradle.kts"};
+
+    // Files below a directory of this name are always copied, never linked.
+    private static final String SOURCE_DIRECTORY = "src";
+
+    // Flipped once hard links fail (e.g. the temp directory is on another file system).
+    private static volatile boolean hardLinksSupported = true;
+
+    private final Path projectRoot;
+    private final Path sandboxRoot;
+
+    private ProjectSandbox(Path projectRoot, Path sandboxRoot) {
+        this.projectRoot = projectRoot;
+        this.sandboxRoot = sandboxRoot;
+    }
+
+    /**
+     * Creates a sandbox mirroring the given project root in a new temporary directory.
+     *
+     * @param projectRoot The root directory of the project.
+     * @return The sandbox. Close it to delete the temporary tree.
+     * @throws IOException              If the tree cannot be mirrored.
+     * @throws IllegalArgumentException If no project root is given.
+     */
+    public static ProjectSandbox create(String projectRoot) throws IOException {
+        if (projectRoot == null || projectRoot.isBlank()) {
+            throw new IllegalArgumentException("A sandbox needs the project root to mirror");
+        }
+        Path source = Paths.get(projectRoot).toAbsolutePath().normalize();
+        Path target = Files.createTempDirectory("coveragent-sandbox-");
+        ProjectSandbox sandbox = new ProjectSandbox(source, target);
+        try {
+            sandbox.mirror();
+        } catch (IOException | RuntimeException e) {
+            sandbox.close();
+            throw e;
+        }
+        return sandbox;
+    }
+
+    private void mirror() throws IOException {
+        Files.walkFileTree(projectRoot, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(projectRoot) && isExcluded(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                Files.createDirectories(sandboxRoot.resolve(projectRoot.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path relative = projectRoot.relativize(file);
+                Path target = sandboxRoot.resolve(relative);
+                if (hardLinksSupported && !isSource(relative)) {
+                    try {
+                        Files.createLink(target, file);
+                        return FileVisitResult.CONTINUE;
+                    } catch (IOException | UnsupportedOperationException e) {
+                        logger.info("Hard links not available for sandboxes, copying files instead: " + e.getMessage());
+                        hardLinksSupported = false;
+                    }
+                }
+                Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private boolean isExcluded(Path dir) {
+        String name = dir.getFileName().toString();
+        if (METADATA_DIRECTORIES.contains(name)) {
+            return true;
+        }
+        if (!BUILD_OUTPUT_DIRECTORIES.contains(name)) {
+            return false;
+        }
+        Path parent = dir.getParent();
+        if (parent.equals(projectRoot)) {
+            return true;
+        }
+        for (String buildFile : BUILD_FILES) {
+            if (Files.isRegularFile(parent.resolve(buildFile))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSource(Path relative) {
+        for (Path part : relative) {
+            if (SOURCE_DIRECTORY.equals(part.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The root directory of the sandbox.
+     */
+    public String getRoot() {
+        return sandboxRoot.toString();
+    }
+
+    /**
+     * Tells whether a path is inside a project root, i.e. whether a sandbox of the project has a copy of it.
+     *
+     * @param projectRoot The root directory of the project, or null.
+     * @param path        A path, or null.
+     * @return true if both are given and the path is the project root or below it.
+     */
+    public static boolean contains(String projectRoot, String path) {
+        if (projectRoot == null || projectRoot.isBlank() || path == null || path.isBlank()) {
+            return false;
+        }
+        return Paths.get(path).toAbsolutePath().normalize()
+                .startsWith(Paths.get(projectRoot).toAbsolutePath().normalize());
+    }
+
+    /**
+     * Maps a path inside the project to the corresponding path inside the sandbox.
+     *
+     * @param projectPath A path in the original project.
+     * @return The equivalent sandbox path.
+     * @throws IllegalArgumentException If the path is not inside the project, so the sandbox has no copy of it.
+     */
+    public String map(String projectPath) {
+        if (!contains(projectRoot.toString(), projectPath)) {
+            throw new IllegalArgumentException("Not inside the sandboxed project " + projectRoot + ": " + projectPath);
+        }
+        Path path = Paths.get(projectPath).toAbsolutePath().normalize();
+        return sandboxRoot.resolve(projectRoot.relativize(path)).toString();
+    }
+
+    /**
+     * Rewrites absolute references to the project root inside a shell command so that it operates on
+     * the sandbox, e.g. {@code mvn -f "/path/to/project" test}.
+     *
+     * @param command The test command.
+     * @return The command pointing at the sandbox.
+     */
+    public String rewriteCommand(String command) {
+        if (command == null) {
+            return null;
+        }
+        return command.replace(projectRoot.toString(), sandboxRoot.toString());
+    }
+
+    /**
+     * Writes a file in the sandbox. An existing hard link is removed first so the original file
+     * in the project is never modified. This is the only safe way to change a file outside {@code src}.
+     *
+     * @param projectPath The path of the file in the original project.
+     * @param content     The new content.
+     * @throws IOException              If the file cannot be written.
+     * @throws IllegalArgumentException If the path is not inside the project.
+     */
+    public void writeFile(String projectPath, String content) throws IOException {
+        Path target = Paths.get(map(projectPath));
+        Files.deleteIfExists(target);
+        Files.createDirectories(target.getParent());
+        Files.write(target, content.getBytes());
+    }
+
+    /**
+     * Deletes the sandbox tree. Hard-linked files only lose their sandbox link.
+     */
+    @Override
+    public void close() {
+        try {
+            Files.walkFileTree(sandboxRoot, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.warning("Could not delete sandbox " + sandboxRoot + ": " + e.getMessage());
+        }
+    }
+}
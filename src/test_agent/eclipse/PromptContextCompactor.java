@@ -0,0 +1,310 @@
+package test_agent.eclipse;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Annotation;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.Initializer;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+
+import test_agent.utils.NumberedText;
+
+/**
+ * Shrinks the code sent with every test generation prompt, using the JDT {@link ASTParser}.
+ * The source file is reduced to the methods that contain missed lines, the signatures of the methods and
+ * constructors they call, and the fields they use; everything else in a member body is replaced by a marker
+ * line. Lines keep their original numbers, so the coverage report still matches. The existing test file is
+ * reduced to its imports, fields, setup and helper methods and one example test, and included files to their
+ * declarations. A file that does not parse as Java is sent unchanged.
+ */
+public class PromptContextCompactor {
+
+    private static final Set<String> TEST_ANNOTATIONS = Set.of(
+            "Test", "ParameterizedTest", "RepeatedTest", "TestFactory", "TestTemplate");
+
+    // Names of the omitted tests listed in the test file, so the model does not write them again.
+    private static final int MAX_OMITTED_TEST_NAMES = 50;
+
+    /**
+     * A method, constructor, initializer or field of the parsed file, by line.
+     */
+    private static final class Member {
+        final BodyDeclaration node;
+        final int startLine;
+        final int endLine;
+        // The line of the opening brace of a method body; -1 for fields, initializers and abstract methods.
+        final int bodyStartLine;
+        final Set<String> names = new HashSet<>();
+
+        Member(CompilationUnit unit, BodyDeclaration node, int bodyStart) {
+            this.node = node;
+            this.startLine = unit.getLineNumber(node.getStartPosition());
+            this.endLine = unit.getLineNumber(node.getStartPosition() + node.getLength() - 1);
+            this.bodyStartLine = bodyStart >= 0 ? unit.getLineNumber(bodyStart) : -1;
+        }
+
+        int signatureStartLine(CompilationUnit unit) {
+            if (node.getJavadoc() == null) {
+                return startLine;
+            }
+            int javadocEnd = node.getJavadoc().getStartPosition() + node.getJavadoc().getLength() - 1;
+            return Math.min(unit.getLineNumber(javadocEnd) + 1, bodyStartLine);
+        }
+    }
+
+    private final String sourceCode;
+    private final String[] sourceLines;
+    private final CompilationUnit unit;
+    private final List<Member> members;
+
+    /**
+     * Parses the source file once; {@link #compactSource} can then be called for every prompt.
+     *
+     * @param sourceCode The source file being tested.
+     */
+    public PromptContextCompactor(String sourceCode) {
+        this.sourceCode = sourceCode;
+        this.sourceLines = sourceCode.split("\n", -1);
+        this.unit = parse(sourceCode);
+        this.members = unit.types().isEmpty() ? new ArrayList<>() : collectMembers(unit);
+    }
+
+    /**
+     * Returns the numbered source file with only the members around the given lines.
+     *
+     * @param focusLines The missed and partly covered lines.
+     * @return The numbered source, or the whole numbered source if nothing could be left out.
+     */
+    public String compactSource(BitSet focusLines) {
+        if (members.isEmpty() || focusLines.isEmpty()) {
+            return NumberedText.of(sourceCode);
+        }
+        BitSet keep = new BitSet();
+        keep.set(1, sourceLines.length + 1);
+
+        Set<String> referenced = new HashSet<>();
+        List<Member> others = new ArrayList<>();
+        for (Member member : members) {
+            int next = focusLines.nextSetBit(member.startLine);
+            if (next >= 0 && next <= member.endLine) {
+                referenced.addAll(identifiers(member.node));
+            } else {
+                others.add(member);
+            }
+        }
+        for (Member member : others) {
+            boolean used = member.names.stream().anyMatch(referenced::contains);
+            if (!used) {
+                keep.clear(member.startLine, member.endLine + 1);
+            } else if (!(member.node instanceof FieldDeclaration) && member.bodyStartLine > 0) {
+                // A callee: its signature, without javadoc or body.
+                keep.clear(member.startLine, member.signatureStartLine(unit));
+                keep.clear(member.bodyStartLine + 1, member.endLine + 1);
+            }
+        }
+        return numbered(keep);
+    }
+
+    /**
+     * Reduces a test file to its imports, fields, setup and helper methods and its first test. The names of
+     * the other tests are listed in a comment in place of the first omitted test.
+     *
+     * @param testCode The existing test file.
+     * @return The reduced test file, or the test file itself if it has at most one test or does not parse.
+     */
+    public static String compactTestFile(String testCode) {
+        CompilationUnit testUnit = parse(testCode);
+        if (testUnit.types().isEmpty()) {
+            return testCode;
+        }
+        List<Member> tests = new ArrayList<>();
+        for (Member member : collectMembers(testUnit)) {
+            if (member.node instanceof MethodDeclaration && isTest((MethodDeclaration) member.node)) {
+                tests.add(member);
+            }
+        }
+        if (tests.size() <= 1) {
+            return testCode;
+        }
+
+        String[] lines = testCode.split("\n", -1);
+        BitSet keep = new BitSet();
+        keep.set(1, lines.length + 1);
+        List<String> omittedNames = new ArrayList<>();
+        for (Member test : tests.subList(1, tests.size())) {
+            keep.clear(test.startLine, test.endLine + 1);
+            omittedNames.add(((MethodDeclaration) test.node).getName().getIdentifier());
+        }
+        int commentLine = tests.get(1).startLine;
+        String indent = lines[commentLine - 1].substring(0,
+                lines[commentLine - 1].length() - lines[commentLine - 1].stripLeading().length());
+
+        StringBuilder result = new StringBuilder();
+        for (int line = 1; line <= lines.length; line++) {
+            if (line == commentLine) {
+                result.append(indent).append("// ").append(omittedNames.size())
+                        .append(" more existing test(s) omitted: ")
+                        .append(String.join(", ", omittedNames.subList(0,
+                                Math.min(omittedNames.size(), MAX_OMITTED_TEST_NAMES))))
+                        .append(omittedNames.size() > MAX_OMITTED_TEST_NAMES ? ", ..." : "")
+                        .append('\n');
+            }
+            if (keep.get(line)) {
+                result.append(lines[line - 1]).append('\n');
+            }
+        }
+        result.setLength(result.length() - 1);
+        return result.toString();
+    }
+
+    /**
+     * Reduces a Java file to its declarations: imports, fields and member signatures, without method bodies.
+     *
+     * @param code The content of an included file.
+     * @return The outline, or the content itself if it does not parse as Java.
+     */
+    public static String outline(String code) {
+        CompilationUnit outlineUnit = parse(code);
+        if (outlineUnit.types().isEmpty()) {
+            return code;
+        }
+        String[] lines = code.split("\n", -1);
+        BitSet keep = new BitSet();
+        keep.set(1, lines.length + 1);
+        for (Member member : collectMembers(outlineUnit)) {
+            if (member.node instanceof Initializer) {
+                keep.clear(member.startLine, member.endLine + 1);
+            } else if (member.bodyStartLine > 0 && member.bodyStartLine < member.endLine) {
+                keep.clear(member.bodyStartLine + 1, member.endLine + 1);
+            }
+        }
+        StringBuilder result = new StringBuilder();
+        appendLines(lines, keep, line -> lines[line - 1], result);
+        return result.toString();
+    }
+
+    private String numbered(BitSet keep) {
+        StringBuilder result = new StringBuilder();
+        appendLines(sourceLines, keep, line -> line + " " + sourceLines[line - 1], result);
+        return result.toString();
+    }
+
+    /**
+     * Appends the kept lines, and one marker line for each run of two or more left-out lines.
+     */
+    private static void appendLines(String[] lines, BitSet keep, IntFunction<String> format,
+                                    StringBuilder result) {
+        // A blank line between two left-out members is left out with them.
+        keep = (BitSet) keep.clone();
+        for (int blank = 2; blank < lines.length; blank++) {
+            if (lines[blank - 1].isBlank() && !keep.get(blank - 1) && !keep.get(blank + 1)) {
+                keep.clear(blank);
+            }
+        }
+        int line = 1;
+        while (line <= lines.length) {
+            int omittedEnd = keep.nextSetBit(line);
+            if (omittedEnd < 0 || omittedEnd > lines.length) {
+                omittedEnd = lines.length + 1;
+            }
+            if (omittedEnd - line >= 2) {
+                result.append("... (lines ").append(line).append('-').append(omittedEnd - 1)
+                        .append(" omitted)\n");
+                line = omittedEnd;
+                continue;
+            }
+            result.append(format.apply(line)).append('\n');
+            line++;
+        }
+        if (result.length() > 0) {
+            result.setLength(result.length() - 1);
+        }
+    }
+
+    private static CompilationUnit parse(String source) {
+        ASTParser parser = ASTParser.newParser(AST.getJLSLatest());
+        parser.setKind(ASTParser.K_COMPILATION_UNIT);
+        Map<String, String> options = JavaCore.getOptions();
+        JavaCore.setComplianceOptions(JavaCore.latestSupportedJavaVersion(), options);
+        parser.setCompilerOptions(options);
+        parser.setSource(source.toCharArray());
+        return (CompilationUnit) parser.createAST(null);
+    }
+
+    /**
+     * Collects the members of all types in the file, including nested types but not local or anonymous ones.
+     */
+    private static List<Member> collectMembers(CompilationUnit unit) {
+        List<Member> members = new ArrayList<>();
+        unit.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(MethodDeclaration node) {
+                Member member = new Member(unit, node,
+                        node.getBody() != null ? node.getBody().getStartPosition() : -1);
+                member.names.add(node.getName().getIdentifier());
+                members.add(member);
+                return false;
+            }
+
+            @Override
+            public boolean visit(Initializer node) {
+                members.add(new Member(unit, node, node.getBody().getStartPosition()));
+                return false;
+            }
+
+            @Override
+            public boolean visit(FieldDeclaration node) {
+                Member member = new Member(unit, node, -1);
+                for (Object fragment : node.fragments()) {
+                    member.names.add(((VariableDeclarationFragment) fragment).getName().getIdentifier());
+                }
+                members.add(member);
+                return false;
+            }
+        });
+        return members;
+    }
+
+    /**
+     * @return every simple name used in a member: the methods it calls, the fields it reads, the types it creates.
+     */
+    private static Set<String> identifiers(BodyDeclaration node) {
+        Set<String> names = new HashSet<>();
+        node.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName name) {
+                names.add(name.getIdentifier());
+                return true;
+            }
+        });
+        return names;
+    }
+
+    private static boolean isTest(MethodDeclaration method) {
+        for (Object modifier : method.modifiers()) {
+            if (modifier instanceof Annotation) {
+                String name = ((Annotation) modifier).getTypeName().getFullyQualifiedName();
+                if (TEST_ANNOTATIONS.contains(name.substring(name.lastIndexOf('.') + 1))) {
+                    return true;
+                }
+            }
+        }
+        // JUnit 3 style
+        return method.getName().getIdentifier().startsWith("test") && method.parameters().isEmpty()
+                && !method.isConstructor();
+    }
+}
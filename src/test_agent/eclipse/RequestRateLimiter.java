@@ -0,0 +1,39 @@
+package test_agent.eclipse;
+
+/**
+ * Spaces model requests evenly so that no more than a given number start per minute, across all
+ * {@link AICaller}s sharing the limiter. Callers reserve a start time and wait until it comes, so
+ * asynchronous calls can schedule themselves instead of blocking a thread.
+ */
+public class RequestRateLimiter {
+
+    private final long intervalMillis;
+    private long nextFreeMillis;
+
+    /**
+     * @param requestsPerMinute The maximum number of requests started per minute.
+     */
+    public RequestRateLimiter(int requestsPerMinute) {
+        this.intervalMillis = 60_000L / Math.max(1, requestsPerMinute);
+    }
+
+    /**
+     * Reserves the next request start.
+     *
+     * @return How many milliseconds the caller must wait before sending its request.
+     */
+    public synchronized long reserve() {
+        long now = System.currentTimeMillis();
+        long start = Math.max(now, nextFreeMillis);
+        nextFreeMillis = start + intervalMillis;
+        return start - now;
+    }
+
+    /**
+     * Gives back a reservation whose request was cancelled before it was sent, so that the next caller
+     * does not wait for it.
+     */
+    public synchronized void release() {
+        nextFreeMillis = Math.max(System.currentTimeMillis(), nextFreeMillis - intervalMillis);
+    }
+}
@@ -0,0 +1,178 @@
+package test_agent.eclipse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * On-disk cache of model responses, addressed by a SHA-256 hash of the model and the rendered system and user
+ * prompt. Each entry is one JSON file. Reading an entry refreshes its modification time, and when the store
+ * grows past its size limit the least recently used entries are deleted. Entries older than the time to live
+ * are treated as missing.
+ */
+public class ResponseCache {
+
+    private static final Logger logger = Logger.getLogger(ResponseCache.class.getName());
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    public static final Duration DEFAULT_TTL = Duration.ofDays(7);
+
+    private final Path directory;
+    private final long maxBytes;
+    private final Duration ttl;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param directory The directory holding the entries; it is created if needed.
+     * @param maxBytes  The total size above which least recently used entries are evicted.
+     * @param ttl       How long an entry stays valid after it was stored.
+     */
+    public ResponseCache(String directory, long maxBytes, Duration ttl) {
+        this.directory = Paths.get(directory);
+        this.maxBytes = maxBytes;
+        this.ttl = ttl;
+    }
+
+    public ResponseCache(String directory) {
+        this(directory, DEFAULT_MAX_BYTES, DEFAULT_TTL);
+    }
+
+    /**
+     * Computes the cache key of a prompt sent to a model.
+     *
+     * @param model  The model identifier.
+     * @param prompt A map containing "system" and "user" messages.
+     * @return The hex-encoded key.
+     */
+    public static String key(String model, Map<String, String> prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            // Separate the parts so that moving text between them changes the key.
+            for (String part : new String[]{model, prompt.getOrDefault("system", ""), prompt.getOrDefault("user", "")}) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Looks up a response.
+     *
+     * @param key The key from {@link #key}.
+     * @return The cached response text, or null on a miss.
+     */
+    public synchronized String get(String key) {
+        Path entry = directory.resolve(key + ".json");
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+        try {
+            JsonNode json = objectMapper.readTree(entry.toFile());
+            long createdAt = json.path("createdAt").asLong(0);
+            if (System.currentTimeMillis() - createdAt > ttl.toMillis()) {
+                Files.deleteIfExists(entry);
+                return null;
+            }
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return json.path("response").asText(null);
+        } catch (IOException e) {
+            logger.warning("Could not read cached response " + entry + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores a response and evicts least recently used entries if the store is over its size limit.
+     *
+     * @param key      The key from {@link #key}.
+     * @param model    The model that produced the response.
+     * @param response The response text.
+     */
+    public synchronized void put(String key, String model, String response) {
+        ObjectNode json = objectMapper.createObjectNode();
+        json.put("model", model);
+        json.put("createdAt", System.currentTimeMillis());
+        json.put("response", response);
+        try {
+            Files.createDirectories(directory);
+            // Write then move, so a concurrent reader never sees a partial entry.
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temp, objectMapper.writeValueAsBytes(json));
+            Files.move(temp, directory.resolve(key + ".json"), StandardCopyOption.REPLACE_EXISTING);
+            evict();
+        } catch (IOException e) {
+            logger.warning("Could not store response in cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes an entry, e.g. a response the caller could not use.
+     *
+     * @param key The key from {@link #key}.
+     */
+    public synchronized void remove(String key) {
+        try {
+            Files.deleteIfExists(directory.resolve(key + ".json"));
+        } catch (IOException e) {
+            logger.warning("Could not remove cached response " + key + ": " + e.getMessage());
+        }
+    }
+
+    private void evict() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(".json")) {
+                    entries.add(file);
+                    total += Files.size(file);
+                }
+            }
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        entries.sort(Comparator.comparing(ResponseCache::lastModified));
+        for (Path entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            long size = Files.size(entry);
+            Files.deleteIfExists(entry);
+            total -= size;
+        }
+        logger.fine("Evicted cached responses down to " + total + " bytes");
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
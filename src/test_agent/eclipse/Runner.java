@@ -2,15 +2,54 @@ package test_agent.eclipse;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.logging.Logger;
 
 /**
  * Utility class for executing shell commands with timeout functionality.
  */
 public class Runner {
     // Default timeout of 1 hour (3600 seconds)
-    private static final int MAX_ALLOWED_RUNTIME_SECONDS = 3600;
+    public static final int DEFAULT_TIMEOUT_SECONDS = 3600;
+    private static final Logger logger = Logger.getLogger(Runner.class.getName());
+    // How long a cancelled or timed out command's output is still read before the command returns.
+    private static final long CANCEL_JOIN_MILLIS = 500;
+    // How long a command still runs after an early exit pattern matched, so the lines explaining the failure
+    // (compiler errors, the assertion message and stack trace) are captured with it.
+    private static final long EARLY_EXIT_GRACE_MILLIS = 2000;
+    // Whether systemd-run can start a transient cgroup scope for the current user; checked once.
+    private static volatile Boolean cgroupScopeAvailable;
+
+    /**
+     * Receives the output of a command line by line while the command runs. Lines of stdout and stderr
+     * arrive on two different threads.
+     */
+    public interface OutputListener {
+        /**
+         * Called before the command is started.
+         *
+         * @param command The shell command.
+         */
+        default void commandStarted(String command) {
+        }
+
+        /**
+         * @param line  One line of output, without line separator.
+         * @param error true for a line of stderr, false for stdout.
+         */
+        void outputLine(String line, boolean error);
+    }
 
     /**
      * Result class to hold the command execution results
@@ -20,12 +59,41 @@ public class Runner {
         private final String stderr;
         private final int exitCode;
         private final long commandStartTime;
+        private final OutputCapture stdoutCapture;
+        private final OutputCapture stderrCapture;
+        private final String earlyExitLine;
 
         public CommandResult(String stdout, String stderr, int exitCode, long commandStartTime) {
             this.stdout = stdout;
             this.stderr = stderr;
             this.exitCode = exitCode;
             this.commandStartTime = commandStartTime;
+            this.stdoutCapture = null;
+            this.stderrCapture = null;
+            this.earlyExitLine = null;
+        }
+
+        /**
+         * Creates a result of captured output; the output strings are the head and tail of each stream.
+         */
+        public CommandResult(OutputCapture stdout, OutputCapture stderr, int exitCode, long commandStartTime) {
+            this(stdout, stderr, exitCode, commandStartTime, null);
+        }
+
+        /**
+         * Creates a result of captured output of a command that may have been stopped early.
+         *
+         * @param earlyExitLine The output line that stopped the command, or null if it ran to the end.
+         */
+        public CommandResult(OutputCapture stdout, OutputCapture stderr, int exitCode, long commandStartTime,
+                             String earlyExitLine) {
+            this.stdout = stdout.getText();
+            this.stderr = stderr.getText();
+            this.exitCode = exitCode;
+            this.commandStartTime = commandStartTime;
+            this.stdoutCapture = stdout;
+            this.stderrCapture = stderr;
+            this.earlyExitLine = earlyExitLine;
         }
 
         public String getStdout() {
@@ -43,16 +111,217 @@ public class Runner {
         public long getCommandStartTime() {
             return commandStartTime;
         }
+
+        /**
+         * @return the output line matching an early exit pattern, after which the command was stopped, or null
+         * if the command ran to the end.
+         */
+        public String getEarlyExitLine() {
+            return earlyExitLine;
+        }
+
+        /**
+         * @return true if {@link #getStdout()} or {@link #getStderr()} leaves out the middle of a long output.
+         */
+        public boolean isOutputTruncated() {
+            return (stdoutCapture != null && stdoutCapture.isTruncated())
+                    || (stderrCapture != null && stderrCapture.isTruncated());
+        }
+
+        /**
+         * @return a reader of the complete standard output, which may be streamed from a temporary file.
+         * @throws IOException If the temporary file cannot be read.
+         */
+        public Reader openStdoutReader() throws IOException {
+            return stdoutCapture != null ? stdoutCapture.openReader() : new StringReader(stdout);
+        }
+
+        /**
+         * @return a reader of the complete standard error, which may be streamed from a temporary file.
+         * @throws IOException If the temporary file cannot be read.
+         */
+        public Reader openStderrReader() throws IOException {
+            return stderrCapture != null ? stderrCapture.openReader() : new StringReader(stderr);
+        }
+    }
+
+    /**
+     * CPU and memory caps for a command and the processes it starts, applied on Linux and other Unix systems.
+     * The CPU cap is set with {@code ulimit -t} and applies to each process on its own, so a test stuck in a
+     * loop is killed while the rest of the build runs on. The memory cap limits the whole process tree through
+     * a transient cgroup scope when {@code systemd-run --user} is available; otherwise it falls back to
+     * {@code ulimit -v}, which limits the virtual memory of each process and must leave room for the address
+     * space a JVM reserves beyond its heap.
+     */
+    public static class ResourceLimits {
+        private final int cpuSeconds;
+        private final int memoryMegabytes;
+
+        /**
+         * @param cpuSeconds      The CPU time each process may use, or 0 for no limit.
+         * @param memoryMegabytes The memory the command may use, or 0 for no limit.
+         */
+        public ResourceLimits(int cpuSeconds, int memoryMegabytes) {
+            this.cpuSeconds = Math.max(0, cpuSeconds);
+            this.memoryMegabytes = Math.max(0, memoryMegabytes);
+        }
+
+        public int getCpuSeconds() {
+            return cpuSeconds;
+        }
+
+        public int getMemoryMegabytes() {
+            return memoryMegabytes;
+        }
+
+        /**
+         * @return true if no limit is set.
+         */
+        public boolean isEmpty() {
+            return cpuSeconds == 0 && memoryMegabytes == 0;
+        }
+    }
+
+    /**
+     * Options of one command execution. The defaults keep the head and tail of the output in memory, pass the
+     * output to no listener, cannot be cancelled, time out after {@link #DEFAULT_TIMEOUT_SECONDS} and set no
+     * resource limits.
+     */
+    public static class CommandOptions {
+        private int headChars = OutputCapture.DEFAULT_HEAD_CHARS;
+        private int tailChars = OutputCapture.DEFAULT_TAIL_CHARS;
+        private OutputListener outputListener;
+        private CancellationToken cancellationToken;
+        private int timeoutSeconds = DEFAULT_TIMEOUT_SECONDS;
+        private ResourceLimits resourceLimits;
+        private List<Pattern> earlyExitPatterns = List.of();
+
+        public int getHeadChars() {
+            return headChars;
+        }
+
+        public int getTailChars() {
+            return tailChars;
+        }
+
+        public OutputListener getOutputListener() {
+            return outputListener;
+        }
+
+        public CancellationToken getCancellationToken() {
+            return cancellationToken;
+        }
+
+        public int getTimeoutSeconds() {
+            return timeoutSeconds;
+        }
+
+        public ResourceLimits getResourceLimits() {
+            return resourceLimits;
+        }
+
+        public List<Pattern> getEarlyExitPatterns() {
+            return earlyExitPatterns;
+        }
+
+        /**
+         * Builder for {@link CommandOptions}.
+         */
+        public static class Builder {
+            private final CommandOptions options = new CommandOptions();
+
+            /**
+             * Keeps the given number of characters of the start and the end of each output stream in memory.
+             * The complete output is written to a temporary file once it is longer.
+             */
+            public Builder outputLimits(int headChars, int tailChars) {
+                options.headChars = headChars;
+                options.tailChars = tailChars;
+                return this;
+            }
+
+            /**
+             * Passes each line of output to the listener as soon as it is printed.
+             */
+            public Builder outputListener(OutputListener outputListener) {
+                options.outputListener = outputListener;
+                return this;
+            }
+
+            /**
+             * Destroys the command and its child processes as soon as the token is cancelled.
+             */
+            public Builder cancellationToken(CancellationToken cancellationToken) {
+                options.cancellationToken = cancellationToken;
+                return this;
+            }
+
+            /**
+             * Destroys the command and its child processes once it has run for the given time.
+             * Values below 1 keep the default.
+             */
+            public Builder timeoutSeconds(int timeoutSeconds) {
+                if (timeoutSeconds > 0) {
+                    options.timeoutSeconds = timeoutSeconds;
+                }
+                return this;
+            }
+
+            /**
+             * Runs the command under the given CPU and memory caps; null or empty limits run it without caps.
+             * The caps are ignored on Windows.
+             */
+            public Builder resourceLimits(ResourceLimits resourceLimits) {
+                options.resourceLimits = resourceLimits;
+                return this;
+            }
+
+            /**
+             * Stops the command when a line of its output matches one of the patterns, e.g. a compilation
+             * error or a failing test, instead of waiting for the rest of the build. The command still runs
+             * for a moment after the match so the lines describing the failure are captured; its result then
+             * has a non-zero exit code and {@link CommandResult#getEarlyExitLine()}.
+             */
+            public Builder earlyExitPatterns(List<Pattern> earlyExitPatterns) {
+                options.earlyExitPatterns = earlyExitPatterns != null ? List.copyOf(earlyExitPatterns) : List.of();
+                return this;
+            }
+
+            public CommandOptions build() {
+                return options;
+            }
+        }
     }
 
     /**
      * Executes a shell command in a specified working directory and returns its output, error, and exit code.
+     * Of a long output, only the head and tail are kept in memory; see {@link OutputCapture}.
      *
      * @param command The shell command to execute
      * @param cwd     The working directory in which to execute the command (optional)
      * @return CommandResult containing stdout, stderr, exit code, and command start time
      */
     public static CommandResult runCommand(String command, String cwd) {
+        return runCommand(command, cwd, new CommandOptions());
+    }
+
+    /**
+     * Executes a shell command like {@link #runCommand(String, String)} with the given options.
+     *
+     * @param command The shell command to execute
+     * @param cwd     The working directory in which to execute the command (optional)
+     * @param options The output limits, output listener, cancellation token, timeout and resource limits
+     * @return CommandResult containing stdout, stderr, exit code, and command start time; a command that
+     * timed out has exit code -1 and the output it printed so far
+     * @throws CancellationException If the cancellation token is cancelled before or while the command runs
+     */
+    public static CommandResult runCommand(String command, String cwd, CommandOptions options) {
+        CancellationToken cancellationToken = options.getCancellationToken();
+        if (cancellationToken != null) {
+            cancellationToken.throwIfCancelled();
+        }
+        OutputListener listener = options.getOutputListener();
+
         // Get the current time in milliseconds
         long commandStartTime = System.currentTimeMillis();
 
@@ -60,29 +329,50 @@ public class Runner {
         if (System.getProperty("os.name").toLowerCase().contains("windows")) {
             processBuilder.command("cmd.exe", "/c", command);
         } else {
-            processBuilder.command("sh", "-c", command);
+            processBuilder.command(limitedCommand(command, options.getResourceLimits()));
         }
 
         if (cwd != null) {
             processBuilder.directory(new File(cwd));
         }
 
-        StringBuilder stdout = new StringBuilder();
-        StringBuilder stderr = new StringBuilder();
+        OutputCapture stdout = new OutputCapture("stdout", options.getHeadChars(), options.getTailChars());
+        OutputCapture stderr = new OutputCapture("stderr", options.getHeadChars(), options.getTailChars());
+        if (listener != null) {
+            listener.commandStarted(command);
+        }
 
+        Process process;
         try {
-            Process process = processBuilder.start();
+            process = processBuilder.start();
+        } catch (Exception e) {
+            return new CommandResult(
+                    "",
+                    "Error executing command: " + e.getMessage(),
+                    -1,
+                    commandStartTime
+            );
+        }
 
+        CancellationToken.Registration registration = cancellationToken != null
+                ? cancellationToken.onCancel(() -> destroyProcessTree(process))
+                : null;
+        EarlyExit earlyExit = new EarlyExit(options.getEarlyExitPatterns(), process);
+        try {
             // Handle stdout in a separate thread
             Thread stdoutThread = new Thread(() -> {
                 try (BufferedReader reader = new BufferedReader(
                         new InputStreamReader(process.getInputStream()))) {
                     String line;
                     while ((line = reader.readLine()) != null) {
-                        stdout.append(line).append(System.lineSeparator());
+                        stdout.appendLine(line);
+                        notify(listener, line, false);
+                        earlyExit.check(line);
                     }
                 } catch (Exception e) {
-                    stderr.append("Error reading stdout: ").append(e.getMessage());
+                    stderr.appendLine("Error reading stdout: " + e.getMessage());
+                } finally {
+                    stdout.close();
                 }
             });
 
@@ -92,10 +382,14 @@ public class Runner {
                         new InputStreamReader(process.getErrorStream()))) {
                     String line;
                     while ((line = reader.readLine()) != null) {
-                        stderr.append(line).append(System.lineSeparator());
+                        stderr.appendLine(line);
+                        notify(listener, line, true);
+                        earlyExit.check(line);
                     }
                 } catch (Exception e) {
-                    stderr.append("Error reading stderr: ").append(e.getMessage());
+                    stderr.appendLine("Error reading stderr: " + e.getMessage());
+                } finally {
+                    stderr.close();
                 }
             });
 
@@ -104,13 +398,26 @@ public class Runner {
             stderrThread.start();
 
             // Wait for the process to complete or timeout
-            boolean completed = process.waitFor(MAX_ALLOWED_RUNTIME_SECONDS, TimeUnit.SECONDS);
+            int timeoutSeconds = options.getTimeoutSeconds();
+            boolean completed = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+
+            if (cancellationToken != null && cancellationToken.isCancelled()) {
+                stdoutThread.join(CANCEL_JOIN_MILLIS);
+                stderrThread.join(CANCEL_JOIN_MILLIS);
+                throw new CancellationException("Command cancelled: " + command);
+            }
 
             if (!completed) {
-                process.destroyForcibly();
+                destroyProcessTree(process);
+                stdoutThread.join(CANCEL_JOIN_MILLIS);
+                stderrThread.join(CANCEL_JOIN_MILLIS);
+                logger.warning("Command timed out after " + timeoutSeconds + " seconds: " + command);
+                stderr.appendLine("Command timed out after " + timeoutSeconds + " seconds");
+                stdout.close();
+                stderr.close();
                 return new CommandResult(
-                        "",
-                        "Command timed out after " + MAX_ALLOWED_RUNTIME_SECONDS + " seconds",
+                        stdout,
+                        stderr,
                         -1,
                         commandStartTime
                 );
@@ -120,20 +427,156 @@ public class Runner {
             stdoutThread.join();
             stderrThread.join();
 
+            String earlyExitLine = earlyExit.getMatchedLine();
+            int exitCode = process.exitValue();
+            if (earlyExitLine != null) {
+                System.out.println("Stopped the command early after: " + earlyExitLine.trim());
+                stderr.appendLine("Command stopped early after: " + earlyExitLine);
+                // The command may have finished on its own within the grace time; it failed all the same.
+                if (exitCode == 0) {
+                    exitCode = 1;
+                }
+            }
             return new CommandResult(
-                    stdout.toString(),
-                    stderr.toString(),
-                    process.exitValue(),
-                    commandStartTime
+                    stdout,
+                    stderr,
+                    exitCode,
+                    commandStartTime,
+                    earlyExitLine
             );
 
-        } catch (Exception e) {
+        } catch (InterruptedException e) {
+            destroyProcessTree(process);
+            Thread.currentThread().interrupt();
             return new CommandResult(
                     "",
                     "Error executing command: " + e.getMessage(),
                     -1,
                     commandStartTime
             );
+        } finally {
+            if (registration != null) {
+                registration.close();
+            }
+            // Cancellation and interruption leave without waiting for the reader threads.
+            stdout.close();
+            stderr.close();
+        }
+    }
+
+    /**
+     * Destroys a process and every process it started. Build tools fork compilers and test JVMs, which would
+     * otherwise keep running, and keep the output pipes open, after the shell is gone.
+     *
+     * @param process The process to destroy.
+     */
+    public static void destroyProcessTree(Process process) {
+        // The shell goes first so it cannot go on to the next command once its current child is gone.
+        List<ProcessHandle> descendants = process.descendants().collect(Collectors.toList());
+        process.destroyForcibly();
+        descendants.forEach(ProcessHandle::destroyForcibly);
+    }
+
+    /**
+     * Watches the output of one command for the early exit patterns and destroys the command's process tree
+     * a grace time after the first match.
+     */
+    private static final class EarlyExit {
+        private final List<Pattern> patterns;
+        private final Process process;
+        private final AtomicReference<String> matchedLine = new AtomicReference<>();
+
+        EarlyExit(List<Pattern> patterns, Process process) {
+            this.patterns = patterns;
+            this.process = process;
+        }
+
+        void check(String line) {
+            if (patterns.isEmpty() || matchedLine.get() != null) {
+                return;
+            }
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(line).find()) {
+                    if (matchedLine.compareAndSet(null, line)) {
+                        CompletableFuture.delayedExecutor(EARLY_EXIT_GRACE_MILLIS, TimeUnit.MILLISECONDS)
+                                .execute(() -> {
+                                    if (process.isAlive()) {
+                                        destroyProcessTree(process);
+                                    }
+                                });
+                    }
+                    return;
+                }
+            }
+        }
+
+        String getMatchedLine() {
+            return matchedLine.get();
+        }
+    }
+
+    /**
+     * Builds the Unix command line that runs a shell command under the given limits.
+     */
+    private static List<String> limitedCommand(String command, ResourceLimits limits) {
+        List<String> commandLine = new ArrayList<>();
+        if (limits == null || limits.isEmpty()) {
+            commandLine.addAll(List.of("sh", "-c", command));
+            return commandLine;
+        }
+        StringBuilder script = new StringBuilder();
+        if (limits.getCpuSeconds() > 0) {
+            script.append("ulimit -t ").append(limits.getCpuSeconds()).append("; ");
+        }
+        if (limits.getMemoryMegabytes() > 0) {
+            if (isCgroupScopeAvailable()) {
+                commandLine.addAll(List.of("systemd-run", "--user", "--scope", "--quiet", "--collect",
+                        "-p", "MemoryMax=" + limits.getMemoryMegabytes() + "M", "-p", "MemorySwapMax=0", "--"));
+            } else {
+                script.append("ulimit -v ").append(limits.getMemoryMegabytes() * 1024L).append("; ");
+            }
+        }
+        script.append(command);
+        commandLine.addAll(List.of("sh", "-c", script.toString()));
+        return commandLine;
+    }
+
+    private static boolean isCgroupScopeAvailable() {
+        Boolean available = cgroupScopeAvailable;
+        if (available == null) {
+            available = false;
+            try {
+                Process probe = new ProcessBuilder("systemd-run", "--user", "--scope", "--quiet", "--collect", "true")
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                if (probe.waitFor(10, TimeUnit.SECONDS)) {
+                    available = probe.exitValue() == 0;
+                } else {
+                    destroyProcessTree(probe);
+                }
+            } catch (IOException e) {
+                // No systemd on this system.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!available) {
+                logger.info("systemd-run is not available; memory limits are set per process with ulimit -v.");
+            }
+            cgroupScopeAvailable = available;
+        }
+        return available;
+    }
+
+    private static void notify(OutputListener listener, String line, boolean error) {
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.outputLine(line, error);
+        } catch (RuntimeException e) {
+            // A failing listener must not stop the output from being read, or the process could block.
+            logger.fine("Output listener failed: " + e.getMessage());
         }
     }
 }
@@ -0,0 +1,167 @@
+package test_agent.eclipse;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads per-test results from the JUnit XML reports written by Maven Surefire
+ * ({@code target/surefire-reports/TEST-*.xml}) and Gradle ({@code build/test-results/test/TEST-*.xml}).
+ */
+public class SurefireReportParser {
+
+    private static final Logger logger = Logger.getLogger(SurefireReportParser.class.getName());
+
+    /**
+     * The outcome of one test method.
+     */
+    public static class TestCaseResult {
+        private final String name;
+        private final boolean passed;
+        private final boolean skipped;
+        private final String failureMessage;
+
+        public TestCaseResult(String name, boolean passed, boolean skipped, String failureMessage) {
+            this.name = name;
+            this.passed = passed;
+            this.skipped = skipped;
+            this.failureMessage = failureMessage;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isPassed() {
+            return passed;
+        }
+
+        public boolean isSkipped() {
+            return skipped;
+        }
+
+        public String getFailureMessage() {
+            return failureMessage;
+        }
+    }
+
+    /**
+     * Returns the report directories used by Maven and Gradle below the given build directory.
+     *
+     * @param baseDir The directory the test command runs in.
+     * @return The candidate report directories.
+     */
+    public static List<File> defaultReportDirs(String baseDir) {
+        List<File> dirs = new ArrayList<>();
+        dirs.add(new File(baseDir, "target/surefire-reports"));
+        dirs.add(new File(baseDir, "build/test-results/test"));
+        return dirs;
+    }
+
+    /**
+     * Parses the report of a test class written after the given time.
+     *
+     * @param reportDirs         The directories to look in.
+     * @param testClassName      The fully qualified test class name.
+     * @param notOlderThanMillis Reports modified before this time are ignored as stale.
+     * @return The results by test method name; empty if no fresh report exists.
+     */
+    public static Map<String, TestCaseResult> parse(List<File> reportDirs, String testClassName, long notOlderThanMillis) {
+        Map<String, TestCaseResult> results = new HashMap<>();
+        for (File dir : reportDirs) {
+            File report = new File(dir, "TEST-" + testClassName + ".xml");
+            if (!report.isFile()) {
+                continue;
+            }
+            if (report.lastModified() < notOlderThanMillis) {
+                logger.fine("Ignoring stale test report " + report);
+                continue;
+            }
+            results.putAll(parseReport(report));
+        }
+        return results;
+    }
+
+    private static Map<String, TestCaseResult> parseReport(File report) {
+        Map<String, TestCaseResult> results = new HashMap<>();
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(report))) {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                String testName = null;
+                boolean failed = false;
+                boolean skipped = false;
+                StringBuilder failure = null;
+                String failureText = null;
+
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if ("testcase".equals(name)) {
+                            testName = reader.getAttributeValue(null, "name");
+                            failed = false;
+                            skipped = false;
+                            failure = null;
+                            failureText = null;
+                        } else if (testName != null && ("failure".equals(name) || "error".equals(name))) {
+                            failed = true;
+                            failure = new StringBuilder();
+                            String message = reader.getAttributeValue(null, "message");
+                            String type = reader.getAttributeValue(null, "type");
+                            if (type != null) {
+                                failure.append(type).append(": ");
+                            }
+                            if (message != null) {
+                                failure.append(message);
+                            }
+                            failure.append(System.lineSeparator());
+                        } else if (testName != null && "skipped".equals(name)) {
+                            skipped = true;
+                        }
+                    } else if ((event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)
+                            && failure != null) {
+                        failure.append(reader.getText());
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if ("testcase".equals(name) && testName != null) {
+                            results.put(stripParameters(testName), new TestCaseResult(testName, !failed, skipped, failureText));
+                            testName = null;
+                        } else if (failure != null && ("failure".equals(name) || "error".equals(name))) {
+                            // Keep the collected text, but stop appending system-out and friends.
+                            failureText = failure.toString().trim();
+                            failure = null;
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | IOException e) {
+            logger.warning("Could not parse test report " + report + ": " + e.getMessage());
+        }
+        return results;
+    }
+
+    /**
+     * JUnit 5 reports parameterized or display-named methods as {@code name(Type)}; key results by the bare name.
+     */
+    private static String stripParameters(String testName) {
+        int paren = testName.indexOf('(');
+        return paren > 0 ? testName.substring(0, paren) : testName;
+    }
+}
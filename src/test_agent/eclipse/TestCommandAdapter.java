@@ -0,0 +1,128 @@
+package test_agent.eclipse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites common test commands so that they run a single test class or a single test method, without asking
+ * the LLM. Maven Surefire ({@code mvn ... test}, {@code -Dtest=Class#method}), Gradle ({@code gradle ... test},
+ * {@code --tests Class.method}) and the JUnit Platform console launcher ({@code --select-class},
+ * {@code --select-method}) are recognised. For anything else, including Gradle commands without exactly one
+ * test task that is run rather than excluded, the adapter returns null, and callers fall back to
+ * {@link AgentCompletion#adaptTestCommandForSingleTest}.
+ */
+public final class TestCommandAdapter {
+
+    private static final Pattern MAVEN = Pattern.compile("(?:^|[\\s/\\\\&;|(])(mvnw?|mvnw\\.cmd|mvn\\.cmd)(?=\\s|$)");
+    private static final Pattern GRADLE = Pattern.compile("(?:^|[\\s/\\\\&;|(])(gradlew?|gradlew\\.bat)(?=\\s|$)");
+    private static final Pattern GRADLE_TEST_TASK = Pattern.compile("(?<=\\s)(:?(?:[\\w-]+:)*test)(?=\\s|$)");
+    // Ends the command text before a task name that is excluded rather than run, e.g. "gradle build -x ".
+    private static final Pattern GRADLE_EXCLUDE_OPTION = Pattern.compile("(?:^|\\s)(?:-x|--exclude-task)\\s+$");
+    private static final Pattern CONSOLE_LAUNCHER = Pattern.compile(
+            "junit-platform-console-standalone|org\\.junit\\.platform\\.console\\.ConsoleLauncher");
+
+    private static final Pattern PACKAGE = Pattern.compile("(?m)^\\s*package\\s+([\\w.]+)\\s*;");
+
+    // Existing selections that a narrowed command replaces.
+    private static final Pattern MAVEN_TEST_PROPERTY = Pattern.compile("\\s+-Dtest=(?:\"[^\"]*\"|'[^']*'|\\S+)");
+    private static final Pattern GRADLE_TESTS_OPTION = Pattern.compile("\\s+--tests(?:=|\\s+)(?:\"[^\"]*\"|'[^']*'|\\S+)");
+    private static final Pattern CONSOLE_SELECTORS = Pattern.compile(
+            "\\s+(?:--scan-class-?path|--scan-classpath)(?:\\s+(?!-)\\S+)?"
+                    + "|\\s+(?:--select-class|--select-method|--select-package)(?:=|\\s+)\\S+");
+
+    private TestCommandAdapter() {
+    }
+
+    /**
+     * Adapts a test command to run only one test class.
+     *
+     * @param testCommand   The command that runs the whole test suite.
+     * @param testClassName The fully qualified name of the test class.
+     * @return The adapted command, or null if the command is not recognised.
+     */
+    public static String adaptForTestClass(String testCommand, String testClassName) {
+        return adapt(testCommand, testClassName, null);
+    }
+
+    /**
+     * Adapts a test command to run only one test method.
+     *
+     * @param testCommand   The command that runs the whole test suite or a single test class.
+     * @param testClassName The fully qualified name of the test class.
+     * @param methodName    The test method name.
+     * @return The adapted command, or null if the command is not recognised.
+     */
+    public static String adaptForTestMethod(String testCommand, String testClassName, String methodName) {
+        return adapt(testCommand, testClassName, methodName);
+    }
+
+    /**
+     * Derives the fully qualified name of the test class from the package declaration and name of a test file.
+     *
+     * @param testFilePath The path of the test file.
+     * @return The class name, or null if the file cannot be read.
+     */
+    public static String testClassNameOf(String testFilePath) {
+        try {
+            String content = new String(Files.readAllBytes(Paths.get(testFilePath)));
+            String simpleName = Paths.get(testFilePath).getFileName().toString().replaceFirst("\\.java$", "");
+            Matcher matcher = PACKAGE.matcher(content);
+            return matcher.find() ? matcher.group(1) + "." + simpleName : simpleName;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String adapt(String testCommand, String testClassName, String methodName) {
+        if (testCommand == null || testCommand.isBlank() || testClassName == null) {
+            return null;
+        }
+
+        if (MAVEN.matcher(testCommand).find()) {
+            String command = MAVEN_TEST_PROPERTY.matcher(testCommand).replaceAll("");
+            String selection = " -Dtest=" + testClassName + (methodName != null ? "#" + methodName : "");
+            if (!command.contains("failIfNoSpecifiedTests")) {
+                // Other modules of a reactor build have no matching test.
+                selection += " -Dsurefire.failIfNoSpecifiedTests=false";
+            }
+            Matcher maven = MAVEN.matcher(command);
+            maven.find();
+            return command.substring(0, maven.end(1)) + selection + command.substring(maven.end(1));
+        }
+
+        if (GRADLE.matcher(testCommand).find()) {
+            String command = GRADLE_TESTS_OPTION.matcher(testCommand).replaceAll("");
+            Matcher task = GRADLE_TEST_TASK.matcher(command);
+            int taskEnd = -1;
+            while (task.find()) {
+                if (GRADLE_EXCLUDE_OPTION.matcher(command.substring(0, task.start(1))).find()) {
+                    continue;
+                }
+                if (taskEnd >= 0) {
+                    // --tests would only narrow one of several test tasks.
+                    return null;
+                }
+                taskEnd = task.end(1);
+            }
+            if (taskEnd < 0) {
+                return null;
+            }
+            // --tests belongs to the task it follows.
+            String filter = testClassName + (methodName != null ? "." + methodName : "");
+            return command.substring(0, taskEnd) + " --tests " + filter + command.substring(taskEnd);
+        }
+
+        if (CONSOLE_LAUNCHER.matcher(testCommand).find()) {
+            String command = CONSOLE_SELECTORS.matcher(testCommand).replaceAll("");
+            String selection = methodName != null
+                    ? " --select-method " + testClassName + "#" + methodName
+                    : " --select-class " + testClassName;
+            return command + selection;
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,112 @@
+package test_agent.eclipse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import test_agent.results.CompilationResult;
+
+/**
+ * Compiles a single test compilation unit with {@link javax.tools.JavaCompiler} against the project's
+ * already-built main and test classes, so a generated test can be checked in well under a second instead
+ * of running a full build. The rest of the project is never recompiled. Annotation processors found on the
+ * project class path (Lombok, MapStruct, Immutables, Dagger, ...) run as they do in the build; the sources they
+ * generate are written next to the test source.
+ */
+public class TestCompiler {
+
+    private static final Logger logger = Logger.getLogger(TestCompiler.class.getName());
+
+    private final List<String> classpath;
+
+    /**
+     * @param projectClasspath The project's main classes and test dependencies.
+     * @param testClassesDir   The compiled test classes directory, searched first.
+     */
+    public TestCompiler(List<String> projectClasspath, String testClassesDir) {
+        this.classpath = new ArrayList<>();
+        if (testClassesDir != null) {
+            this.classpath.add(testClassesDir);
+        }
+        this.classpath.addAll(projectClasspath);
+    }
+
+    /**
+     * @return true if this JVM can compile Java sources.
+     */
+    public static boolean isAvailable() {
+        return ToolProvider.getSystemJavaCompiler() != null;
+    }
+
+    /**
+     * Compiles the given source of a test class into the output directory.
+     *
+     * @param source    The full source of the compilation unit.
+     * @param className The fully qualified name of its top-level class.
+     * @param outputDir The directory receiving the class files; the source is written next to it.
+     * @return The result, with one diagnostic per compiler error.
+     * @throws IOException If the source cannot be written.
+     */
+    public CompilationResult compile(String source, String className, Path outputDir) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        List<CompilationResult.Diagnostic> errors = new ArrayList<>();
+        if (compiler == null) {
+            errors.add(new CompilationResult.Diagnostic(0, 0, "No Java compiler available in this runtime", null));
+            return new CompilationResult(false, errors, null);
+        }
+
+        Path sourceFile = outputDir.resolveSibling(outputDir.getFileName() + "-src")
+                .resolve(className.replace('.', '/') + ".java");
+        Path generatedSources = outputDir.resolveSibling(outputDir.getFileName() + "-generated");
+        Files.createDirectories(sourceFile.getParent());
+        Files.createDirectories(generatedSources);
+        Files.createDirectories(outputDir);
+        Files.write(sourceFile, source.getBytes(StandardCharsets.UTF_8));
+
+        List<String> options = new ArrayList<>();
+        options.add("-classpath");
+        options.add(String.join(File.pathSeparator, classpath));
+        options.add("-d");
+        options.add(outputDir.toString());
+        options.add("-s");
+        options.add(generatedSources.toString());
+        // Newer JDKs no longer run processors found on the class path unless asked to; older ones always do.
+        if (compiler.isSupportedOption("-proc:full") >= 0) {
+            options.add("-proc:full");
+        }
+        options.add("-g");
+
+        long start = System.currentTimeMillis();
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<>();
+        boolean success;
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(collector, Locale.ROOT, StandardCharsets.UTF_8)) {
+            success = Boolean.TRUE.equals(compiler.getTask(null, fileManager, collector, options, null,
+                    fileManager.getJavaFileObjects(sourceFile.toFile())).call());
+        }
+        logger.fine("Compiled " + className + " in " + (System.currentTimeMillis() - start) + " ms");
+
+        String[] sourceLines = source.split("\n", -1);
+        for (Diagnostic<? extends JavaFileObject> diagnostic : collector.getDiagnostics()) {
+            if (diagnostic.getKind() != Diagnostic.Kind.ERROR) {
+                continue;
+            }
+            long line = diagnostic.getLineNumber();
+            String sourceLine = (line > 0 && line <= sourceLines.length) ? sourceLines[(int) line - 1] : null;
+            errors.add(new CompilationResult.Diagnostic(line, diagnostic.getColumnNumber(),
+                    diagnostic.getMessage(Locale.ROOT), sourceLine));
+        }
+        return new CompilationResult(success, errors, success ? outputDir.toString() : null);
+    }
+}
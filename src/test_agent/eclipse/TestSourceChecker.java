@@ -0,0 +1,82 @@
+package test_agent.eclipse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.compiler.IProblem;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import test_agent.results.CompilationResult;
+
+/**
+ * Checks a processed test file with the JDT {@link ASTParser} before anything is built or run.
+ * Without a class path only syntax errors are found. With the project's class path the parser also
+ * resolves bindings, which reports unknown types and methods, wrong argument types and similar errors.
+ * Either check takes milliseconds and runs inside the plugin.
+ */
+public class TestSourceChecker {
+
+    private static final Logger logger = Logger.getLogger(TestSourceChecker.class.getName());
+
+    private final String[] classpath;
+
+    /**
+     * @param projectClasspath The project's main classes and test dependencies, or null for a syntax-only check.
+     * @param testClassesDir   The compiled test classes directory, or null.
+     */
+    public TestSourceChecker(List<String> projectClasspath, String testClassesDir) {
+        if (projectClasspath == null) {
+            this.classpath = null;
+            return;
+        }
+        List<String> entries = new ArrayList<>();
+        if (testClassesDir != null) {
+            entries.add(testClassesDir);
+        }
+        entries.addAll(projectClasspath);
+        this.classpath = entries.toArray(new String[0]);
+    }
+
+    /**
+     * Parses the source and collects its errors.
+     *
+     * @param source    The full source of the test compilation unit.
+     * @param className The fully qualified name of its top-level class.
+     * @return The result, with one diagnostic per parse or type error.
+     */
+    public CompilationResult check(String source, String className) {
+        long start = System.currentTimeMillis();
+        ASTParser parser = ASTParser.newParser(AST.getJLSLatest());
+        parser.setKind(ASTParser.K_COMPILATION_UNIT);
+        Map<String, String> options = JavaCore.getOptions();
+        JavaCore.setComplianceOptions(JavaCore.latestSupportedJavaVersion(), options);
+        parser.setCompilerOptions(options);
+        parser.setSource(source.toCharArray());
+        if (classpath != null) {
+            parser.setEnvironment(classpath, null, null, true);
+            parser.setUnitName("/" + className.replace('.', '/') + ".java");
+            parser.setResolveBindings(true);
+        }
+        CompilationUnit unit = (CompilationUnit) parser.createAST(null);
+
+        List<CompilationResult.Diagnostic> errors = new ArrayList<>();
+        String[] sourceLines = source.split("\n", -1);
+        for (IProblem problem : unit.getProblems()) {
+            if (!problem.isError()) {
+                continue;
+            }
+            int line = problem.getSourceLineNumber();
+            String sourceLine = (line > 0 && line <= sourceLines.length) ? sourceLines[line - 1] : null;
+            errors.add(new CompilationResult.Diagnostic(line, unit.getColumnNumber(problem.getSourceStart()) + 1,
+                    problem.getMessage(), sourceLine));
+        }
+        logger.fine("Checked " + className + " in " + (System.currentTimeMillis() - start) + " ms, "
+                + errors.size() + " error(s)");
+        return new CompilationResult(errors.isEmpty(), errors, null);
+    }
+}
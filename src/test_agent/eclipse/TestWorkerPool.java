@@ -0,0 +1,443 @@
+package test_agent.eclipse;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import test_agent.utils.FileUtils;
+
+/**
+ * A pool of pre-started worker JVMs ({@code test_agent.worker.TestWorkerMain}) that run JUnit tests with coverage.
+ * Workers keep the project class path loaded between requests, so only the first run of a worker pays for JVM
+ * startup and class loading. A worker is replaced after a configurable number of runs, when its heap usage
+ * exceeds a threshold, and after it crashes or times out.
+ * <p>
+ * {@link #runTests} returns a {@link Runner.CommandResult}, like {@link Runner#runCommand}.
+ */
+public class TestWorkerPool implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(TestWorkerPool.class.getName());
+
+    private static final String WORKER_CLASS = "test_agent.worker.TestWorkerMain";
+    private static final long DEFAULT_TIMEOUT_MILLIS = 5 * 60 * 1000L;
+
+    // Default recycling limits.
+    public static final int DEFAULT_MAX_RUNS_PER_WORKER = 50;
+    public static final double DEFAULT_MAX_HEAP_USAGE = 0.8;
+
+    /**
+     * One worker JVM and its protocol streams.
+     */
+    private static class Worker {
+        final Process process;
+        final BufferedReader out;
+        final BufferedWriter in;
+        boolean ready;
+        int runs;
+        double heapUsage;
+
+        Worker(Process process) {
+            this.process = process;
+            this.out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            this.in = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        void send(String line) throws IOException {
+            in.write(line);
+            in.newLine();
+            in.flush();
+        }
+
+        /**
+         * Reads a protocol line, giving up at the deadline so a hung test cannot block the caller forever.
+         *
+         * @throws CancellationException If the token is cancelled while waiting.
+         */
+        String readLine(long deadline, CancellationToken cancellationToken) throws IOException {
+            while (!out.ready()) {
+                if (cancellationToken != null) {
+                    cancellationToken.throwIfCancelled();
+                }
+                if (!process.isAlive()) {
+                    return out.readLine();
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IOException("Timed out waiting for the test worker");
+                }
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the test worker", e);
+                }
+            }
+            return out.readLine();
+        }
+
+        void stop() {
+            if (process.isAlive()) {
+                try {
+                    send("QUIT");
+                } catch (IOException e) {
+                    // The worker is going away either way.
+                }
+            }
+            // A test may have started processes of its own.
+            Runner.destroyProcessTree(process);
+        }
+    }
+
+    /**
+     * The outcome and execution data of one test method run as its own coverage session.
+     */
+    public static class Session {
+        private final String testMethod;
+        private final boolean passed;
+        private final String execFile;
+
+        public Session(String testMethod, boolean passed, String execFile) {
+            this.testMethod = testMethod;
+            this.passed = passed;
+            this.execFile = execFile;
+        }
+
+        public String getTestMethod() {
+            return testMethod;
+        }
+
+        /**
+         * @return true if the method was found and passed.
+         */
+        public boolean isPassed() {
+            return passed;
+        }
+
+        /**
+         * @return the execution data of this method alone, or null if the pool runs without coverage.
+         */
+        public String getExecFile() {
+            return execFile;
+        }
+    }
+
+    private final List<String> classpath;
+    private final String jacocoAgentPath;
+    private final String coverageIncludes;
+    private final int size;
+    private final int maxRunsPerWorker;
+    private final double maxHeapUsage;
+    private final Path workDir;
+    private final LinkedBlockingDeque<Worker> idleWorkers = new LinkedBlockingDeque<>();
+    private final List<Worker> allWorkers = new ArrayList<>();
+    private long responseTimeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private volatile CancellationToken cancellationToken;
+    private volatile boolean closed;
+
+    /**
+     * @param classpath        The class path of the worker JVMs: the project's main classes and test dependencies,
+     *                         but not the test classes, which are passed with each request.
+     * @param jacocoAgentPath  The jacocoagent.jar to attach, or null to run without coverage.
+     * @param coverageIncludes JaCoCo {@code includes} pattern, or null for all classes.
+     * @param size             The number of worker JVMs.
+     * @param maxRunsPerWorker The number of runs after which a worker is replaced.
+     * @param maxHeapUsage     The fraction of the maximum heap above which a worker is replaced after a run.
+     * @throws IOException If the worker class cannot be prepared.
+     */
+    public TestWorkerPool(List<String> classpath, String jacocoAgentPath, String coverageIncludes,
+                          int size, int maxRunsPerWorker, double maxHeapUsage) throws IOException {
+        this.classpath = new ArrayList<>(classpath);
+        this.jacocoAgentPath = jacocoAgentPath;
+        this.coverageIncludes = coverageIncludes;
+        this.size = Math.max(1, size);
+        this.maxRunsPerWorker = Math.max(1, maxRunsPerWorker);
+        this.maxHeapUsage = maxHeapUsage;
+        this.workDir = Files.createTempDirectory("coveragent-workers-");
+        extractWorkerClass();
+    }
+
+    public TestWorkerPool(List<String> classpath, String jacocoAgentPath, String coverageIncludes, int size)
+            throws IOException {
+        this(classpath, jacocoAgentPath, coverageIncludes, size, DEFAULT_MAX_RUNS_PER_WORKER, DEFAULT_MAX_HEAP_USAGE);
+    }
+
+    /**
+     * Sets the time a request may take before its worker is killed and the request fails.
+     *
+     * @param responseTimeoutMillis The timeout in milliseconds; non-positive values keep the current timeout.
+     */
+    public void setResponseTimeoutMillis(long responseTimeoutMillis) {
+        if (responseTimeoutMillis > 0) {
+            this.responseTimeoutMillis = responseTimeoutMillis;
+        }
+    }
+
+    /**
+     * Makes requests stop as soon as the token is cancelled: the worker running a request is destroyed and
+     * the request throws {@link CancellationException}.
+     *
+     * @param cancellationToken The token, or null.
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * @return true if runs of this pool produce JaCoCo execution data.
+     */
+    public boolean hasCoverage() {
+        return jacocoAgentPath != null;
+    }
+
+    /**
+     * Starts all worker JVMs without waiting for them, so they warm up while the caller does other work.
+     */
+    public synchronized void prestart() {
+        while (!closed && allWorkers.size() < size) {
+            try {
+                idleWorkers.add(startWorker());
+            } catch (IOException e) {
+                logger.warning("Could not start test worker: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs test methods of a class in the next free worker, waiting for one if all are busy.
+     *
+     * @param classDirs     Class directories loaded for this run only (test classes), highest priority first.
+     * @param testClassName The fully qualified name of the test class.
+     * @param testMethods   The test methods to run; empty to run the whole class.
+     * @param execFile      Where to write the run's execution data, or null to skip it.
+     * @return The run result; the summary is on stdout and the failures on stderr.
+     * @throws IOException If no worker could run the request.
+     * @throws CancellationException If the pool's cancellation token is cancelled.
+     */
+    public Runner.CommandResult runTests(List<String> classDirs, String testClassName, List<String> testMethods,
+                                         String execFile) throws IOException {
+        return request("RUN", classDirs, testClassName, testMethods,
+                execFile != null && hasCoverage() ? execFile : "-", null);
+    }
+
+    /**
+     * Runs test methods of a class one after the other in the next free worker, each as its own coverage
+     * session: the worker resets the JaCoCo agent before every method and dumps its execution data after it,
+     * so the coverage of each test is known from a single request.
+     *
+     * @param classDirs     Class directories loaded for this run only (test classes), highest priority first.
+     * @param testClassName The fully qualified name of the test class.
+     * @param testMethods   The test methods to run, in order.
+     * @param execDir       The directory receiving the execution data of each method, or null to skip it.
+     * @param sessions      Receives one session per method, in order.
+     * @return The result of all methods together; the summary is on stdout and the failures on stderr.
+     * @throws IOException If no worker could run the request.
+     * @throws CancellationException If the pool's cancellation token is cancelled.
+     */
+    public Runner.CommandResult runTestSessions(List<String> classDirs, String testClassName, List<String> testMethods,
+                                                String execDir, List<Session> sessions) throws IOException {
+        String dir = execDir != null && hasCoverage() ? execDir : null;
+        if (dir != null) {
+            Files.createDirectories(Paths.get(dir));
+        }
+        List<String[]> sessionLines = new ArrayList<>();
+        Runner.CommandResult result = request("RUNEACH", classDirs, testClassName, testMethods,
+                dir != null ? dir : "-", sessionLines);
+        for (int i = 0; i < sessionLines.size(); i++) {
+            String[] session = sessionLines.get(i);
+            boolean passed = Long.parseLong(session[3]) == 0 && Long.parseLong(session[4]) > 0;
+            sessions.add(new Session(session[1], passed,
+                    dir != null ? Paths.get(dir, i + ".exec").toString() : null));
+        }
+        return result;
+    }
+
+    private Runner.CommandResult request(String command, List<String> classDirs, String testClassName,
+                                         List<String> testMethods, String output, List<String[]> sessionLines)
+            throws IOException {
+        long startTime = System.currentTimeMillis();
+        CancellationToken token = cancellationToken;
+        Worker worker = acquire(token);
+        boolean healthy = false;
+        // A hung test never answers, so cancelling has to end the worker rather than wait for it.
+        CancellationToken.Registration registration = token != null
+                ? token.onCancel(() -> Runner.destroyProcessTree(worker.process)) : null;
+        try {
+            long deadline = System.currentTimeMillis() + responseTimeoutMillis;
+            if (!worker.ready) {
+                String ready = worker.readLine(deadline, token);
+                if (!"READY".equals(ready)) {
+                    throw new IOException("Worker JVM did not start (see " + workDir.resolve("worker.log") + ")");
+                }
+                worker.ready = true;
+            }
+            worker.send(String.join("\t", command, String.join(File.pathSeparator, classDirs), testClassName,
+                    String.join(",", testMethods), output));
+            Runner.CommandResult result = readResponse(worker, deadline, token, startTime, sessionLines);
+            worker.runs++;
+            healthy = true;
+            return result;
+        } finally {
+            if (registration != null) {
+                registration.close();
+            }
+            release(worker, healthy);
+        }
+    }
+
+    private Runner.CommandResult readResponse(Worker worker, long deadline, CancellationToken token, long startTime,
+                                              List<String[]> sessionLines) throws IOException {
+        String status = worker.readLine(deadline, token);
+        if (status == null || !status.startsWith("STATUS ")) {
+            throw new IOException("Unexpected worker response: " + status);
+        }
+        String[] counts = status.split(" ");
+        long succeeded = Long.parseLong(counts[1]);
+        long failed = Long.parseLong(counts[2]);
+        long found = Long.parseLong(counts[3]);
+
+        StringBuilder failures = new StringBuilder();
+        String line;
+        while ((line = worker.readLine(deadline, token)) != null && !line.equals("END")) {
+            if (line.startsWith("FAIL ")) {
+                failures.append(line.substring(5).replace(" | ", System.lineSeparator())).append(System.lineSeparator());
+            } else if (line.startsWith("SESSION ") && sessionLines != null) {
+                sessionLines.add(line.split(" "));
+            } else if (line.startsWith("MEM ")) {
+                String[] memory = line.split(" ");
+                worker.heapUsage = (double) Long.parseLong(memory[1]) / Long.parseLong(memory[2]);
+            }
+        }
+        if (line == null) {
+            throw new IOException("Test worker exited while running " + status);
+        }
+        String stdout = String.format("Tests run: %d, Succeeded: %d, Failures: %d", found, succeeded, failed);
+        int exitCode = (failed == 0 && found > 0 && failures.length() == 0) ? 0 : 1;
+        if (found == 0 && failures.length() == 0) {
+            failures.append("No tests were found for the requested methods");
+        }
+        return new Runner.CommandResult(stdout, failures.toString(), exitCode, startTime);
+    }
+
+    private Worker acquire(CancellationToken token) throws IOException {
+        while (true) {
+            if (token != null) {
+                token.throwIfCancelled();
+            }
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("Test worker pool is closed");
+                }
+                Worker idle = idleWorkers.poll();
+                if (idle != null) {
+                    return idle;
+                }
+                if (allWorkers.size() < size) {
+                    return startWorker();
+                }
+            }
+            try {
+                Worker idle = idleWorkers.poll(100, TimeUnit.MILLISECONDS);
+                if (idle != null) {
+                    return idle;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a test worker", e);
+            }
+        }
+    }
+
+    /**
+     * Returns a worker to the pool, replacing it when it failed or reached a recycling limit.
+     */
+    private void release(Worker worker, boolean healthy) {
+        boolean recycle = !healthy || !worker.process.isAlive()
+                || worker.runs >= maxRunsPerWorker || worker.heapUsage > maxHeapUsage;
+        if (!recycle && !closed) {
+            idleWorkers.add(worker);
+            return;
+        }
+        logger.info(String.format("Recycling test worker after %d run(s) (heap usage %.0f%%)",
+                worker.runs, worker.heapUsage * 100));
+        worker.stop();
+        synchronized (this) {
+            allWorkers.remove(worker);
+            if (!closed) {
+                try {
+                    idleWorkers.add(startWorker());
+                } catch (IOException e) {
+                    logger.warning("Could not start replacement test worker: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private synchronized Worker startWorker() throws IOException {
+        List<String> workerClasspath = new ArrayList<>();
+        workerClasspath.add(workDir.resolve("classes").toString());
+        workerClasspath.addAll(classpath);
+
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (jacocoAgentPath != null) {
+            String agentOptions = "output=none,dumponexit=false"
+                    + (coverageIncludes != null ? ",includes=" + coverageIncludes : "");
+            command.add("-javaagent:" + jacocoAgentPath + "=" + agentOptions);
+        }
+        command.add("-cp");
+        command.add(String.join(File.pathSeparator, workerClasspath));
+        command.add(WORKER_CLASS);
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.appendTo(workDir.resolve("worker.log").toFile()));
+        Worker worker = new Worker(builder.start());
+        allWorkers.add(worker);
+        logger.info("Started test worker JVM " + allWorkers.size() + "/" + size);
+        return worker;
+    }
+
+    private void extractWorkerClass() throws IOException {
+        String resource = WORKER_CLASS.replace('.', '/') + ".class";
+        Path workerClassFile = workDir.resolve("classes").resolve(resource);
+        Files.createDirectories(workerClassFile.getParent());
+        try (InputStream in = TestWorkerPool.class.getResourceAsStream("/" + resource)) {
+            if (in == null) {
+                throw new IOException("Worker class " + WORKER_CLASS + " not found in the plugin");
+            }
+            Files.copy(in, workerClassFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Stops all worker JVMs and deletes the pool's temporary files.
+     */
+    @Override
+    public void close() {
+        List<Worker> workers;
+        synchronized (this) {
+            closed = true;
+            workers = new ArrayList<>(allWorkers);
+            allWorkers.clear();
+            idleWorkers.clear();
+        }
+        for (Worker worker : workers) {
+            worker.stop();
+        }
+        FileUtils.deleteDirectory(workDir);
+    }
+}
@@ -10,13 +10,14 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import test_agent.utils.FileUtils;
+import test_agent.utils.NumberedText;
 
 /**
  * Generates unit tests for source code using AI-powered test generation.
@@ -30,11 +31,16 @@ public class UnitTestGenerator {
     private final String testFilePath;
     private final List<String> includedFiles;
     private final String additionalInstructions;
-    private final AgentCompletion agentCompletion;
+    private final AsyncAgentCompletion asyncAgentCompletion;
     private int totalInputTokenCount;
     private int totalOutputTokenCount;
     private String sourceCode;
     private String testCode;
+    private boolean promptCompaction;
+    // Built on first use, since the source and test files are read once.
+    private PromptContextCompactor sourceCompactor;
+    private String compactTestCode;
+    private String compactIncludedContent;
 
 
     /**
@@ -60,7 +66,7 @@ public class UnitTestGenerator {
         this.testFilePath = testFilePath;
         this.includedFiles = includedFiles;
         this.additionalInstructions = additionalInstructions;
-        this.agentCompletion = agentCompletion;
+        this.asyncAgentCompletion = AsyncAgentCompletion.of(agentCompletion);
 
         // Initialize state variables
         this.totalInputTokenCount = 0;
@@ -79,6 +85,14 @@ public class UnitTestGenerator {
 
 
 
+    /**
+     * @param promptCompaction true to send only the code around the missed lines, one example test and the
+     *                         declarations of included files, instead of all of them, with every prompt.
+     */
+    public void setPromptCompaction(boolean promptCompaction) {
+        this.promptCompaction = promptCompaction;
+    }
+
     /**
      * Processes the failed test runs and returns a formatted string with details.
      *
@@ -129,13 +143,36 @@ public class UnitTestGenerator {
      * @param language The programming language of the source code
      * @param testingFramework The testing framework to use
      * @param codeCoverageReport The code coverage report
+     * @param coverage The current coverage of the source file, used to compact the prompt; may be null
      * @return A map containing the generated tests
      */
     public Map<String, Object> generateTests(
             List<Map<String, Object>> failedTestRuns,
             String language,
             String testingFramework,
-            String codeCoverageReport
+            String codeCoverageReport,
+            CoverageProcessor.CoverageData coverage
+    ) {
+        return generateTestsAsync(failedTestRuns, language, testingFramework, codeCoverageReport, coverage).join();
+    }
+
+    /**
+     * Starts generating tests and returns without waiting for the model. The prompt is built from the
+     * arguments before this method returns, so the caller may keep changing them.
+     *
+     * @param failedTestRuns A list of maps containing information about failed test runs
+     * @param language The programming language of the source code
+     * @param testingFramework The testing framework to use
+     * @param codeCoverageReport The code coverage report
+     * @param coverage The current coverage of the source file, used to compact the prompt; may be null
+     * @return A future of the map containing the generated tests; cancelling it aborts the model call
+     */
+    public CompletableFuture<Map<String, Object>> generateTestsAsync(
+            List<Map<String, Object>> failedTestRuns,
+            String language,
+            String testingFramework,
+            String codeCoverageReport,
+            CoverageProcessor.CoverageData coverage
     ) {
         String failedTestRunsValue = checkForFailedTestRuns(failedTestRuns);
 
@@ -143,32 +180,77 @@ public class UnitTestGenerator {
         Path sourceFileRelPath = Paths.get(projectRoot).relativize(Paths.get(sourceFilePath));
         Path testFileRelPath = Paths.get(projectRoot).relativize(Paths.get(testFilePath));
 
-        // Number the source code lines
-        String sourceFileNumbered = IntStream.range(0, sourceCode.split("\n").length)
-                .mapToObj(i -> (i + 1) + " " + sourceCode.split("\n")[i])
-                .collect(Collectors.joining("\n"));
-        // Gathers the contents of includedFiles into a single string
-        String includedContent = FileUtils.getIncludedFilesContent(includedFiles);
-
+        String sourceFileNumbered;
+        String testContent;
+        String includedContent;
+        if (promptCompaction && isJava(language)) {
+            BitSet focusLines = new BitSet();
+            if (coverage != null) {
+                focusLines.or(coverage.getMissedLineSet());
+                focusLines.or(coverage.getPartlyCoveredBranchLines());
+            }
+            sourceFileNumbered = getSourceCompactor().compactSource(focusLines);
+            testContent = getCompactTestCode();
+            includedContent = getCompactIncludedContent();
+            logger.info(String.format("Sending %d of %d characters of the source and test files",
+                    sourceFileNumbered.length() + testContent.length(), sourceCode.length() + testCode.length()));
+        } else {
+            sourceFileNumbered = NumberedText.of(sourceCode);
+            testContent = testCode;
+            // Gathers the contents of includedFiles into a single string
+            includedContent = FileUtils.getIncludedFilesContent(includedFiles);
+        }
 
 
-        TestGenerationResult result = agentCompletion.generateTests(
+        CompletableFuture<TestGenerationResult> call = asyncAgentCompletion.generateTestsAsync(
                 sourceFileRelPath.toString(),
                 MAX_TESTS_PER_RUN,
                 sourceFileNumbered,
                 codeCoverageReport,
                 language,
-                testCode,
+                testContent,
                 testFileRelPath.toString(),
                 testingFramework,
                 additionalInstructions,
                 includedContent,
                 failedTestRunsValue
         );
+        return AsyncAgentCompletion.cancelling(call.thenApply(this::parseGeneratedTests), call);
+    }
+
+    private static boolean isJava(String language) {
+        return language != null && language.toLowerCase().contains("java")
+                && !language.toLowerCase().contains("javascript");
+    }
+
+    private synchronized PromptContextCompactor getSourceCompactor() {
+        if (sourceCompactor == null) {
+            sourceCompactor = new PromptContextCompactor(sourceCode);
+        }
+        return sourceCompactor;
+    }
+
+    private synchronized String getCompactTestCode() {
+        if (compactTestCode == null) {
+            compactTestCode = PromptContextCompactor.compactTestFile(testCode);
+        }
+        return compactTestCode;
+    }
+
+    private synchronized String getCompactIncludedContent() {
+        if (compactIncludedContent == null) {
+            compactIncludedContent = FileUtils.getIncludedFilesContent(includedFiles, PromptContextCompactor::outline);
+        }
+        return compactIncludedContent;
+    }
+
+    /**
+     * Counts the tokens of a generation result and converts its YAML into GeneratedTest objects.
+     */
+    private Map<String, Object> parseGeneratedTests(TestGenerationResult result) {
         //("Raw AI YAML response:\n" + result.getResponse());
         // Update token counts
-        this.totalInputTokenCount += result.getInputTokenCount();
-        this.totalOutputTokenCount += result.getOutputTokenCount();
+        addTokenCounts(result.getInputTokenCount(), result.getOutputTokenCount());
 
 
         try {
@@ -223,12 +305,17 @@ public class UnitTestGenerator {
         }
     }
 
+    private synchronized void addTokenCounts(int inputTokens, int outputTokens) {
+        this.totalInputTokenCount += inputTokens;
+        this.totalOutputTokenCount += outputTokens;
+    }
+
     // Getters for the class properties
 
-    public int getTotalInputTokenCount() {
+    public synchronized int getTotalInputTokenCount() {
         return totalInputTokenCount;
     }
-    public int getTotalOutputTokenCount() {
+    public synchronized int getTotalOutputTokenCount() {
         return totalOutputTokenCount;
     }
     }
\ No newline at end of file
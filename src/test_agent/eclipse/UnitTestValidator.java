@@ -3,6 +3,7 @@ package test_agent.eclipse;
 
 import test_agent.models.GeneratedTest;
 import test_agent.results.AnalysisResult;
+import test_agent.results.CompilationResult;
 import test_agent.results.TestValidationResult;
 import test_agent.utils.YamlParser;
 
@@ -12,9 +13,18 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import test_agent.utils.FileUtils;
 import test_agent.utils.LanguageUtils;
+import test_agent.utils.NumberedText;
 
  import java.io.ByteArrayInputStream;
  import java.nio.charset.StandardCharsets;
@@ -38,8 +48,24 @@ public class UnitTestValidator {
     private String testCommandDir;
     private int desiredCoverage;
     private static final Logger logger = Logger.getLogger(UnitTestValidator.class.getName());
+
+    // Keeps the coverage section of the prompt short for classes with many conditions.
+    private static final int MAX_PARTLY_COVERED_LINES_IN_REPORT = 50;
+
+    // Output of Maven and Gradle after which a run validating a single candidate cannot pass any more.
+    private static final List<Pattern> BUILD_FAILURE_PATTERNS = List.of(
+            Pattern.compile("COMPILATION ERROR"),
+            Pattern.compile("Compilation failed"),
+            Pattern.compile("BUILD FAILURE"),
+            Pattern.compile("BUILD FAILED"));
     private CoverageProcessor coverageProcessor;
     private double currentCoverage;
+    private CoverageProcessor.CoverageData currentCoverageData;
+    // The suite's execution data merged with the accepted tests'; null if the test command writes none.
+    private MergedExecutionData suiteExecutionData;
+    private CoverageProcessor.Metric coverageMetric = CoverageProcessor.Metric.LINE;
+    private final List<TestContribution> testContributions = Collections.synchronizedList(new ArrayList<>());
+    private String classFilesDir;
     private Map<String, Double> lastCoveragePercentages;
     private double lastSourceFileCoverage;
     private String codeCoverageReport;
@@ -56,8 +82,21 @@ public class UnitTestValidator {
     private String sourceCode;
     private String testFilePath;
     private AgentCompletion agentCompletion;
+    private AsyncAgentCompletion asyncAgentCompletion;
     private int numAttempts;
     private List<Map<String, Object>> failedTestRuns = new ArrayList<>();
+    private final List<CompletableFuture<?>> pendingFailureAnalyses = new ArrayList<>();
+    private JUnitLauncherEngine testEngine;
+    private TestCompiler testCompiler;
+    // Whether the unchanged test file compiles on its own; null until a candidate failed to compile.
+    private Boolean testCompilerReliable;
+    private TestSourceChecker sourceChecker;
+    private Runner.OutputListener outputListener;
+    private CancellationToken cancellationToken;
+    private int coverageTimeoutSeconds = Runner.DEFAULT_TIMEOUT_SECONDS;
+    private int testTimeoutSeconds = Runner.DEFAULT_TIMEOUT_SECONDS;
+    private Runner.ResourceLimits testResourceLimits;
+    private boolean runEachTestMethodSeparately;
 
 
     public UnitTestValidator(
@@ -70,6 +109,25 @@ public class UnitTestValidator {
             String projectRoot,
             AgentCompletion agentCompletion,
             int numAttempts) {
+        this(filePath, srcFilePath, codeCoverageReportPath, testCommand, testCommandDir, desiredCoverage,
+                projectRoot, agentCompletion, numAttempts, null);
+    }
+
+    /**
+     * @param classFilesDir the compiled main classes directory, used when the coverage report is a
+     *                      JaCoCo {@code .exec} file. May be null to infer it from the report location.
+     */
+    public UnitTestValidator(
+            String filePath,
+            String srcFilePath,
+            String codeCoverageReportPath,
+            String testCommand,
+            String testCommandDir,
+            int desiredCoverage,
+            String projectRoot,
+            AgentCompletion agentCompletion,
+            int numAttempts,
+            String classFilesDir) {
 
         // Initialize existing fields
         this.filePath = filePath;
@@ -80,10 +138,12 @@ public class UnitTestValidator {
         this.desiredCoverage = desiredCoverage;
         this.lastCoveragePercentages = new HashMap<>();
         this.codeCoverageReport = "";
+        this.classFilesDir = classFilesDir;
 
         // Initialize new fields
         this.projectRoot = projectRoot;
         this.agentCompletion = agentCompletion;
+        this.asyncAgentCompletion = AsyncAgentCompletion.of(agentCompletion);
         this.numAttempts = numAttempts;
         this.testFilePath = filePath;
         this.totalInputTokenCount = 0;
@@ -94,10 +154,10 @@ public class UnitTestValidator {
         this.language = LanguageUtils.getCodeLanguageFromPath(srcFilePath);
 
         // Initialize the coverage processor
-        this.coverageProcessor = new CoverageProcessor(
+        this.coverageProcessor = CoverageProcessor.forReport(
                 codeCoverageReportPath,
-                srcFilePath
-
+                srcFilePath,
+                classFilesDir
         );
 
         // Read source code
@@ -114,15 +174,43 @@ public class UnitTestValidator {
     // Add getter methods for new fields
 
 
+    /**
+     * Returns the failed test runs, after waiting for the failure analyses still running in the background.
+     */
     public List<Map<String, Object>> getFailedTestRuns() {
+        awaitFailureAnalyses();
         return failedTestRuns;
     }
 
 
+    /**
+     * @return the current coverage in the metric of the coverage goal, between 0 and 1.
+     */
     public double getCurrentCoverage() {
         return currentCoverage;
     }
 
+    /**
+     * @return the current coverage of the source file, or null before the first coverage run.
+     */
+    public CoverageProcessor.CoverageData getCurrentCoverageData() {
+        return currentCoverageData;
+    }
+
+    /**
+     * Sets the metric the desired coverage refers to. Generated tests are then accepted when they raise
+     * coverage in that metric, e.g. a test covering the missed branch of an already executed line.
+     *
+     * @param coverageMetric The metric of the coverage goal.
+     */
+    public void setCoverageMetric(CoverageProcessor.Metric coverageMetric) {
+        this.coverageMetric = coverageMetric != null ? coverageMetric : CoverageProcessor.Metric.LINE;
+    }
+
+    public CoverageProcessor.Metric getCoverageMetric() {
+        return coverageMetric;
+    }
+
 
     public int getDesiredCoverage() {
         return desiredCoverage;
@@ -142,14 +230,19 @@ public class UnitTestValidator {
         return testingFramework;
     }
 
-    public int getTotalInputTokenCount() {
+    public synchronized int getTotalInputTokenCount() {
         return totalInputTokenCount;
     }
 
-    public int getTotalOutputTokenCount() {
+    public synchronized int getTotalOutputTokenCount() {
         return totalOutputTokenCount;
     }
 
+    private synchronized void addTokenCounts(int inputTokens, int outputTokens) {
+        totalInputTokenCount += inputTokens;
+        totalOutputTokenCount += outputTokens;
+    }
+
 
     public String getLanguage() {
         return language;
@@ -171,24 +264,19 @@ public void initialTestSuiteAnalysis() throws Exception {
                     relevantLineNumberToInsertImportsAfter == null) &&
                     counterAttempts < allowedAttempts) {
 
-                // Create numbered test file content
-                String[] lines = readFile(testFilePath).split("\n");
-                StringBuilder numberedContent = new StringBuilder();
-                for (int i = 0; i < lines.length; i++) {
-                    numberedContent.append(String.format("%d %s\n", i + 1, lines[i]));
-                }
+                // Numbered once per distinct test file content, not once per attempt
+                String numberedContent = NumberedText.of(readFile(testFilePath));
                 System.out.println("Performing Test Suite Analysis.....");
 
                 AnalysisResult result = agentCompletion.analyzeTestInsertLine(
                         language,
-                        numberedContent.toString(),
+                        numberedContent,
                         getRelativePath(testFilePath, projectRoot)
                 );
                 //logger.info("Raw AI YAML response:\n" + result.getResponse());
 
                 // Update token counts
-                totalInputTokenCount += result.getInputTokenCount();
-                totalOutputTokenCount += result.getOutputTokenCount();
+                addTokenCounts(result.getInputTokenCount(), result.getOutputTokenCount());
 
                 // Parse YAML response
                 Map<String, Object> testsDict = YamlParser.loadYaml(result.getResponse());
@@ -242,7 +330,7 @@ public void initialTestSuiteAnalysis() throws Exception {
         //logger.info("Running build/test command to generate coverage report: \"" + testCommand + "\"");
           System.out.println("Running build/test command to generate coverage report: \"" + testCommand + "\"");
         // Execute the test command
-        Runner.CommandResult result = Runner.runCommand(testCommand, testCommandDir);
+        Runner.CommandResult result = Runner.runCommand(testCommand, testCommandDir, coverageCommandOptions());
 
         // Verify the command execution was successful
         if (result.getExitCode() != 0) {
@@ -257,21 +345,33 @@ public void initialTestSuiteAnalysis() throws Exception {
             throw new RuntimeException(errorMessage);
         }
 
+        loadCoverageReport(result.getCommandStartTime(), false);
+    }
+
+    /**
+     * Reads the coverage report written by a coverage run shared by several agents and makes it the current
+     * coverage. The report is read through the shared {@link CoverageReportIndex}, so it is parsed once for
+     * all of them.
+     *
+     * @param timeOfTestCommand The time when the test command that wrote the report was started.
+     */
+    public void loadCoverageReport(long timeOfTestCommand) {
+        loadCoverageReport(timeOfTestCommand, true);
+    }
+
+    private void loadCoverageReport(long timeOfTestCommand, boolean useIndex) {
         try {
             // Process the coverage report
-            CoverageResult coverageResult = postProcessCoverageReport(result.getCommandStartTime());
+            CoverageResult coverageResult = postProcessCoverageReport(coverageProcessor, timeOfTestCommand, useIndex);
 
             // Update the current coverage and coverage percentages
             this.currentCoverage = coverageResult.getOverallCoverage();
+            this.currentCoverageData = coverageResult.getCoverageData();
             this.lastCoveragePercentages = new HashMap<>(coverageResult.getCoveragePercentages());
+            this.suiteExecutionData = loadSuiteExecutionData();
 
             // Format and store the coverage report
-            this.codeCoverageReport = String.format(
-                    "Lines covered: %d\nLines missed: %d\nPercentage covered: %.2f%%",
-                    coverageResult.getCoveredLinesCount(),
-                    coverageResult.getMissedLinesCount(),
-                    coverageResult.getOverallCoverage() * 100
-            );
+            this.codeCoverageReport = formatCoverageReport(coverageResult.getCoverageData());
 
            // logger.info(String.format("Initial coverage: %.2f%%", this.currentCoverage * 100));
 
@@ -283,6 +383,10 @@ public void initialTestSuiteAnalysis() throws Exception {
         } catch (Exception e) {
             // Handle other types of errors
             logger.warning("Error parsing coverage report: " + e.getMessage());
+            if (coverageProcessor instanceof ExecCoverageProcessor) {
+                // Binary execution data is useless as a textual fallback report.
+                throw new RuntimeException("Coverage processing failed", e);
+            }
             logger.info("Will default to using the full coverage report. " +
                     "You will need to check coverage manually for each passing test.");
 
@@ -298,6 +402,50 @@ public void initialTestSuiteAnalysis() throws Exception {
     }
 
 
+    /**
+     * Formats coverage for the generation prompt: line counts, branch and instruction counters when the report
+     * has them, the coverage goal, and the executed lines whose branches are not all covered yet.
+     */
+    private String formatCoverageReport(CoverageProcessor.CoverageData coverageData) {
+        StringBuilder report = new StringBuilder(String.format(
+                "Lines covered: %d\nLines missed: %d\nPercentage covered: %.2f%%",
+                coverageData.getCoveredCount(),
+                coverageData.getMissedCount(),
+                coverageData.getCoveragePercentage() * 100));
+        CoverageProcessor.Counter branches = coverageData.getBranchCounter();
+        if (branches.getTotal() > 0) {
+            report.append(String.format("\nBranches covered: %d of %d (%.2f%%)",
+                    branches.getCovered(), branches.getTotal(), branches.getCoveredRatio() * 100));
+        }
+        CoverageProcessor.Counter instructions = coverageData.getInstructionCounter();
+        if (instructions.getTotal() > 0) {
+            report.append(String.format("\nInstructions covered: %d of %d (%.2f%%)",
+                    instructions.getCovered(), instructions.getTotal(), instructions.getCoveredRatio() * 100));
+        }
+        if (coverageMetric != CoverageProcessor.Metric.LINE) {
+            report.append(String.format("\nCoverage goal: %s coverage of %d%%, currently %.2f%%",
+                    coverageMetric.getDisplayName().toLowerCase(), desiredCoverage,
+                    coverageData.getCoverage(coverageMetric) * 100));
+        }
+
+        BitSet partlyCovered = coverageData.getPartlyCoveredBranchLines();
+        if (!partlyCovered.isEmpty()) {
+            report.append("\nLines that run but have missed branches (cover the other outcomes of their conditions):");
+            int listed = 0;
+            for (int line = partlyCovered.nextSetBit(0); line >= 0; line = partlyCovered.nextSetBit(line + 1)) {
+                if (listed == MAX_PARTLY_COVERED_LINES_IN_REPORT) {
+                    report.append(String.format("\n  ... and %d more", partlyCovered.cardinality() - listed));
+                    break;
+                }
+                CoverageProcessor.Counter lineBranches = coverageData.getLineBranches(line);
+                report.append(String.format("\n  line %d: %d of %d branches missed",
+                        line, lineBranches.getMissed(), lineBranches.getTotal()));
+                listed++;
+            }
+        }
+        return report.toString();
+    }
+
     /**
      * Process the coverage report and calculate coverage percentages.
      *
@@ -305,27 +453,40 @@ public void initialTestSuiteAnalysis() throws Exception {
      * @return CoverageResult containing the overall coverage percentage and a map of file-specific coverages
      */
     public CoverageResult postProcessCoverageReport(long timeOfTestCommand) {
+        return postProcessCoverageReport(coverageProcessor, timeOfTestCommand, false);
+    }
+
+    /**
+     * Process a coverage report with the given processor and calculate coverage percentages.
+     *
+     * @param processor         The coverage processor reading the report
+     * @param timeOfTestCommand The time when the test command was executed
+     * @param useIndex          True to read the report through the shared {@link CoverageReportIndex}
+     * @return CoverageResult containing the overall coverage percentage and a map of file-specific coverages
+     */
+    private CoverageResult postProcessCoverageReport(CoverageProcessor processor, long timeOfTestCommand,
+                                                     boolean useIndex) {
         Map<String, Double> coveragePercentages = new HashMap<>();
         double percentageCovered;
         int totalLinesCovered;
         int totalLinesMissed;
+        CoverageProcessor.CoverageData coverageData;
 
         try {
-            CoverageProcessor.CoverageData coverageData = coverageProcessor.processCoverageReport(timeOfTestCommand);
+            coverageData = processor.processCoverageReport(timeOfTestCommand, useIndex);
 
-            totalLinesCovered = coverageData.getCoveredLines().size();
-            totalLinesMissed = coverageData.getMissedLines().size();
-            int totalLines = totalLinesCovered + totalLinesMissed;
+            totalLinesCovered = coverageData.getCoveredCount();
+            totalLinesMissed = coverageData.getMissedCount();
 
-            // Calculate coverage percentage
-            percentageCovered = (totalLines > 0) ? (double) totalLinesCovered / totalLines : 0.0;
+            // Calculate coverage percentage in the metric of the coverage goal
+            percentageCovered = coverageData.getCoverage(coverageMetric);
 
             // Update coverage percentage for the source file
             String sourceFileName = new java.io.File(srcFilePath).getName();
-            coveragePercentages.put(sourceFileName, coverageData.getCoveragePercentage());
+            coveragePercentages.put(sourceFileName, percentageCovered);
 
             if (srcFilePath.equals(sourceFileName)) {
-                lastSourceFileCoverage = coverageData.getCoveragePercentage();
+                lastSourceFileCoverage = percentageCovered;
             }
 
            /* logger.info(String.format("Total lines covered: %d, Total lines missed: %d, Total lines: %d",
@@ -341,7 +502,8 @@ public void initialTestSuiteAnalysis() throws Exception {
                 percentageCovered,
                 coveragePercentages,
                 totalLinesCovered,
-                totalLinesMissed
+                totalLinesMissed,
+                coverageData
         );
     }
 
@@ -350,23 +512,43 @@ public void initialTestSuiteAnalysis() throws Exception {
         private final Map<String, Double> coveragePercentages;
         private final int coveredLinesCount;
         private final int missedLinesCount;
+        private final CoverageProcessor.CoverageData coverageData;
 
         public CoverageResult(double overallCoverage,
                             Map<String, Double> coveragePercentages,
                             int coveredLinesCount,
                             int missedLinesCount) {
+            this(overallCoverage, coveragePercentages, coveredLinesCount, missedLinesCount, null);
+        }
+
+        public CoverageResult(double overallCoverage,
+                            Map<String, Double> coveragePercentages,
+                            int coveredLinesCount,
+                            int missedLinesCount,
+                            CoverageProcessor.CoverageData coverageData) {
             this.overallCoverage = overallCoverage;
-            this.coveragePercentages = new HashMap<>(coveragePercentages);
+            this.coveragePercentages = Collections.unmodifiableMap(new HashMap<>(coveragePercentages));
             this.coveredLinesCount = coveredLinesCount;
             this.missedLinesCount = missedLinesCount;
+            this.coverageData = coverageData;
+        }
+
+        /**
+         * @return the line-level data the percentages were computed from, or null if not available.
+         */
+        public CoverageProcessor.CoverageData getCoverageData() {
+            return coverageData;
         }
 
         public double getOverallCoverage() {
             return overallCoverage;
         }
 
+        /**
+         * @return the coverage per file; the map is read-only.
+         */
         public Map<String, Double> getCoveragePercentages() {
-            return new HashMap<>(coveragePercentages);
+            return coveragePercentages;
         }
 
         public int getCoveredLinesCount() {
@@ -378,12 +560,131 @@ public void initialTestSuiteAnalysis() throws Exception {
         }
     }
 
+    /**
+     * What one accepted generated test added to the coverage of the suite it was accepted into.
+     */
+    public static class TestContribution {
+        private final String testName;
+        private final BitSet newlyCoveredLines;
+        private final int newlyCoveredBranches;
+        private final int newlyCoveredInstructions;
+
+        public TestContribution(String testName, BitSet newlyCoveredLines, int newlyCoveredBranches,
+                                int newlyCoveredInstructions) {
+            this.testName = testName;
+            this.newlyCoveredLines = newlyCoveredLines;
+            this.newlyCoveredBranches = newlyCoveredBranches;
+            this.newlyCoveredInstructions = newlyCoveredInstructions;
+        }
+
+        public String getTestName() {
+            return testName;
+        }
+
+        public BitSet getNewlyCoveredLines() {
+            return (BitSet) newlyCoveredLines.clone();
+        }
+
+        public int getNewlyCoveredBranches() {
+            return newlyCoveredBranches;
+        }
+
+        public int getNewlyCoveredInstructions() {
+            return newlyCoveredInstructions;
+        }
+    }
+
     public String getCodeCoverageReport() {
         return codeCoverageReport;
     }
 
+    /**
+     * @return the coverage report of the current coverage, including the tests accepted since the last
+     *         coverage run.
+     */
+    public String getCurrentCoverageReport() {
+        return currentCoverageData != null ? formatCoverageReport(currentCoverageData) : codeCoverageReport;
+    }
+
+    /**
+     * @return what each accepted generated test added to the coverage, in the order they were accepted.
+     */
+    public List<TestContribution> getTestContributions() {
+        synchronized (testContributions) {
+            return new ArrayList<>(testContributions);
+        }
+    }
+
+    /**
+     * Formats the contributions of the accepted generated tests, one line per test.
+     *
+     * @return The report, or an empty string if no generated test was accepted.
+     */
+    public String formatContributionReport() {
+        List<TestContribution> contributions = getTestContributions();
+        if (contributions.isEmpty()) {
+            return "";
+        }
+        StringBuilder report = new StringBuilder("Coverage added by each accepted test:");
+        for (TestContribution contribution : contributions) {
+            BitSet lines = contribution.getNewlyCoveredLines();
+            report.append(String.format("%n  %s: %d line(s)%s, %d branch(es), %d instruction(s)",
+                    contribution.getTestName(), lines.cardinality(), lines.isEmpty() ? "" : " " + lines,
+                    contribution.getNewlyCoveredBranches(), contribution.getNewlyCoveredInstructions()));
+        }
+        return report.toString();
+    }
+
+    private void recordContribution(GeneratedTest generatedTest, CoverageProcessor.CoverageData testCoverage,
+                                    CoverageProcessor.CoverageData before) {
+        if (testCoverage == null) {
+            return;
+        }
+        String testName = generatedTest.getTestMethodName() != null
+                ? generatedTest.getTestMethodName()
+                : "test #" + (testContributions.size() + 1);
+        testContributions.add(new TestContribution(testName, testCoverage.newlyCoveredSince(before),
+                testCoverage.newlyCoveredBranchCount(before), testCoverage.newlyCoveredInstructionCount(before)));
+    }
+
+
+    /**
+     * Adds a failed test to the failed test runs and starts the model's failure analysis in the background.
+     * The analysis fills in the entry's error message when it completes; {@link #getFailedTestRuns()} waits
+     * for it, so validation of the next candidates is not held up by the model.
+     */
+    private void recordFailedTest(GeneratedTest generatedTest, TestValidationResult failResult) {
+        Map<String, Object> failedTest = new HashMap<>();
+        failedTest.put("code", generatedTest.toMap());
+        failedTest.put("error_message", "");
+        failedTestRuns.add(failedTest);
+
+        CompletableFuture<String> analysis = extractErrorMessage(failResult.toMap())
+                .thenApply(errorMessage -> {
+                    if (errorMessage != null && !errorMessage.isEmpty()) {
+                        logger.info("Error message summary:\n" + errorMessage);
+                    }
+                    failedTest.put("error_message", errorMessage);
+                    return errorMessage;
+                });
+        synchronized (pendingFailureAnalyses) {
+            pendingFailureAnalyses.add(analysis);
+        }
+    }
+
+    /**
+     * Waits for the failure analyses started by {@link #recordFailedTest}.
+     */
+    public void awaitFailureAnalyses() {
+        List<CompletableFuture<?>> pending;
+        synchronized (pendingFailureAnalyses) {
+            pending = new ArrayList<>(pendingFailureAnalyses);
+            pendingFailureAnalyses.clear();
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+    }
 
-    private String extractErrorMessage(Map<String, Object> failDetails) {
+    private CompletableFuture<String> extractErrorMessage(Map<String, Object> failDetails) {
         try {
             // Check if processedTestFile is null and handle it
             String processedTestFile = (String) failDetails.get("processedTestFile");
@@ -393,23 +694,108 @@ public void initialTestSuiteAnalysis() throws Exception {
                 processedTestFile = "";
             }
 
-            AnalysisResult result = agentCompletion.analyzeTestFailure(
+            return asyncAgentCompletion.analyzeTestFailureAsync(
                     getRelativePath(srcFilePath, projectRoot),
                     readFile(srcFilePath),
                     processedTestFile,
                     (String) failDetails.get("stdout"),
                     (String) failDetails.get("stderr"),
                     getRelativePath(testFilePath, projectRoot)
-            );
-
-            totalInputTokenCount += result.getInputTokenCount();
-            totalOutputTokenCount += result.getOutputTokenCount();
-
-            return result.getResponse().trim();
+            ).handle((result, error) -> {
+                if (error != null) {
+                    logger.log(Level.SEVERE, "Error extracting error message: " + error.getMessage(), error);
+                    return "";
+                }
+                addTokenCounts(result.getInputTokenCount(), result.getOutputTokenCount());
+                return result.getResponse().trim();
+            });
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error extracting error message: " + e.getMessage(), e);
-            return "";
+            return CompletableFuture.completedFuture("");
+        }
+    }
+
+
+    /**
+     * The test file content after inserting a generated test, with the number of lines added.
+     */
+    private static class ProcessedTest {
+        final String content;
+        final int importLinesInserted;
+        final int testLinesInserted;
+
+        ProcessedTest(String content, int importLinesInserted, int testLinesInserted) {
+            this.content = content;
+            this.importLinesInserted = importLinesInserted;
+            this.testLinesInserted = testLinesInserted;
+        }
+    }
+
+    /**
+     * Inserts the generated test's new imports and test code into the given test file content.
+     * Imports already present in the file are skipped.
+     *
+     * @param content               The current test file content.
+     * @param generatedTest         The generated test to insert.
+     * @param insertTestsAfter      The line number after which the test code is inserted.
+     * @param insertImportsAfter    The line number after which new imports are inserted, or null to skip imports.
+     * @return The processed content and the number of import and test lines inserted.
+     */
+    private ProcessedTest insertTest(String content, GeneratedTest generatedTest,
+                                     int insertTestsAfter, Integer insertImportsAfter) {
+        String testCode = generatedTest.getTestCode().trim();
+        String additionalImports = generatedTest.getNewImportsCode().trim();
+
+        // Clean up the additional imports if necessary
+        if (additionalImports.startsWith("\"") && additionalImports.endsWith("\"")) {
+            additionalImports = additionalImports.substring(1, additionalImports.length() - 1);
+        }
+
+        // Check if additional_imports only contains '""'
+        if (additionalImports.equals("\"\"")) {
+            additionalImports = "";
+        }
+
+        List<String> additionalImportsLines = new ArrayList<>();
+        String[] originalContentLines = content.split("\n");
+
+        // Build a deduplicated list of import lines
+        if (!additionalImports.isEmpty()) {
+            String[] rawImportLines = additionalImports.split("\n");
+            for (String line : rawImportLines) {
+                // Only add if it's not already present (stripped match) in the file
+                boolean isDuplicate = false;
+                String trimmedLine = line.trim();
+                if (!trimmedLine.isEmpty()) {
+                    for (String existing : originalContentLines) {
+                        if (trimmedLine.equals(existing.trim())) {
+                            isDuplicate = true;
+                            break;
+                        }
+                    }
+                    if (!isDuplicate) {
+                        additionalImportsLines.add(line);
+                    }
+                }
+            }
+        }
+
+        int insertedLinesCount = 0;
+        List<String> processedContentLines = new ArrayList<>(Arrays.asList(originalContentLines));
+
+        if (insertImportsAfter != null && !additionalImportsLines.isEmpty()) {
+            insertedLinesCount = additionalImportsLines.size();
+            processedContentLines.addAll(insertImportsAfter, additionalImportsLines);
         }
+
+        // Offset the test insertion point by however many lines we just inserted
+        int updatedTestInsertionPoint = insertTestsAfter + insertedLinesCount;
+
+        // Now insert the test code at 'updatedTestInsertionPoint'
+        List<String> testCodeLinesList = new ArrayList<>(Arrays.asList(testCode.split("\n")));
+        processedContentLines.addAll(updatedTestInsertionPoint, testCodeLinesList);
+
+        return new ProcessedTest(String.join("\n", processedContentLines), insertedLinesCount, testCodeLinesList.size());
     }
 
 
@@ -436,21 +822,26 @@ public void initialTestSuiteAnalysis() throws Exception {
                     .build();
         }
 
+        if (sourceChecker != null && relevantLineNumberToInsertTestsAfter != null
+                && !generatedTest.getTestCode().trim().isEmpty()) {
+            String candidate = insertTest(originalContent, generatedTest,
+                    relevantLineNumberToInsertTestsAfter, relevantLineNumberToInsertImportsAfter).content;
+            CompilationResult check = precheck(candidate);
+            if (check != null && !check.isSuccess()) {
+                return compilationFailure(generatedTest, originalContent, candidate, check);
+            }
+        }
+
+        // The engine runs the new test alone, which can only be judged against the suite's execution data.
+        if (testEngine != null && suiteExecutionData != null && relevantLineNumberToInsertTestsAfter != null
+                && !generatedTest.getTestCode().trim().isEmpty()) {
+            return validateTestInProcess(generatedTest, originalContent);
+        }
+
         String processedTest = "";
         try {
             // Extract test code and additional imports
             String testCode = generatedTest.getTestCode().trim();
-            String additionalImports = generatedTest.getNewImportsCode().trim();
-
-            // Clean up the additional imports if necessary
-            if (additionalImports != null && additionalImports.startsWith("\"") && additionalImports.endsWith("\"")) {
-                additionalImports = additionalImports.substring(1, additionalImports.length() - 1);
-            }
-
-            // Check if additional_imports only contains '""'
-            if (additionalImports != null && additionalImports.equals("\"\"")) {
-                additionalImports = "";
-            }
 
             // Get the relevant line numbers for inserting tests and imports
             Integer relevantLineNumberToInsertTestsAfter = this.relevantLineNumberToInsertTestsAfter;
@@ -461,50 +852,18 @@ public void initialTestSuiteAnalysis() throws Exception {
             int exitCode = 0;
             if (!testCode.isEmpty() && relevantLineNumberToInsertTestsAfter != null) {
                 // Step 1: Insert imports first, then insert the generated test code
-                List<String> additionalImportsLines = new ArrayList<>();
-                String[] originalContentLines = originalContent.split("\n");
-
-                // Build a deduplicated list of import lines
-                if (additionalImports != null && !additionalImports.isEmpty()) {
-                    String[] rawImportLines = additionalImports.split("\n");
-                    for (String line : rawImportLines) {
-                        // Only add if it's not already present (stripped match) in the file
-                        boolean isDuplicate = false;
-                        String trimmedLine = line.trim();
-                        if (!trimmedLine.isEmpty()) {
-                            for (String existing : originalContentLines) {
-                                if (trimmedLine.equals(existing.trim())) {
-                                    isDuplicate = true;
-                                    break;
-                                }
-                            }
-                            if (!isDuplicate) {
-                                additionalImportsLines.add(line);
-                            }
-                        }
+                ProcessedTest inserted = insertTest(originalContent, generatedTest,
+                        relevantLineNumberToInsertTestsAfter, relevantLineNumberToInsertImportsAfter);
+                int insertedLinesCount = inserted.importLinesInserted;
+                processedTest = inserted.content;
+
+                // Compile just the test file first; a candidate that does not compile never reaches the build.
+                if (testCompiler != null) {
+                    TestValidationResult compileFailure = compileTestFile(generatedTest, originalContent, processedTest);
+                    if (compileFailure != null) {
+                        return compileFailure;
                     }
                 }
-
-                int insertedLinesCount = 0;
-                List<String> processedContentLines = new ArrayList<>(Arrays.asList(originalContentLines));
-
-                if (relevantLineNumberToInsertImportsAfter != null && !additionalImportsLines.isEmpty()) {
-                    insertedLinesCount = additionalImportsLines.size();
-                    processedContentLines.addAll(relevantLineNumberToInsertImportsAfter, additionalImportsLines);
-                }
-
-                // Offset the test insertion point by however many lines we just inserted
-                int updatedTestInsertionPoint = relevantLineNumberToInsertTestsAfter;
-                if (insertedLinesCount > 0) {
-                    updatedTestInsertionPoint += insertedLinesCount;
-                }
-
-                // Now insert the test code at 'updatedTestInsertionPoint'
-                String[] testCodeLines = testCode.split("\n");
-                List<String> testCodeLinesList = new ArrayList<>(Arrays.asList(testCodeLines));
-                processedContentLines.addAll(updatedTestInsertionPoint, testCodeLinesList);
-
-                processedTest = String.join("\n", processedContentLines);
                 //logger.info("Test file content just before running:\n" + processedTest);
 
                 try {
@@ -526,11 +885,22 @@ public void initialTestSuiteAnalysis() throws Exception {
                             .build();
                 }
 
-                // Step 2: Run the test using the Runner class
+                // Step 2: Run the test using the Runner class, narrowed to the new test method when possible
+                String command = testCommand;
+                boolean singleMethod = false;
+                if (runEachTestMethodSeparately && suiteExecutionData != null
+                        && generatedTest.getTestMethodName() != null) {
+                    String methodCommand = TestCommandAdapter.adaptForTestMethod(testCommand,
+                            getTestClassName(processedTest), generatedTest.getTestMethodName());
+                    if (methodCommand != null) {
+                        command = methodCommand;
+                        singleMethod = true;
+                    }
+                }
                 Runner.CommandResult result = null;
                 for (int i = 0; i < numAttempts; i++) {
-                	System.out.println("Running test with the following command: \"" + testCommand + "\"");
-                    result = Runner.runCommand(testCommand, testCommandDir);
+                	System.out.println("Running test with the following command: \"" + command + "\"");
+                    result = Runner.runCommand(command, testCommandDir, candidateCommandOptions(generatedTest));
                     exitCode = result.getExitCode();
                     if (exitCode != 0) {
                         break;
@@ -576,29 +946,7 @@ public void initialTestSuiteAnalysis() throws Exception {
                             .processedTestFile(processedTest)
                             .build();
 
-                    String errorMessage = extractErrorMessage(failResult.toMap());
-                    if (errorMessage != null && !errorMessage.isEmpty()) {
-                        logger.info("Error message summary:\n" + errorMessage);
-                        failResult = new TestValidationResult.Builder()
-                                .status(TestValidationResult.STATUS_FAIL)
-                                .reason("Test failed")
-                                .exitCode(exitCode)
-                                .stderr(result.getStderr())
-                                .stdout(result.getStdout())
-                                .test(generatedTest)
-                                .language(language)
-                                .sourceFile(sourceCode)
-                                .originalTestFile(originalContent)
-                                .processedTestFile(processedTest)
-                                .errorMessage(errorMessage)
-                                .build();
-                    }
-
-                    // Add to failed test runs
-                    Map<String, Object> failedTest = new HashMap<>();
-                    failedTest.put("code", generatedTest.toMap());
-                    failedTest.put("error_message", errorMessage);
-                    failedTestRuns.add(failedTest);
+                    recordFailedTest(generatedTest, failResult);
 
                     return failResult;
                 }
@@ -608,8 +956,25 @@ public void initialTestSuiteAnalysis() throws Exception {
                     CoverageResult coverageResult = postProcessCoverageReport(result.getCommandStartTime());
                     double newPercentageCovered = coverageResult.getOverallCoverage();
                     Map<String, Double> newCoveragePercentages = coverageResult.getCoveragePercentages();
-
-                    if (newPercentageCovered <= currentCoverage) {
+                    CoverageProcessor.CoverageData newCoverageData = coverageResult.getCoverageData();
+                    MergedExecutionData newExecutionData = null;
+
+                    // A single-method run only covers that method: merge its execution data into the suite's.
+                    if (singleMethod) {
+                        MergedCoverage merged = mergeRun(suiteExecutionData, getSuiteExecFile());
+                        if (merged == null) {
+                            throw new IllegalStateException("Could not merge the execution data of the test run");
+                        }
+                        newExecutionData = merged.executionData;
+                        newCoverageData = merged.coverage;
+                        newPercentageCovered = newCoverageData.getCoverage(coverageMetric);
+                        newCoveragePercentages = new HashMap<>(lastCoveragePercentages);
+                        newCoveragePercentages.put(new File(srcFilePath).getName(), newPercentageCovered);
+                    }
+                    boolean coverageIncreased = singleMethod
+                            ? newCoverageData.coversMoreThan(currentCoverageData, coverageMetric)
+                            : newPercentageCovered > currentCoverage;
+                    if (!coverageIncreased) {
                         // Coverage has not increased, rollback the test by removing it from the test file
                         try {
                             Files.write(Paths.get(testFilePath), 
@@ -636,7 +1001,7 @@ public void initialTestSuiteAnalysis() throws Exception {
 
                         // Add to failed test runs
                         Map<String, Object> failedTest = new HashMap<>();
-                        failedTest.put("code", generatedTest);
+                        failedTest.put("code", generatedTest.toMap());
                         failedTest.put("error_message", "Test did not increase code coverage");
                         failedTestRuns.add(failedTest);
 
@@ -647,7 +1012,7 @@ public void initialTestSuiteAnalysis() throws Exception {
                     // Update the insertion point for the next test
 
                     //this.relevantLineNumberToInsertTestsAfter += additionalImportsLines.size();
-                    int numberOfTestLinesInserted = testCodeLinesList.size();
+                    int numberOfTestLinesInserted = inserted.testLinesInserted;
                     this.relevantLineNumberToInsertTestsAfter += (insertedLinesCount + numberOfTestLinesInserted);
                     logger.fine("Updated relevantLineNumberToInsertTestsAfter to: " + this.relevantLineNumberToInsertTestsAfter);
 
@@ -670,11 +1035,12 @@ public void initialTestSuiteAnalysis() throws Exception {
                     }
 
                     // Update current coverage and percentages
-                    this.currentCoverage = newPercentageCovered;
+                    recordContribution(generatedTest, newCoverageData, currentCoverageData);
+                    acceptCoverage(newCoverageData, singleMethod ? newExecutionData : loadSuiteExecutionData());
                     this.lastCoveragePercentages = new HashMap<>(newCoveragePercentages);
 
                     logger.info(String.format("Test passed and coverage increased. Current coverage: %.2f%%",
-                            newPercentageCovered * 100));
+                            this.currentCoverage * 100));
 
                     return new TestValidationResult.Builder()
                             .status(TestValidationResult.STATUS_PASS)
@@ -717,7 +1083,7 @@ public void initialTestSuiteAnalysis() throws Exception {
 
                     // Add to failed test runs
                     Map<String, Object> failedTest = new HashMap<>();
-                    failedTest.put("code", generatedTest);
+                    failedTest.put("code", generatedTest.toMap());
                     failedTest.put("error_message", "Coverage verification error");
                     failedTestRuns.add(failedTest);
 
@@ -735,6 +1101,13 @@ public void initialTestSuiteAnalysis() throws Exception {
                     .originalTestFile(originalContent)
                     .build();
 
+        } catch (CancellationException e) {
+            try {
+                Files.write(Paths.get(testFilePath), originalContent.getBytes());
+            } catch (IOException ioException) {
+                logger.severe("Error rolling back test file: " + ioException.getMessage());
+            }
+            throw e;
         } catch (Exception e) {
             logger.severe("Error validating test: " + e.getMessage());
             e.printStackTrace();
@@ -752,5 +1125,1251 @@ public void initialTestSuiteAnalysis() throws Exception {
         }
     }
 
-}
+    /**
+     * Routes {@link #validateTest(GeneratedTest)} and {@link #validateTestsInParallel(List, int)} through the
+     * given engine instead of the test command. Pass null to go back to running the test command.
+     *
+     * @param testEngine The engine compiling and running generated tests in a worker JVM.
+     */
+    public void setTestEngine(JUnitLauncherEngine testEngine) {
+        this.testEngine = testEngine;
+        if (testEngine != null) {
+            testEngine.setCancellationToken(cancellationToken);
+        }
+    }
+
+    /**
+     * Compiles the processed test file on its own before {@link #validateTest(GeneratedTest)} runs the test
+     * command, so that compilation errors are reported without building the project or running any test.
+     * If the unchanged test file does not compile on its own either, candidates go to the test command.
+     * Pass null to skip the compile stage.
+     *
+     * @param testCompiler The compiler for the test compilation unit.
+     */
+    public void setTestCompiler(TestCompiler testCompiler) {
+        this.testCompiler = testCompiler;
+        this.testCompilerReliable = null;
+    }
+
+    /**
+     * Narrows the test command to the generated test method in {@link #validateTest(GeneratedTest)} when the
+     * command is one {@link TestCommandAdapter} recognises.
+     *
+     * @param runEachTestMethodSeparately true to run only the new test method.
+     */
+    public void setRunEachTestMethodSeparately(boolean runEachTestMethodSeparately) {
+        this.runEachTestMethodSeparately = runEachTestMethodSeparately;
+    }
+
+    /**
+     * Parses every processed test file with the JDT before it is compiled or run, rejecting candidates with
+     * syntax or type errors without a build and without asking the LLM to analyze the failure.
+     * Pass null to skip the check.
+     *
+     * @param sourceChecker The checker for processed test files.
+     */
+    public void setSourceChecker(TestSourceChecker sourceChecker) {
+        this.sourceChecker = sourceChecker;
+    }
+
+    /**
+     * Passes the output of every test command to a listener while the command runs.
+     *
+     * @param outputListener The listener, or null.
+     */
+    public void setOutputListener(Runner.OutputListener outputListener) {
+        this.outputListener = outputListener;
+    }
+
+    /**
+     * Makes every test command and test engine run stop as soon as the token is cancelled. A cancelled
+     * validation throws {@link CancellationException} after restoring the test file it was changing.
+     *
+     * @param cancellationToken The token, or null.
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+        if (testEngine != null) {
+            testEngine.setCancellationToken(cancellationToken);
+        }
+    }
+
+    /**
+     * Sets the time the baseline coverage run may take. It builds and tests the whole project, so it usually
+     * gets a larger budget than the runs validating generated tests.
+     *
+     * @param coverageTimeoutSeconds The timeout in seconds.
+     */
+    public void setCoverageTimeoutSeconds(int coverageTimeoutSeconds) {
+        this.coverageTimeoutSeconds = coverageTimeoutSeconds;
+    }
+
+    /**
+     * Sets the time each test run validating generated tests may take. A run that takes longer, e.g. because
+     * a generated test hangs, is killed with all its child processes and the tests are rejected.
+     *
+     * @param testTimeoutSeconds The timeout in seconds.
+     */
+    public void setTestTimeoutSeconds(int testTimeoutSeconds) {
+        this.testTimeoutSeconds = testTimeoutSeconds;
+    }
+
+    /**
+     * Runs the test commands validating generated tests under CPU and memory caps.
+     *
+     * @param testResourceLimits The caps, or null for none.
+     */
+    public void setTestResourceLimits(Runner.ResourceLimits testResourceLimits) {
+        this.testResourceLimits = testResourceLimits;
+    }
+
+    /**
+     * Returns the options of a run validating one generated test. The run stops as soon as the build reports a
+     * compilation error or failure, or the new test method fails, since the candidate is rejected either way.
+     * Batch runs do not stop early: they read the result of every test from the test reports.
+     */
+    private Runner.CommandOptions candidateCommandOptions(GeneratedTest generatedTest) {
+        List<Pattern> patterns = new ArrayList<>(BUILD_FAILURE_PATTERNS);
+        String methodName = generatedTest.getTestMethodName();
+        if (methodName != null && !methodName.isBlank()) {
+            // Surefire: "name(Class)  Time elapsed ... <<< FAILURE!", "Class.name -- Time elapsed ... <<< ERROR!";
+            // Gradle: "Class > name() FAILED"; JUnit console launcher: "name()" and a cross mark.
+            patterns.add(Pattern.compile("\\b" + Pattern.quote(methodName)
+                    + "\\b.*(?:<<< (?:FAILURE|ERROR)!|\\bFAILED\\b|\u2718)"));
+        }
+        return new Runner.CommandOptions.Builder()
+                .outputListener(outputListener)
+                .cancellationToken(cancellationToken)
+                .timeoutSeconds(testTimeoutSeconds)
+                .resourceLimits(testResourceLimits)
+                .earlyExitPatterns(patterns)
+                .build();
+    }
+
+    /**
+     * @return the options of the baseline coverage run.
+     */
+    private Runner.CommandOptions coverageCommandOptions() {
+        return new Runner.CommandOptions.Builder()
+                .outputListener(outputListener)
+                .cancellationToken(cancellationToken)
+                .timeoutSeconds(coverageTimeoutSeconds)
+                .build();
+    }
+
+    /**
+     * @return the options of a test run validating generated tests.
+     */
+    private Runner.CommandOptions commandOptions() {
+        return new Runner.CommandOptions.Builder()
+                .outputListener(outputListener)
+                .cancellationToken(cancellationToken)
+                .timeoutSeconds(testTimeoutSeconds)
+                .resourceLimits(testResourceLimits)
+                .build();
+    }
 
+    /**
+     * Runs the source checker on a processed test file.
+     *
+     * @return The check result, or null if there is no checker or the check itself failed.
+     */
+    private CompilationResult precheck(String processedTest) {
+        if (sourceChecker == null) {
+            return null;
+        }
+        try {
+            return sourceChecker.check(processedTest, getTestClassName(processedTest));
+        } catch (RuntimeException | LinkageError e) {
+            logger.warning("Could not check the generated test before running it: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Compiles the processed test file into a scratch directory.
+     *
+     * @return The failure result if the test does not compile, or null to go on with the test run.
+     */
+    private TestValidationResult compileTestFile(GeneratedTest generatedTest, String originalContent, String processedTest) {
+        java.nio.file.Path outputDir = null;
+        try {
+            outputDir = Files.createTempDirectory("coveragent-compile-");
+            CompilationResult compilation = testCompiler.compile(processedTest, getTestClassName(processedTest),
+                    outputDir.resolve("classes"));
+            if (!compilation.isSuccess()) {
+                if (!isTestCompilerReliable(originalContent, outputDir)) {
+                    // The build compiles what the standalone compiler cannot, e.g. through a processor it lacks.
+                    return null;
+                }
+                return compilationFailure(generatedTest, originalContent, processedTest, compilation);
+            }
+            return null;
+        } catch (IOException e) {
+            logger.warning("Could not compile the test file on its own, running the test command: " + e.getMessage());
+            return null;
+        } finally {
+            if (outputDir != null) {
+                FileUtils.deleteDirectory(outputDir);
+            }
+        }
+    }
+
+    /**
+     * Checks once whether the standalone compiler can compile the unchanged test file. If it cannot, its
+     * errors say nothing about the generated tests, and candidates are left to the test command.
+     */
+    private boolean isTestCompilerReliable(String originalContent, java.nio.file.Path outputDir) throws IOException {
+        if (testCompilerReliable == null) {
+            CompilationResult original = testCompiler.compile(originalContent, getTestClassName(originalContent),
+                    outputDir.resolve("original-classes"));
+            testCompilerReliable = original.isSuccess();
+            if (!testCompilerReliable) {
+                logger.warning("The unchanged test file does not compile on its own; generated tests are compiled "
+                        + "by the test command instead:\n" + original.formatDiagnostics());
+            }
+        }
+        return testCompilerReliable;
+    }
+
+    /**
+     * Reports a generated test that does not compile. The compiler diagnostics already say what is wrong,
+     * so they are recorded as the error message as they are.
+     */
+    private TestValidationResult compilationFailure(GeneratedTest generatedTest, String originalContent,
+                                                    String processedTest, CompilationResult compilation) {
+        System.out.println("Skipping a generated test that does not compile");
+        String diagnostics = compilation.formatDiagnostics();
+        logger.info("Compilation errors:\n" + diagnostics);
+
+        Map<String, Object> failedTest = new HashMap<>();
+        failedTest.put("code", generatedTest.toMap());
+        failedTest.put("error_message", "The test does not compile:\n" + diagnostics);
+        failedTestRuns.add(failedTest);
+
+        return new TestValidationResult.Builder()
+                .status(TestValidationResult.STATUS_FAIL)
+                .reason("Test did not compile")
+                .exitCode(1)
+                .stderr(diagnostics)
+                .stdout("")
+                .test(generatedTest)
+                .language(language)
+                .sourceFile(sourceCode)
+                .originalTestFile(originalContent)
+                .processedTestFile(processedTest)
+                .errorMessage(diagnostics)
+                .diagnostics(compilation.getDiagnostics())
+                .build();
+    }
+
+    /**
+     * Validates a generated test with the {@link JUnitLauncherEngine}: the processed test file is compiled on its
+     * own and only the new test method is run. Its execution data is merged with the suite's, and the test is
+     * kept if the merged coverage is higher. The real test file is only written once the test has been accepted.
+     */
+    private TestValidationResult validateTestInProcess(GeneratedTest generatedTest, String originalContent) {
+        ProcessedTest inserted = insertTest(originalContent, generatedTest,
+                relevantLineNumberToInsertTestsAfter, relevantLineNumberToInsertImportsAfter);
+        String processedTest = inserted.content;
+        String testClassName = getTestClassName(processedTest);
+        String testMethodName = generatedTest.getTestMethodName();
+        List<String> testMethods = testMethodName != null ? Arrays.asList(testMethodName) : new ArrayList<>();
+
+        System.out.println("Running " + testClassName + (testMethodName != null ? "#" + testMethodName : "") + " in the test worker");
+        JUnitLauncherEngine.EngineResult engineResult = null;
+        for (int i = 0; i < Math.max(1, numAttempts); i++) {
+            engineResult = testEngine.runTests(processedTest, testClassName, testMethods);
+            if (engineResult.getCommandResult().getExitCode() != 0) {
+                break;
+            }
+        }
+        Runner.CommandResult result = engineResult.getCommandResult();
+        int exitCode = result.getExitCode();
+
+        if (!engineResult.isCompiled() && engineResult.getCompilation() != null) {
+            return compilationFailure(generatedTest, originalContent, processedTest, engineResult.getCompilation());
+        }
+        if (exitCode != 0) {
+            System.out.println("Skipping a generated test that failed");
+            TestValidationResult failResult = new TestValidationResult.Builder()
+                    .status(TestValidationResult.STATUS_FAIL)
+                    .reason("Test failed")
+                    .exitCode(exitCode)
+                    .stderr(result.getStderr())
+                    .stdout(result.getStdout())
+                    .test(generatedTest)
+                    .language(language)
+                    .sourceFile(sourceCode)
+                    .originalTestFile(originalContent)
+                    .processedTestFile(processedTest)
+                    .build();
+
+            recordFailedTest(generatedTest, failResult);
+            return failResult;
+        }
+
+        MergedCoverage merged = mergeRun(suiteExecutionData, engineResult.getExecFile());
+        if (merged == null) {
+            Map<String, Object> failedTest = new HashMap<>();
+            failedTest.put("code", generatedTest.toMap());
+            failedTest.put("error_message", "Coverage verification error");
+            failedTestRuns.add(failedTest);
+            return new TestValidationResult.Builder()
+                    .status(TestValidationResult.STATUS_FAIL)
+                    .reason("Runtime error")
+                    .exitCode(exitCode)
+                    .stderr(result.getStderr())
+                    .stdout(result.getStdout())
+                    .test(generatedTest)
+                    .language(language)
+                    .sourceFile(sourceCode)
+                    .originalTestFile(originalContent)
+                    .processedTestFile(processedTest)
+                    .build();
+        }
+
+        BitSet newlyCovered = merged.coverage.newlyCoveredSince(currentCoverageData);
+        if (!merged.coverage.coversMoreThan(currentCoverageData, coverageMetric)) {
+            logger.info("Test did not increase coverage. Skipping.");
+            Map<String, Object> failedTest = new HashMap<>();
+            failedTest.put("code", generatedTest.toMap());
+            failedTest.put("error_message", "Test did not increase code coverage");
+            failedTestRuns.add(failedTest);
+            return new TestValidationResult.Builder()
+                    .status(TestValidationResult.STATUS_FAIL)
+                    .reason("Coverage did not increase. Maybe the test did run but did not increase coverage, or maybe the test execution was skipped due to some problem")
+                    .exitCode(exitCode)
+                    .stderr(result.getStderr())
+                    .stdout(result.getStdout())
+                    .test(generatedTest)
+                    .language(language)
+                    .sourceFile(sourceCode)
+                    .originalTestFile(originalContent)
+                    .processedTestFile(processedTest)
+                    .build();
+        }
+
+        try {
+            Files.write(Paths.get(testFilePath), processedTest.getBytes());
+        } catch (IOException e) {
+            logger.severe("Error writing to test file: " + e.getMessage());
+            return new TestValidationResult.Builder()
+                    .status(TestValidationResult.STATUS_FAIL)
+                    .reason("Error writing to test file: " + e.getMessage())
+                    .test(generatedTest)
+                    .language(language)
+                    .sourceFile(sourceCode)
+                    .originalTestFile(originalContent)
+                    .build();
+        }
+        this.relevantLineNumberToInsertTestsAfter += inserted.importLinesInserted + inserted.testLinesInserted;
+
+        recordContribution(generatedTest, merged.coverage, currentCoverageData);
+        acceptCoverage(merged.coverage, merged.executionData);
+
+        logger.info(String.format("Test passed and covers %d new line(s). Current coverage: %.2f%%",
+                newlyCovered.cardinality(), this.currentCoverage * 100));
+
+        return new TestValidationResult.Builder()
+                .status(TestValidationResult.STATUS_PASS)
+                .reason("")
+                .exitCode(exitCode)
+                .stderr(result.getStderr())
+                .stdout(result.getStdout())
+                .test(generatedTest)
+                .language(language)
+                .sourceFile(sourceCode)
+                .originalTestFile(originalContent)
+                .processedTestFile(processedTest)
+                .build();
+    }
+
+    /**
+     * Makes the coverage of the suite with an accepted test the current coverage.
+     *
+     * @param coverage      The coverage of the suite and the accepted test.
+     * @param executionData The execution data it was analyzed from.
+     */
+    private void acceptCoverage(CoverageProcessor.CoverageData coverage, MergedExecutionData executionData) {
+        this.currentCoverageData = coverage;
+        this.currentCoverage = coverage.getCoverage(coverageMetric);
+        this.suiteExecutionData = executionData;
+    }
+
+    /**
+     * Returns the execution data file the test command writes: the coverage report itself, or the JaCoCo data
+     * file an XML report is rendered from. Null if there is none or the JaCoCo core bundle is not installed.
+     */
+    private String getSuiteExecFile() {
+        if (!CoverageProcessor.isExecutionDataSupported()) {
+            return null;
+        }
+        return ExecCoverageProcessor.inferExecFile(codeCoverageReportPath);
+    }
+
+    /**
+     * Loads the execution data of the last run of the test command. Without it, the coverage of tests run
+     * separately cannot be merged with the suite's, so every candidate is validated with the whole suite.
+     *
+     * @return the execution data, or null if the test command writes none that can be read.
+     */
+    private MergedExecutionData loadSuiteExecutionData() {
+        String execFile = getSuiteExecFile();
+        if (execFile == null) {
+            return null;
+        }
+        try {
+            return MergedExecutionData.load(execFile);
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Error reading execution data " + execFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The coverage of the suite with more test runs, analyzed from their merged execution data.
+     */
+    private static final class MergedCoverage {
+        final MergedExecutionData executionData;
+        final CoverageProcessor.CoverageData coverage;
+
+        MergedCoverage(MergedExecutionData executionData, CoverageProcessor.CoverageData coverage) {
+            this.executionData = executionData;
+            this.coverage = coverage;
+        }
+    }
+
+    /**
+     * Merges the execution data file of a test run into the execution data so far and analyzes the source file.
+     *
+     * @return the merged coverage, or null if the execution data could not be read or analyzed.
+     */
+    private MergedCoverage mergeRun(MergedExecutionData soFar, String execFile) {
+        try {
+            if (execFile == null) {
+                throw new IllegalStateException("The test worker runs without a JaCoCo agent");
+            }
+            return mergeRun(soFar, MergedExecutionData.load(execFile));
+        } catch (IOException | RuntimeException e) {
+            logger.severe("Error during coverage verification: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Merges the execution data of a test run into the execution data so far and analyzes the source file.
+     *
+     * @return the merged coverage, or null if the execution data could not be analyzed.
+     */
+    private MergedCoverage mergeRun(MergedExecutionData soFar, MergedExecutionData run) {
+        try {
+            MergedExecutionData merged = soFar.merge(run);
+            return new MergedCoverage(merged, merged.analyze(getMainClassFilesDir(), srcFilePath));
+        } catch (IOException | RuntimeException e) {
+            logger.severe("Error during coverage verification: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the compiled main classes directory used to analyze execution data.
+     */
+    private String getMainClassFilesDir() {
+        if (classFilesDir != null && !classFilesDir.isBlank()) {
+            return classFilesDir;
+        }
+        return ExecCoverageProcessor.inferClassFilesDir(codeCoverageReportPath);
+    }
+
+    /**
+     * The outcome of building and testing one candidate inside its own sandbox.
+     */
+    private static class SandboxRun {
+        final GeneratedTest test;
+        final ProcessedTest processed;
+        final Runner.CommandResult result;
+        final MergedExecutionData executionData;
+        final String error;
+
+        SandboxRun(GeneratedTest test, ProcessedTest processed, Runner.CommandResult result,
+                   MergedExecutionData executionData, String error) {
+            this.test = test;
+            this.processed = processed;
+            this.result = result;
+            this.executionData = executionData;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Validate several generated tests at once. Every candidate is inserted into its own copy of the project
+     * (see {@link ProjectSandbox}) and the test commands run concurrently on a bounded executor. The passing
+     * candidates are then merged into the real test file in their original order, keeping only those whose
+     * execution data adds coverage to the suite's merged with the previously kept candidates'. Without the
+     * suite's execution data, or when the test file or the test command directory is outside the project root,
+     * the candidates are validated one at a time with {@link #validateTest}.
+     *
+     * @param generatedTests The generated tests to validate.
+     * @param parallelism    The maximum number of concurrent sandbox builds.
+     * @return One TestValidationResult per generated test, in the same order.
+     */
+    public List<TestValidationResult> validateTestsInParallel(List<GeneratedTest> generatedTests, int parallelism) {
+        List<TestValidationResult> results = new ArrayList<>();
+        String sequentialReason = null;
+        if (suiteExecutionData == null) {
+            sequentialReason = "The test command writes no execution data to merge separate runs with";
+        } else if (testEngine == null && !canRunInSandbox()) {
+            sequentialReason = "The test file, the test command directory or the coverage data is not inside the "
+                    + "project root, so a sandbox of the project would run against the real files";
+        }
+        if (sequentialReason != null) {
+            logger.info(sequentialReason + "; validating the generated tests one at a time.");
+            for (GeneratedTest generatedTest : generatedTests) {
+                results.add(validateTest(generatedTest));
+            }
+            return results;
+        }
+        String originalContent;
+        try {
+            originalContent = new String(Files.readAllBytes(Paths.get(testFilePath)));
+        } catch (IOException e) {
+            logger.severe("Error reading test file: " + e.getMessage());
+            for (GeneratedTest generatedTest : generatedTests) {
+                results.add(new TestValidationResult.Builder()
+                        .status(TestValidationResult.STATUS_FAIL)
+                        .reason("Error reading test file: " + e.getMessage())
+                        .test(generatedTest)
+                        .language(language)
+                        .sourceFile(sourceCode)
+                        .build());
+            }
+            return results;
+        }
+
+        if (relevantLineNumberToInsertTestsAfter == null) {
+            for (GeneratedTest generatedTest : generatedTests) {
+                results.add(new TestValidationResult.Builder()
+                        .status(TestValidationResult.STATUS_FAIL)
+                        .reason("Invalid test code or insertion points")
+                        .test(generatedTest)
+                        .language(language)
+                        .sourceFile(sourceCode)
+                        .originalTestFile(originalContent)
+                        .build());
+            }
+            return results;
+        }
+
+        // Phase 1: build and test every candidate in its own sandbox.
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, generatedTests.size())));
+        List<Future<SandboxRun>> futures = new ArrayList<>();
+        Map<Integer, CompilationResult> rejected = new HashMap<>();
+        for (GeneratedTest generatedTest : generatedTests) {
+            ProcessedTest processed = insertTest(originalContent, generatedTest,
+                    relevantLineNumberToInsertTestsAfter, relevantLineNumberToInsertImportsAfter);
+            CompilationResult check = precheck(processed.content);
+            if (check != null && !check.isSuccess()) {
+                rejected.put(futures.size(), check);
+                futures.add(null);
+                continue;
+            }
+            futures.add(executor.submit(() -> testEngine != null
+                    ? runInEngine(generatedTest, processed) : runInSandbox(generatedTest, processed)));
+        }
+        executor.shutdown();
+
+        List<SandboxRun> runs = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            if (futures.get(i) == null) {
+                runs.add(null);
+                continue;
+            }
+            try {
+                runs.add(futures.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                runs.add(new SandboxRun(generatedTests.get(i), null, null, null, "Validation interrupted"));
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof CancellationException) {
+                    executor.shutdownNow();
+                    throw (CancellationException) e.getCause();
+                }
+                logger.log(Level.SEVERE, "Sandbox validation failed: " + e.getCause().getMessage(), e.getCause());
+                runs.add(new SandboxRun(generatedTests.get(i), null, null, null, String.valueOf(e.getCause())));
+            }
+        }
+
+        // Phase 2: merge in a fixed order, keeping candidates that add coverage.
+        CoverageProcessor.CoverageData coveredSoFar = currentCoverageData;
+        MergedExecutionData executionDataSoFar = suiteExecutionData;
+        String mergedContent = originalContent;
+        int insertTestsAfter = relevantLineNumberToInsertTestsAfter;
+        int accepted = 0;
+
+        for (int index = 0; index < runs.size(); index++) {
+            SandboxRun run = runs.get(index);
+            if (run == null) {
+                GeneratedTest generatedTest = generatedTests.get(index);
+                results.add(compilationFailure(generatedTest, originalContent, insertTest(originalContent, generatedTest,
+                        relevantLineNumberToInsertTestsAfter, relevantLineNumberToInsertImportsAfter).content,
+                        rejected.get(index)));
+                continue;
+            }
+            String processedTest = run.processed != null ? run.processed.content : "";
+            Integer exitCode = run.result != null ? run.result.getExitCode() : null;
+            String stdout = run.result != null ? run.result.getStdout() : null;
+            String stderr = run.result != null ? run.result.getStderr() : run.error;
+
+            if (run.result == null || run.result.getExitCode() != 0) {
+                System.out.println("Skipping a generated test that failed");
+                TestValidationResult failResult = new TestValidationResult.Builder()
+                        .status(TestValidationResult.STATUS_FAIL)
+                        .reason(run.result == null ? "Error validating test: " + run.error : "Test failed")
+                        .exitCode(exitCode)
+                        .stderr(stderr)
+                        .stdout(stdout)
+                        .test(run.test)
+                        .language(language)
+                        .sourceFile(sourceCode)
+                        .originalTestFile(originalContent)
+                        .processedTestFile(processedTest)
+                        .build();
+
+                if (run.result == null) {
+                    Map<String, Object> failedTest = new HashMap<>();
+                    failedTest.put("code", run.test.toMap());
+                    failedTest.put("error_message", run.error);
+                    failedTestRuns.add(failedTest);
+                } else {
+                    recordFailedTest(run.test, failResult);
+                }
+                results.add(failResult);
+                continue;
+            }
+
+            MergedCoverage mergedCoverage = run.executionData != null
+                    ? mergeRun(executionDataSoFar, run.executionData) : null;
+            if (mergedCoverage == null) {
+                results.add(new TestValidationResult.Builder()
+                        .status(TestValidationResult.STATUS_FAIL)
+                        .reason("Runtime error")
+                        .exitCode(exitCode)
+                        .stderr(stderr)
+                        .stdout(stdout)
+                        .test(run.test)
+                        .language(language)
+                        .sourceFile(sourceCode)
+                        .originalTestFile(originalContent)
+                        .processedTestFile(processedTest)
+                        .build());
+                Map<String, Object> failedTest = new HashMap<>();
+                failedTest.put("code", run.test.toMap());
+                failedTest.put("error_message", "Coverage verification error");
+                failedTestRuns.add(failedTest);
+                continue;
+            }
+
+            BitSet newlyCovered = mergedCoverage.coverage.newlyCoveredSince(coveredSoFar);
+            if (!mergedCoverage.coverage.coversMoreThan(coveredSoFar, coverageMetric)) {
+                logger.info("Test did not increase coverage. Skipping.");
+                results.add(new TestValidationResult.Builder()
+                        .status(TestValidationResult.STATUS_FAIL)
+                        .reason("Coverage did not increase. Maybe the test did run but did not increase coverage, or maybe the test execution was skipped due to some problem")
+                        .exitCode(exitCode)
+                        .stderr(stderr)
+                        .stdout(stdout)
+                        .test(run.test)
+                        .language(language)
+                        .sourceFile(sourceCode)
+                        .originalTestFile(originalContent)
+                        .processedTestFile(processedTest)
+                        .build());
+                Map<String, Object> failedTest = new HashMap<>();
+                failedTest.put("code", run.test.toMap());
+                failedTest.put("error_message", "Test did not increase code coverage");
+                failedTestRuns.add(failedTest);
+                continue;
+            }
+
+            ProcessedTest merged = insertTest(mergedContent, run.test, insertTestsAfter, relevantLineNumberToInsertImportsAfter);
+            mergedContent = merged.content;
+            insertTestsAfter += merged.importLinesInserted + merged.testLinesInserted;
+            recordContribution(run.test, mergedCoverage.coverage, coveredSoFar);
+            coveredSoFar = mergedCoverage.coverage;
+            executionDataSoFar = mergedCoverage.executionData;
+            accepted++;
+            logger.info("Test passed and covers " + newlyCovered.cardinality() + " new line(s).");
+
+            results.add(new TestValidationResult.Builder()
+                    .status(TestValidationResult.STATUS_PASS)
+                    .reason("")
+                    .exitCode(exitCode)
+                    .stderr(stderr)
+                    .stdout(stdout)
+                    .test(run.test)
+                    .language(language)
+                    .sourceFile(sourceCode)
+                    .originalTestFile(originalContent)
+                    .processedTestFile(processedTest)
+                    .build());
+        }
+
+        if (accepted > 0) {
+            try {
+                Files.write(Paths.get(testFilePath), mergedContent.getBytes());
+                this.relevantLineNumberToInsertTestsAfter = insertTestsAfter;
+                acceptCoverage(coveredSoFar, executionDataSoFar);
+                logger.info(String.format("Merged %d of %d tests. Estimated coverage: %.2f%%",
+                        accepted, generatedTests.size(), this.currentCoverage * 100));
+            } catch (IOException e) {
+                logger.severe("Error writing merged test file: " + e.getMessage());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Tells whether everything a sandbox run writes or reads is inside the project root, and so has its own
+     * copy in the sandbox.
+     */
+    private boolean canRunInSandbox() {
+        return ProjectSandbox.contains(projectRoot, testFilePath)
+                && (testCommandDir == null || ProjectSandbox.contains(projectRoot, testCommandDir))
+                && ProjectSandbox.contains(projectRoot, getSuiteExecFile());
+    }
+
+    /**
+     * Runs the test command for one processed candidate inside a fresh sandbox and reads its execution data.
+     */
+    private SandboxRun runInSandbox(GeneratedTest generatedTest, ProcessedTest processed) {
+        try (ProjectSandbox sandbox = ProjectSandbox.create(projectRoot)) {
+            sandbox.writeFile(testFilePath, processed.content);
+
+            String sandboxCommand = sandbox.rewriteCommand(testCommand);
+            String sandboxCommandDir = testCommandDir != null ? sandbox.map(testCommandDir) : sandbox.getRoot();
+            Runner.CommandResult result = null;
+            for (int i = 0; i < numAttempts; i++) {
+                System.out.println("Running test in sandbox with the following command: \"" + sandboxCommand + "\"");
+                result = Runner.runCommand(sandboxCommand, sandboxCommandDir, candidateCommandOptions(generatedTest));
+                if (result.getExitCode() != 0) {
+                    break;
+                }
+            }
+            if (result == null || result.getExitCode() != 0) {
+                return new SandboxRun(generatedTest, processed, result, null, null);
+            }
+
+            // The sandbox is deleted on return, so its execution data is read now.
+            try {
+                MergedExecutionData data = MergedExecutionData.load(sandbox.map(getSuiteExecFile()));
+                return new SandboxRun(generatedTest, processed, result, data, null);
+            } catch (IOException | RuntimeException e) {
+                logger.severe("Error during coverage verification: " + e.getMessage());
+                return new SandboxRun(generatedTest, processed, result, null, e.getMessage());
+            }
+        } catch (IOException e) {
+            logger.severe("Error preparing sandbox: " + e.getMessage());
+            return new SandboxRun(generatedTest, processed, null, null, "Error preparing sandbox: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs one processed candidate through the test engine. The engine compiles every candidate into its own
+     * directory and runs it in its own worker JVM, so no sandbox copy of the project is needed.
+     */
+    private SandboxRun runInEngine(GeneratedTest generatedTest, ProcessedTest processed) {
+        if (cancellationToken != null) {
+            cancellationToken.throwIfCancelled();
+        }
+        String testMethodName = generatedTest.getTestMethodName();
+        JUnitLauncherEngine.EngineResult engineResult = testEngine.runTests(processed.content,
+                getTestClassName(processed.content),
+                testMethodName != null ? Arrays.asList(testMethodName) : new ArrayList<>());
+        Runner.CommandResult result = engineResult.getCommandResult();
+        if (result.getExitCode() != 0) {
+            return new SandboxRun(generatedTest, processed, result, null, null);
+        }
+        if (engineResult.getExecFile() == null) {
+            return new SandboxRun(generatedTest, processed, result, null, "The test worker runs without a JaCoCo agent");
+        }
+        try {
+            MergedExecutionData data = MergedExecutionData.load(engineResult.getExecFile());
+            return new SandboxRun(generatedTest, processed, result, data, null);
+        } catch (IOException | RuntimeException e) {
+            logger.severe("Error during coverage verification: " + e.getMessage());
+            return new SandboxRun(generatedTest, processed, result, null, e.getMessage());
+        }
+    }
+
+    /**
+     * The pass/fail outcome of one candidate in batch validation.
+     */
+    private static class BatchOutcome {
+        final boolean passed;
+        final String reason;
+        final Runner.CommandResult result;
+        final String failureDetails;
+
+        BatchOutcome(boolean passed, String reason, Runner.CommandResult result, String failureDetails) {
+            this.passed = passed;
+            this.reason = reason;
+            this.result = result;
+            this.failureDetails = failureDetails;
+        }
+    }
+
+    /**
+     * Validate all candidates of an iteration with as few test command runs as possible. All candidates are
+     * inserted into the test file at once and the suite is run a single time. Per-test results are read from
+     * the Surefire/Gradle XML reports: failing candidates are dropped and the rest is re-run together. When no
+     * per-test results are available (typically a compilation error), the batch is bisected to find the
+     * offending candidates, which costs about log N runs. If the surviving candidates together do not increase
+     * coverage, none of them does. Otherwise a single survivor is kept; several survivors are validated one at a
+     * time with {@link #validateTest}, since one run cannot tell which of them adds coverage.
+     *
+     * @param generatedTests The generated tests to validate.
+     * @return One TestValidationResult per generated test, in the same order.
+     */
+    public List<TestValidationResult> validateTestsInBatch(List<GeneratedTest> generatedTests) {
+        List<TestValidationResult> results = new ArrayList<>();
+        String originalContent;
+        try {
+            originalContent = new String(Files.readAllBytes(Paths.get(testFilePath)));
+        } catch (IOException e) {
+            logger.severe("Error reading test file: " + e.getMessage());
+            for (GeneratedTest generatedTest : generatedTests) {
+                results.add(new TestValidationResult.Builder()
+                        .status(TestValidationResult.STATUS_FAIL)
+                        .reason("Error reading test file: " + e.getMessage())
+                        .test(generatedTest)
+                        .language(language)
+                        .sourceFile(sourceCode)
+                        .build());
+            }
+            return results;
+        }
+        if (relevantLineNumberToInsertTestsAfter == null) {
+            for (GeneratedTest generatedTest : generatedTests) {
+                results.add(new TestValidationResult.Builder()
+                        .status(TestValidationResult.STATUS_FAIL)
+                        .reason("Invalid test code or insertion points")
+                        .test(generatedTest)
+                        .language(language)
+                        .sourceFile(sourceCode)
+                        .originalTestFile(originalContent)
+                        .build());
+            }
+            return results;
+        }
+        if (testEngine != null && suiteExecutionData != null) {
+            return validateTestsInSessions(generatedTests, originalContent);
+        }
+
+        String testClassName = getTestClassName(originalContent);
+        int originalInsertTestsAfter = relevantLineNumberToInsertTestsAfter;
+        Map<Integer, BatchOutcome> outcomes = new HashMap<>();
+        List<Integer> all = new ArrayList<>();
+        List<Integer> checked = new ArrayList<>();
+        Map<Integer, CompilationResult> rejected = new HashMap<>();
+        for (int i = 0; i < generatedTests.size(); i++) {
+            all.add(i);
+            CompilationResult check = precheck(insertTest(originalContent, generatedTests.get(i),
+                    originalInsertTestsAfter, relevantLineNumberToInsertImportsAfter).content);
+            if (check != null && !check.isSuccess()) {
+                rejected.put(i, check);
+            } else {
+                checked.add(i);
+            }
+        }
+        Runner.CommandResult[] lastGreenRun = new Runner.CommandResult[1];
+        List<Integer> lastGreenSet = new ArrayList<>();
+        runBatch(generatedTests, checked, originalContent, testClassName, outcomes, lastGreenRun, lastGreenSet);
+
+        List<Integer> passing = new ArrayList<>();
+        for (int i : all) {
+            if (outcomes.get(i) != null && outcomes.get(i).passed) {
+                passing.add(i);
+            }
+        }
+
+        // Bisection may leave the last green run on a subset; run the surviving set once more for coverage.
+        String mergedContent = buildBatchContent(generatedTests, passing, originalContent);
+        Runner.CommandResult coverageRun = lastGreenRun[0];
+        boolean accepted = false;
+        boolean individually = false;
+        CoverageResult coverageResult = null;
+        if (!passing.isEmpty()) {
+            try {
+                if (!passing.equals(lastGreenSet)) {
+                    Files.write(Paths.get(testFilePath), mergedContent.getBytes());
+                    coverageRun = runTestCommand();
+                }
+                if (coverageRun != null && coverageRun.getExitCode() == 0) {
+                    coverageResult = postProcessCoverageReport(coverageRun.getCommandStartTime());
+                    boolean increased = coverageResult.getOverallCoverage() > currentCoverage;
+                    accepted = increased && passing.size() == 1;
+                    individually = increased && passing.size() > 1;
+                }
+            } catch (Exception e) {
+                logger.severe("Error during coverage verification: " + e.getMessage());
+            }
+        }
+
+        try {
+            Files.write(Paths.get(testFilePath), (accepted ? mergedContent : originalContent).getBytes());
+        } catch (IOException e) {
+            logger.severe("Error writing test file: " + e.getMessage());
+        }
+
+        if (accepted) {
+            int linesInserted = mergedContent.split("\n").length - originalContent.split("\n").length;
+            this.relevantLineNumberToInsertTestsAfter += linesInserted;
+            logger.info(String.format("%d test(s) passed and coverage increased from %.2f%% to %.2f%%",
+                    passing.size(), currentCoverage * 100, coverageResult.getOverallCoverage() * 100));
+            this.currentCoverage = coverageResult.getOverallCoverage();
+            this.currentCoverageData = coverageResult.getCoverageData();
+            this.lastCoveragePercentages = new HashMap<>(coverageResult.getCoveragePercentages());
+            this.suiteExecutionData = loadSuiteExecutionData();
+        }
+
+        for (int i : all) {
+            GeneratedTest generatedTest = generatedTests.get(i);
+            BatchOutcome outcome = outcomes.get(i);
+            String processedTest = insertTest(originalContent, generatedTest,
+                    originalInsertTestsAfter, relevantLineNumberToInsertImportsAfter).content;
+            Runner.CommandResult result = outcome != null && outcome.passed ? coverageRun : (outcome != null ? outcome.result : null);
+
+            if (rejected.containsKey(i)) {
+                results.add(compilationFailure(generatedTest, originalContent, processedTest, rejected.get(i)));
+                continue;
+            }
+
+            if (outcome != null && outcome.passed && individually) {
+                results.add(validateTest(generatedTest));
+                continue;
+            }
+
+            if (outcome != null && outcome.passed && accepted) {
+                results.add(new TestValidationResult.Builder()
+                        .status(TestValidationResult.STATUS_PASS)
+                        .reason("")
+                        .exitCode(result != null ? result.getExitCode() : null)
+                        .stderr(result != null ? result.getStderr() : null)
+                        .stdout(result != null ? result.getStdout() : null)
+                        .test(generatedTest)
+                        .language(language)
+                        .sourceFile(sourceCode)
+                        .originalTestFile(originalContent)
+                        .processedTestFile(processedTest)
+                        .build());
+                continue;
+            }
+
+            if (outcome != null && outcome.passed) {
+                results.add(new TestValidationResult.Builder()
+                        .status(TestValidationResult.STATUS_FAIL)
+                        .reason("Coverage did not increase. Maybe the test did run but did not increase coverage, or maybe the test execution was skipped due to some problem")
+                        .exitCode(result != null ? result.getExitCode() : null)
+                        .stderr(result != null ? result.getStderr() : null)
+                        .stdout(result != null ? result.getStdout() : null)
+                        .test(generatedTest)
+                        .language(language)
+                        .sourceFile(sourceCode)
+                        .originalTestFile(originalContent)
+                        .processedTestFile(processedTest)
+                        .build());
+                Map<String, Object> failedTest = new HashMap<>();
+                failedTest.put("code", generatedTest.toMap());
+                failedTest.put("error_message", "Test did not increase code coverage");
+                failedTestRuns.add(failedTest);
+                continue;
+            }
+
+            System.out.println("Skipping a generated test that failed");
+            String stderr = result != null ? result.getStderr() : null;
+            if (outcome != null && outcome.failureDetails != null) {
+                stderr = outcome.failureDetails + System.lineSeparator() + (stderr != null ? stderr : "");
+            }
+            TestValidationResult failResult = new TestValidationResult.Builder()
+                    .status(TestValidationResult.STATUS_FAIL)
+                    .reason(outcome != null ? outcome.reason : "Test failed")
+                    .exitCode(result != null ? result.getExitCode() : null)
+                    .stderr(stderr)
+                    .stdout(result != null ? result.getStdout() : null)
+                    .test(generatedTest)
+                    .language(language)
+                    .sourceFile(sourceCode)
+                    .originalTestFile(originalContent)
+                    .processedTestFile(processedTest)
+                    .build();
+            recordFailedTest(generatedTest, failResult);
+            results.add(failResult);
+        }
+        return results;
+    }
+
+    /**
+     * Validates a batch with one compilation and one request to the test engine. Every candidate method runs
+     * as its own coverage session. Candidates are then accepted in order when their execution data, merged
+     * with the suite's and that of the candidates accepted before them, adds coverage; redundant ones are
+     * dropped. Candidates without a recognizable method name, and batches that do not compile together, are
+     * validated one at a time.
+     */
+    private List<TestValidationResult> validateTestsInSessions(List<GeneratedTest> generatedTests,
+                                                               String originalContent) {
+        TestValidationResult[] results = new TestValidationResult[generatedTests.size()];
+        List<Integer> candidates = new ArrayList<>();
+        List<Integer> individually = new ArrayList<>();
+        for (int i = 0; i < generatedTests.size(); i++) {
+            GeneratedTest generatedTest = generatedTests.get(i);
+            if (generatedTest.getTestMethodName() == null) {
+                individually.add(i);
+                continue;
+            }
+            String processedTest = insertTest(originalContent, generatedTest,
+                    relevantLineNumberToInsertTestsAfter, relevantLineNumberToInsertImportsAfter).content;
+            CompilationResult check = precheck(processedTest);
+            if (check != null && !check.isSuccess()) {
+                results[i] = compilationFailure(generatedTest, originalContent, processedTest, check);
+            } else {
+                candidates.add(i);
+            }
+        }
+
+        JUnitLauncherEngine.EngineResult engineResult = null;
+        if (!candidates.isEmpty()) {
+            String content = buildBatchContent(generatedTests, candidates, originalContent);
+            List<String> testMethods = new ArrayList<>();
+            for (int i : candidates) {
+                testMethods.add(generatedTests.get(i).getTestMethodName());
+            }
+            System.out.println("Running " + candidates.size() + " generated test(s) as separate coverage sessions "
+                    + "in the test worker");
+            engineResult = testEngine.runTestSessions(content, getTestClassName(content), testMethods);
+            if (!engineResult.isCompiled() || engineResult.getSessions().size() != candidates.size()) {
+                logger.info("The generated tests could not be run together; validating them one at a time.");
+                individually.addAll(candidates);
+                candidates.clear();
+            }
+        }
+
+        CoverageProcessor.CoverageData coveredSoFar = currentCoverageData;
+        MergedExecutionData executionDataSoFar = suiteExecutionData;
+        List<Integer> accepted = new ArrayList<>();
+        for (int index = 0; index < candidates.size(); index++) {
+            int i = candidates.get(index);
+            GeneratedTest generatedTest = generatedTests.get(i);
+            TestWorkerPool.Session session = engineResult.getSessions().get(index);
+            Runner.CommandResult result = engineResult.getCommandResult();
+            String processedTest = insertTest(originalContent, generatedTest,
+                    relevantLineNumberToInsertTestsAfter, relevantLineNumberToInsertImportsAfter).content;
+            TestValidationResult.Builder resultBuilder = new TestValidationResult.Builder()
+                    .exitCode(session.isPassed() ? 0 : 1)
+                    .stderr(sessionOutput(result.getStderr(), session.getTestMethod()))
+                    .stdout(result.getStdout())
+                    .test(generatedTest)
+                    .language(language)
+                    .sourceFile(sourceCode)
+                    .originalTestFile(originalContent)
+                    .processedTestFile(processedTest);
+
+            if (!session.isPassed()) {
+                System.out.println("Skipping a generated test that failed");
+                TestValidationResult failResult = resultBuilder
+                        .status(TestValidationResult.STATUS_FAIL)
+                        .reason("Test failed")
+                        .build();
+                recordFailedTest(generatedTest, failResult);
+                results[i] = failResult;
+                continue;
+            }
+
+            MergedCoverage merged = mergeRun(executionDataSoFar, session.getExecFile());
+            if (merged == null || !merged.coverage.coversMoreThan(coveredSoFar, coverageMetric)) {
+                String errorMessage = merged == null
+                        ? "Coverage verification error" : "Test did not increase code coverage";
+                results[i] = resultBuilder
+                        .status(TestValidationResult.STATUS_FAIL)
+                        .reason(merged == null ? "Runtime error" : "Coverage did not increase. The test only "
+                                + "covers code that the test suite or an earlier generated test already covers")
+                        .build();
+                Map<String, Object> failedTest = new HashMap<>();
+                failedTest.put("code", generatedTest.toMap());
+                failedTest.put("error_message", errorMessage);
+                failedTestRuns.add(failedTest);
+                continue;
+            }
+
+            recordContribution(generatedTest, merged.coverage, coveredSoFar);
+            coveredSoFar = merged.coverage;
+            executionDataSoFar = merged.executionData;
+            accepted.add(i);
+            results[i] = resultBuilder
+                    .status(TestValidationResult.STATUS_PASS)
+                    .reason("")
+                    .build();
+        }
+
+        if (!accepted.isEmpty()) {
+            String mergedContent = buildBatchContent(generatedTests, accepted, originalContent);
+            try {
+                Files.write(Paths.get(testFilePath), mergedContent.getBytes());
+                this.relevantLineNumberToInsertTestsAfter +=
+                        mergedContent.split("\n").length - originalContent.split("\n").length;
+                logger.info(String.format("%d of %d test(s) passed and added coverage: %.2f%% to %.2f%%",
+                        accepted.size(), candidates.size(), currentCoverage * 100,
+                        coveredSoFar.getCoverage(coverageMetric) * 100));
+                acceptCoverage(coveredSoFar, executionDataSoFar);
+            } catch (IOException e) {
+                logger.severe("Error writing merged test file: " + e.getMessage());
+            }
+        }
+
+        for (int i : individually) {
+            results[i] = validateTest(generatedTests.get(i));
+        }
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    /**
+     * Returns the failure lines of one test method from the output of a session run, or the whole output if
+     * none mention it.
+     */
+    private static String sessionOutput(String output, String testMethod) {
+        if (output == null || output.isEmpty()) {
+            return output;
+        }
+        StringBuilder lines = new StringBuilder();
+        for (String line : output.split("\\R")) {
+            if (line.startsWith(testMethod + "(")) {
+                lines.append(line).append(System.lineSeparator());
+            }
+        }
+        return lines.length() > 0 ? lines.toString() : output;
+    }
+
+    /**
+     * Runs one batch of candidates and records an outcome for each, recursing on the survivors or on halves.
+     */
+    private void runBatch(List<GeneratedTest> generatedTests, List<Integer> batch, String originalContent,
+                          String testClassName, Map<Integer, BatchOutcome> outcomes,
+                          Runner.CommandResult[] lastGreenRun, List<Integer> lastGreenSet) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        String content = buildBatchContent(generatedTests, batch, originalContent);
+        try {
+            Files.write(Paths.get(testFilePath), content.getBytes());
+        } catch (IOException e) {
+            logger.severe("Error writing to test file: " + e.getMessage());
+            for (int i : batch) {
+                outcomes.put(i, new BatchOutcome(false, "Error writing to test file: " + e.getMessage(), null, null));
+            }
+            return;
+        }
+
+        System.out.println("Validating " + batch.size() + " generated test(s) in a single run");
+        Runner.CommandResult result = runTestCommand();
+        if (result.getExitCode() == 0) {
+            for (int i : batch) {
+                outcomes.put(i, new BatchOutcome(true, "", result, null));
+            }
+            lastGreenRun[0] = result;
+            lastGreenSet.clear();
+            lastGreenSet.addAll(batch);
+            return;
+        }
+
+        Map<String, SurefireReportParser.TestCaseResult> reports = SurefireReportParser.parse(
+                SurefireReportParser.defaultReportDirs(testCommandDir != null ? testCommandDir : projectRoot),
+                testClassName, result.getCommandStartTime());
+        List<Integer> survivors = new ArrayList<>();
+        boolean anyReported = false;
+        boolean anyFailed = false;
+        for (int i : batch) {
+            String methodName = generatedTests.get(i).getTestMethodName();
+            SurefireReportParser.TestCaseResult testResult = methodName != null ? reports.get(methodName) : null;
+            if (testResult == null) {
+                continue;
+            }
+            anyReported = true;
+            if (testResult.isPassed() && !testResult.isSkipped()) {
+                survivors.add(i);
+            } else {
+                anyFailed = true;
+                outcomes.put(i, new BatchOutcome(false, "Test failed", result, testResult.getFailureMessage()));
+            }
+        }
+
+        if (anyReported) {
+            if (!anyFailed) {
+                // The candidates ran and passed, but the build still failed (e.g. an existing test is broken).
+                for (int i : batch) {
+                    outcomes.put(i, new BatchOutcome(false, "Test failed", result, null));
+                }
+                return;
+            }
+            for (int i : batch) {
+                if (!outcomes.containsKey(i) && !survivors.contains(i)) {
+                    outcomes.put(i, new BatchOutcome(false, "Test did not run", result, null));
+                }
+            }
+            runBatch(generatedTests, survivors, originalContent, testClassName, outcomes, lastGreenRun, lastGreenSet);
+            return;
+        }
+
+        // No per-test results: the batch most likely does not compile. Bisect to isolate the culprits.
+        if (batch.size() == 1) {
+            outcomes.put(batch.get(0), new BatchOutcome(false, "Test failed", result, null));
+            return;
+        }
+        int middle = batch.size() / 2;
+        runBatch(generatedTests, new ArrayList<>(batch.subList(0, middle)), originalContent, testClassName,
+                outcomes, lastGreenRun, lastGreenSet);
+        runBatch(generatedTests, new ArrayList<>(batch.subList(middle, batch.size())), originalContent, testClassName,
+                outcomes, lastGreenRun, lastGreenSet);
+    }
+
+    /**
+     * Inserts the given candidates, in order, into the original test file content.
+     */
+    private String buildBatchContent(List<GeneratedTest> generatedTests, List<Integer> batch, String originalContent) {
+        String content = originalContent;
+        int insertTestsAfter = relevantLineNumberToInsertTestsAfter;
+        for (int i : batch) {
+            ProcessedTest processed = insertTest(content, generatedTests.get(i), insertTestsAfter,
+                    relevantLineNumberToInsertImportsAfter);
+            content = processed.content;
+            insertTestsAfter += processed.importLinesInserted + processed.testLinesInserted;
+        }
+        return content;
+    }
+
+    /**
+     * Runs the test command up to {@code numAttempts} times, stopping at the first failure.
+     */
+    private Runner.CommandResult runTestCommand() {
+        Runner.CommandResult result = null;
+        for (int i = 0; i < Math.max(1, numAttempts); i++) {
+            System.out.println("Running test with the following command: \"" + testCommand + "\"");
+            result = Runner.runCommand(testCommand, testCommandDir, commandOptions());
+            if (result.getExitCode() != 0) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Derives the fully qualified test class name from the package declaration and the test file name.
+     */
+    private String getTestClassName(String testFileContent) {
+        String simpleName = new File(testFilePath).getName().replaceFirst("\\.java$", "");
+        java.util.regex.Matcher matcher = java.util.regex.Pattern
+                .compile("(?m)^\\s*package\\s+([\\w.]+)\\s*;").matcher(testFileContent);
+        return matcher.find() ? matcher.group(1) + "." + simpleName : simpleName;
+    }
+
+}
@@ -13,10 +13,13 @@ import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.ide.IDE;
 
+import test_agent.eclipse.BuildProgressListener;
+import test_agent.eclipse.CancellationToken;
 import test_agent.eclipse.CoverAgent;
 import test_agent.eclipse.CoverAgentArgs;
 import test_agent.eclipse.CoverAgentPlugin; 
 
+import java.util.concurrent.CancellationException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -25,6 +28,7 @@ public class RunCoverAgentJob extends Job {
     private static final Logger logger = Logger.getLogger(RunCoverAgentJob.class.getName());
 
     private final CoverAgentArgs args;
+    private volatile CancellationToken cancellationToken = new CancellationToken();
 
     public RunCoverAgentJob(String name, CoverAgentArgs args) {
         super(name);
@@ -37,8 +41,12 @@ public class RunCoverAgentJob extends Job {
         monitor.beginTask("Running CoverAgent Test Generation", IProgressMonitor.UNKNOWN);
         logger.info("Starting CoverAgent job in background...");
 
+        CancellationToken token = new CancellationToken();
+        cancellationToken = token;
         try {
             CoverAgent coverAgent = new CoverAgent(args, null); 
+            coverAgent.setOutputListener(new BuildProgressListener(monitor));
+            coverAgent.setCancellationToken(token);
             monitor.subTask("Generating tests...");
             coverAgent.run(); 
 
@@ -52,6 +60,10 @@ public class RunCoverAgentJob extends Job {
             logger.info("CoverAgent job completed successfully.");
             return Status.OK_STATUS;
 
+        } catch (CancellationException e) {
+            logger.info("CoverAgent job cancelled.");
+            monitor.done();
+            return Status.CANCEL_STATUS;
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error running CoverAgent job: " + e.getMessage(), e);
             monitor.done();
@@ -59,5 +71,11 @@ public class RunCoverAgentJob extends Job {
         }
     }
 
-    
+    /**
+     * Stops the running build or model call at once instead of when the current iteration is over.
+     */
+    @Override
+    protected void canceling() {
+        cancellationToken.cancel();
+    }
 }
\ No newline at end of file
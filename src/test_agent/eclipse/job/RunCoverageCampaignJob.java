@@ -0,0 +1,114 @@
+package test_agent.eclipse.job;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import test_agent.eclipse.BuildProgressListener;
+import test_agent.eclipse.CancellationToken;
+import test_agent.eclipse.CoverAgentPlugin;
+import test_agent.eclipse.CoverageCampaign;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a project-wide {@link CoverageCampaign} in the background and reports its progress class by class.
+ */
+public class RunCoverageCampaignJob extends Job {
+
+    private static final Logger logger = Logger.getLogger(RunCoverageCampaignJob.class.getName());
+
+    // Work units of the task: the shared coverage run, then the classes.
+    private static final int TOTAL_WORK = 1000;
+    private static final int COVERAGE_RUN_WORK = 50;
+
+    private final CoverageCampaign campaign;
+    private volatile CancellationToken cancellationToken = new CancellationToken();
+
+    public RunCoverageCampaignJob(String name, CoverageCampaign campaign) {
+        super(name);
+        this.campaign = campaign;
+        setUser(true);
+    }
+
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        monitor.beginTask("Running CoverAgent on the project", TOTAL_WORK);
+        monitor.subTask("Running the test command to rank classes...");
+        logger.info("Starting CoverAgent campaign in background...");
+
+        AtomicInteger total = new AtomicInteger();
+        AtomicInteger finished = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger reported = new AtomicInteger(COVERAGE_RUN_WORK);
+        CoverageCampaign.Listener listener = new CoverageCampaign.Listener() {
+            @Override
+            public void campaignStarted(List<CoverageCampaign.Target> targets) {
+                total.set(targets.size());
+                monitor.worked(COVERAGE_RUN_WORK);
+                monitor.setTaskName("Running CoverAgent on " + targets.size() + " class(es)");
+            }
+
+            @Override
+            public void targetStarted(CoverageCampaign.Target target) {
+                monitor.subTask(String.format("%d/%d done, generating tests for %s",
+                        finished.get(), total.get(), target.getClassName()));
+            }
+
+            @Override
+            public void targetFinished(CoverageCampaign.Target target, boolean success, String message) {
+                if (!success) {
+                    failed.incrementAndGet();
+                }
+                int done = finished.incrementAndGet();
+                // Report the class work in proportion to the classes done, so rounding never overshoots.
+                int reachedWork = COVERAGE_RUN_WORK + (TOTAL_WORK - COVERAGE_RUN_WORK) * done / Math.max(1, total.get());
+                int previousWork = reported.getAndAccumulate(reachedWork, Math::max);
+                if (reachedWork > previousWork) {
+                    monitor.worked(reachedWork - previousWork);
+                }
+                monitor.subTask(String.format("%d/%d done, finished %s", done, total.get(), target.getClassName()));
+            }
+        };
+
+        CancellationToken token = new CancellationToken();
+        cancellationToken = token;
+        try {
+            campaign.setOutputListener(new BuildProgressListener(monitor));
+            campaign.setCancellationToken(token);
+            campaign.run(listener, monitor::isCanceled);
+            if (monitor.isCanceled()) {
+                logger.info("CoverAgent campaign cancelled.");
+                return Status.CANCEL_STATUS;
+            }
+            monitor.done();
+            if (failed.get() > 0) {
+                return new Status(IStatus.WARNING, CoverAgentPlugin.PLUGIN_ID,
+                        "CoverAgent failed for " + failed.get() + " of " + total.get() + " class(es); see the log.");
+            }
+            logger.info("CoverAgent campaign completed successfully.");
+            return Status.OK_STATUS;
+        } catch (CancellationException e) {
+            logger.info("CoverAgent campaign cancelled.");
+            monitor.done();
+            return Status.CANCEL_STATUS;
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error running CoverAgent campaign: " + e.getMessage(), e);
+            monitor.done();
+            return new Status(IStatus.ERROR, CoverAgentPlugin.PLUGIN_ID, "CoverAgent campaign failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stops the running builds and model calls at once instead of after the classes in progress.
+     */
+    @Override
+    protected void canceling() {
+        cancellationToken.cancel();
+    }
+}
@@ -58,7 +58,11 @@ import org.eclipse.core.runtime.jobs.Job;
 
 import test_agent.eclipse.CoverAgent;
 import test_agent.eclipse.CoverAgentArgs;
+import test_agent.eclipse.CoverAgentPlugin;
+import test_agent.eclipse.CoverageCampaign;
+import test_agent.eclipse.Runner;
 import test_agent.eclipse.job.RunCoverAgentJob;
+import test_agent.eclipse.job.RunCoverageCampaignJob;
 
 import java.io.File;
 import java.net.URL;
@@ -92,11 +96,28 @@ public class CoverAgentConfigDialog extends TitleAreaDialog {
     private CheckboxTableViewer includedFilesViewer;
     private Combo coverageTypeCombo;
     private Spinner desiredCoverageSpinner;
+    private Combo coverageMetricCombo;
     private Text additionalInstructionsText;
     private Text projectRootText;
     private Spinner maxIterationsSpinner;
     private Button runEachTestSeparatelyCheckbox;
+    private Button batchValidationCheckbox;
+    private Button inProcessValidationCheckbox;
+    private Button incrementalCompilationCheckbox;
+    private Button responseCacheCheckbox;
+    private Button pipelinedGenerationCheckbox;
+    private Button promptCompactionCheckbox;
     private Spinner runTestsMultipleTimesSpinner;
+    private Spinner validationParallelismSpinner;
+    private Spinner coverageTimeoutSpinner;
+    private Spinner testTimeoutSpinner;
+    private Spinner testCpuLimitSpinner;
+    private Spinner testMemoryLimitSpinner;
+    private Button campaignCheckbox;
+    private Spinner campaignClassesSpinner;
+    private Spinner concurrentRunsSpinner;
+    private Spinner buildSlotsSpinner;
+    private Spinner requestsPerMinuteSpinner;
     private Text apiKeyText;
     private Text siteUrlText;
     private Text siteNameText;    
@@ -135,6 +156,7 @@ public class CoverAgentConfigDialog extends TitleAreaDialog {
         createCommandGroup(container);
         createCoverageGroup(container);
         createAdvancedOptionsGroup(container);
+        createCampaignGroup(container);
         createApiConfigGroup(container);
         initializeValues();
         
@@ -213,7 +235,7 @@ public class CoverAgentConfigDialog extends TitleAreaDialog {
         coverageReportBrowseButton.addSelectionListener(new SelectionAdapter() {
             @Override
             public void widgetSelected(SelectionEvent e) {
-                browseForFile(coverageReportText, "Select Coverage Report", "*.xml");
+                browseForFile(coverageReportText, "Select Coverage Report", "*.xml", "*.exec");
             }
         });
         
@@ -342,6 +364,15 @@ public class CoverAgentConfigDialog extends TitleAreaDialog {
         desiredCoverageSpinner.setIncrement(1);
         desiredCoverageSpinner.setPageIncrement(10);
         desiredCoverageSpinner.setLayoutData(new GridData(SWT.BEGINNING, SWT.CENTER, false, false));
+
+        Label coverageMetricLabel = new Label(coverageGroup, SWT.NONE);
+        coverageMetricLabel.setText("Coverage Goal:");
+
+        coverageMetricCombo = new Combo(coverageGroup, SWT.DROP_DOWN | SWT.READ_ONLY);
+        coverageMetricCombo.setItems(new String[] {"Line", "Branch", "Instruction"});
+        coverageMetricCombo.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+        coverageMetricCombo.setToolTipText("What the desired coverage measures. Branch coverage keeps generating "
+                + "tests for lines that run but whose conditions are not fully covered");
         
  
     }
@@ -371,6 +402,32 @@ public class CoverAgentConfigDialog extends TitleAreaDialog {
         runEachTestSeparatelyCheckbox.setText("Run Each Test Separately");
         runEachTestSeparatelyCheckbox.setLayoutData(new GridData(SWT.BEGINNING, SWT.CENTER, false, false, 2, 1));
         
+        batchValidationCheckbox = new Button(advancedGroup, SWT.CHECK);
+        batchValidationCheckbox.setText("Validate Generated Tests In One Run");
+        batchValidationCheckbox.setLayoutData(new GridData(SWT.BEGINNING, SWT.CENTER, false, false, 2, 1));
+
+        inProcessValidationCheckbox = new Button(advancedGroup, SWT.CHECK);
+        inProcessValidationCheckbox.setText("Run Generated Tests In A JUnit Launcher Worker");
+        inProcessValidationCheckbox.setLayoutData(new GridData(SWT.BEGINNING, SWT.CENTER, false, false, 2, 1));
+
+        incrementalCompilationCheckbox = new Button(advancedGroup, SWT.CHECK);
+        incrementalCompilationCheckbox.setText("Compile Generated Tests Before Running The Test Command");
+        incrementalCompilationCheckbox.setLayoutData(new GridData(SWT.BEGINNING, SWT.CENTER, false, false, 2, 1));
+
+        responseCacheCheckbox = new Button(advancedGroup, SWT.CHECK);
+        responseCacheCheckbox.setText("Cache Model Responses Between Runs");
+        responseCacheCheckbox.setSelection(true);
+        responseCacheCheckbox.setLayoutData(new GridData(SWT.BEGINNING, SWT.CENTER, false, false, 2, 1));
+
+        pipelinedGenerationCheckbox = new Button(advancedGroup, SWT.CHECK);
+        pipelinedGenerationCheckbox.setText("Generate The Next Tests During The Coverage Run");
+        pipelinedGenerationCheckbox.setLayoutData(new GridData(SWT.BEGINNING, SWT.CENTER, false, false, 2, 1));
+
+        promptCompactionCheckbox = new Button(advancedGroup, SWT.CHECK);
+        promptCompactionCheckbox.setText("Send Only The Code Around Missed Lines To The Model");
+        promptCompactionCheckbox.setSelection(true);
+        promptCompactionCheckbox.setLayoutData(new GridData(SWT.BEGINNING, SWT.CENTER, false, false, 2, 1));
+        
         Label runTestsMultipleTimesLabel = new Label(advancedGroup, SWT.NONE);
         runTestsMultipleTimesLabel.setText("Run Tests Multiple Times:");
         
@@ -381,6 +438,61 @@ public class CoverAgentConfigDialog extends TitleAreaDialog {
         runTestsMultipleTimesSpinner.setPageIncrement(1);
         runTestsMultipleTimesSpinner.setLayoutData(new GridData(SWT.BEGINNING, SWT.CENTER, false, false));
         
+        Label validationParallelismLabel = new Label(advancedGroup, SWT.NONE);
+        validationParallelismLabel.setText("Parallel Validations:");
+        
+        validationParallelismSpinner = new Spinner(advancedGroup, SWT.BORDER);
+        validationParallelismSpinner.setMinimum(1);
+        validationParallelismSpinner.setMaximum(8);
+        validationParallelismSpinner.setIncrement(1);
+        validationParallelismSpinner.setPageIncrement(1);
+        validationParallelismSpinner.setLayoutData(new GridData(SWT.BEGINNING, SWT.CENTER, false, false));
+        validationParallelismSpinner.setToolTipText("Validate generated tests concurrently, each in its own copy of the project");
+        
+        Label coverageTimeoutLabel = new Label(advancedGroup, SWT.NONE);
+        coverageTimeoutLabel.setText("Coverage Run Timeout (s):");
+        
+        coverageTimeoutSpinner = new Spinner(advancedGroup, SWT.BORDER);
+        coverageTimeoutSpinner.setMinimum(10);
+        coverageTimeoutSpinner.setMaximum(86400);
+        coverageTimeoutSpinner.setIncrement(60);
+        coverageTimeoutSpinner.setPageIncrement(600);
+        coverageTimeoutSpinner.setLayoutData(new GridData(SWT.BEGINNING, SWT.CENTER, false, false));
+        coverageTimeoutSpinner.setToolTipText("Kill the initial build and test run of the whole project after this time");
+        
+        Label testTimeoutLabel = new Label(advancedGroup, SWT.NONE);
+        testTimeoutLabel.setText("Test Run Timeout (s):");
+        
+        testTimeoutSpinner = new Spinner(advancedGroup, SWT.BORDER);
+        testTimeoutSpinner.setMinimum(10);
+        testTimeoutSpinner.setMaximum(86400);
+        testTimeoutSpinner.setIncrement(30);
+        testTimeoutSpinner.setPageIncrement(300);
+        testTimeoutSpinner.setLayoutData(new GridData(SWT.BEGINNING, SWT.CENTER, false, false));
+        testTimeoutSpinner.setToolTipText("Kill a run validating generated tests, and all processes it started, after this time");
+        
+        Label testCpuLimitLabel = new Label(advancedGroup, SWT.NONE);
+        testCpuLimitLabel.setText("Test Run CPU Limit (s, 0 = None):");
+        
+        testCpuLimitSpinner = new Spinner(advancedGroup, SWT.BORDER);
+        testCpuLimitSpinner.setMinimum(0);
+        testCpuLimitSpinner.setMaximum(86400);
+        testCpuLimitSpinner.setIncrement(60);
+        testCpuLimitSpinner.setPageIncrement(600);
+        testCpuLimitSpinner.setLayoutData(new GridData(SWT.BEGINNING, SWT.CENTER, false, false));
+        testCpuLimitSpinner.setToolTipText("CPU time each process of a validating test run may use (Linux and macOS only)");
+        
+        Label testMemoryLimitLabel = new Label(advancedGroup, SWT.NONE);
+        testMemoryLimitLabel.setText("Test Run Memory Limit (MB, 0 = None):");
+        
+        testMemoryLimitSpinner = new Spinner(advancedGroup, SWT.BORDER);
+        testMemoryLimitSpinner.setMinimum(0);
+        testMemoryLimitSpinner.setMaximum(1024 * 1024);
+        testMemoryLimitSpinner.setIncrement(256);
+        testMemoryLimitSpinner.setPageIncrement(1024);
+        testMemoryLimitSpinner.setLayoutData(new GridData(SWT.BEGINNING, SWT.CENTER, false, false));
+        testMemoryLimitSpinner.setToolTipText("Memory a validating test run may use; a cgroup limit with systemd, else per process virtual memory (Linux and macOS only)");
+        
         Label additionalInstructionsLabel = new Label(advancedGroup, SWT.NONE);
         additionalInstructionsLabel.setText("Additional Instructions:");
         additionalInstructionsLabel.setLayoutData(new GridData(SWT.BEGINNING, SWT.TOP, false, false));
@@ -391,6 +503,44 @@ public class CoverAgentConfigDialog extends TitleAreaDialog {
         additionalInstructionsText.setLayoutData(textData);
     }
 
+    /**
+     * Create the project-wide campaign group
+     *
+     * @param container The parent container
+     */
+    private void createCampaignGroup(Composite container) {
+        Group campaignGroup = new Group(container, SWT.NONE);
+        campaignGroup.setText("Whole Project");
+        campaignGroup.setLayout(new GridLayout(2, false));
+        campaignGroup.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, false, 3, 1));
+
+        campaignCheckbox = new Button(campaignGroup, SWT.CHECK);
+        campaignCheckbox.setText("Run On The Classes With The Most Missed Lines");
+        campaignCheckbox.setLayoutData(new GridData(SWT.BEGINNING, SWT.CENTER, false, false, 2, 1));
+        campaignCheckbox.setToolTipText("Ignore the source and test files above and generate tests for every class of "
+                + "src/main/java, ranked by the missed lines of the coverage report");
+
+        campaignClassesSpinner = createCampaignSpinner(campaignGroup, "Classes:", 1, 200);
+        concurrentRunsSpinner = createCampaignSpinner(campaignGroup, "Concurrent Classes:", 1, 16);
+        buildSlotsSpinner = createCampaignSpinner(campaignGroup, "Concurrent Builds:", 1, 16);
+        buildSlotsSpinner.setToolTipText("Only used when generated tests run in a JUnit launcher worker; "
+                + "test commands always build one at a time");
+        requestsPerMinuteSpinner = createCampaignSpinner(campaignGroup, "Model Requests Per Minute:", 1, 600);
+    }
+
+    private Spinner createCampaignSpinner(Composite parent, String label, int minimum, int maximum) {
+        Label spinnerLabel = new Label(parent, SWT.NONE);
+        spinnerLabel.setText(label);
+
+        Spinner spinner = new Spinner(parent, SWT.BORDER);
+        spinner.setMinimum(minimum);
+        spinner.setMaximum(maximum);
+        spinner.setIncrement(1);
+        spinner.setPageIncrement(5);
+        spinner.setLayoutData(new GridData(SWT.BEGINNING, SWT.CENTER, false, false));
+        return spinner;
+    }
+
     /**
      * Create the API configuration group
      * 
@@ -504,8 +654,19 @@ public class CoverAgentConfigDialog extends TitleAreaDialog {
         modelCombo.select(0);
         coverageTypeCombo.select(0);
         desiredCoverageSpinner.setSelection(80);
+        coverageMetricCombo.select(0);
         maxIterationsSpinner.setSelection(2);
         runTestsMultipleTimesSpinner.setSelection(1);
+        validationParallelismSpinner.setSelection(1);
+        coverageTimeoutSpinner.setSelection(Runner.DEFAULT_TIMEOUT_SECONDS);
+        testTimeoutSpinner.setSelection(600);
+        testCpuLimitSpinner.setSelection(0);
+        testMemoryLimitSpinner.setSelection(0);
+        campaignCheckbox.setSelection(selectedFile == null);
+        campaignClassesSpinner.setSelection(10);
+        concurrentRunsSpinner.setSelection(2);
+        buildSlotsSpinner.setSelection(1);
+        requestsPerMinuteSpinner.setSelection(20);
         siteUrlText.setText("http://localhost");
         siteNameText.setText("EclipseCoverAgentPlugin");
         
@@ -838,33 +999,42 @@ public class CoverAgentConfigDialog extends TitleAreaDialog {
         }
     }
 
+    /**
+     * Returns the model response cache directory in the plugin's state location, or null outside a running plugin.
+     */
+    private String getResponseCacheDir() {
+        CoverAgentPlugin plugin = CoverAgentPlugin.getDefault();
+        return plugin != null ? plugin.getStateLocation().append("llm-cache").toOSString() : null;
+    }
+
  
         @Override
         protected void okPressed() {
             //  Validation 
             setErrorMessage(null); 
 
-            String sourceFilePath = sourceFileText.getText().trim();
-            if (sourceFilePath.isEmpty()) {
-                setErrorMessage("Source File path cannot be empty.");
-                sourceFileText.setFocus(); 
-                return; 
-            }
-            if (!Files.exists(Paths.get(sourceFilePath))) {
-                setErrorMessage("Source File does not exist: " + sourceFilePath);
-                sourceFileText.setFocus();
-                return; 
-            }
+            boolean campaign = campaignCheckbox.getSelection();
+            if (!campaign) {
+                String sourceFilePath = sourceFileText.getText().trim();
+                if (sourceFilePath.isEmpty()) {
+                    setErrorMessage("Source File path cannot be empty.");
+                    sourceFileText.setFocus(); 
+                    return; 
+                }
+                if (!Files.exists(Paths.get(sourceFilePath))) {
+                    setErrorMessage("Source File does not exist: " + sourceFilePath);
+                    sourceFileText.setFocus();
+                    return; 
+                }
 
-            String testFilePath = testFileText.getText().trim();
-            if (testFilePath.isEmpty()) {
-                 setErrorMessage("Test File path cannot be empty.");
-                 testFileText.setFocus();
-                 return;
+                String testFilePath = testFileText.getText().trim();
+                if (testFilePath.isEmpty()) {
+                     setErrorMessage("Test File path cannot be empty.");
+                     testFileText.setFocus();
+                     return;
+                }
             }
 
-
-
             String testCommand = testCommandText.getText().trim();
             if (testCommand.isEmpty()) {
                 setErrorMessage("Test Command cannot be empty.");
@@ -905,18 +1075,43 @@ public class CoverAgentConfigDialog extends TitleAreaDialog {
                 .includedFiles(includedFilePaths)
                 .coverageType(coverageTypeCombo.getText())
                 .desiredCoverage(desiredCoverageSpinner.getSelection())
+                .coverageMetric(coverageMetricCombo.getText())
                 .additionalInstructions(additionalInstructionsText.getText())
                 .projectRoot(projectRootText.getText())
                 .maxIterations(maxIterationsSpinner.getSelection())
                 .runEachTestSeparately(runEachTestSeparatelyCheckbox.getSelection())
+                .batchValidation(batchValidationCheckbox.getSelection())
+                .inProcessValidation(inProcessValidationCheckbox.getSelection())
+                .incrementalCompilation(incrementalCompilationCheckbox.getSelection())
+                .responseCacheDir(responseCacheCheckbox.getSelection() ? getResponseCacheDir() : null)
+                .pipelinedGeneration(pipelinedGenerationCheckbox.getSelection())
+                .promptCompaction(promptCompactionCheckbox.getSelection())
                 .runTestsMultipleTimes(runTestsMultipleTimesSpinner.getSelection())
+                .validationParallelism(validationParallelismSpinner.getSelection())
+                .coverageTimeoutSeconds(coverageTimeoutSpinner.getSelection())
+                .testTimeoutSeconds(testTimeoutSpinner.getSelection())
+                .testCpuSeconds(testCpuLimitSpinner.getSelection())
+                .testMemoryMegabytes(testMemoryLimitSpinner.getSelection())
                 .apiKey(apiKeyText.getText())
                 .siteUrl(siteUrlText.getText())
                 .siteName(siteNameText.getText())
                 .build();
           test_agent.eclipse.util.CoverAgentConsole.install();
 
-        Job job = new RunCoverAgentJob("Running CoverAgent", args);
+        Job job;
+        if (campaign) {
+            CoverageCampaign coverageCampaign = new CoverageCampaign(args,
+                    Paths.get(projectRootPath, "src", "main", "java").toString(),
+                    Paths.get(projectRootPath, "src", "test", "java").toString());
+            coverageCampaign.setMaxTargets(campaignClassesSpinner.getSelection());
+            coverageCampaign.setConcurrentRuns(concurrentRunsSpinner.getSelection());
+            coverageCampaign.setBuildSlots(buildSlotsSpinner.getSelection());
+            coverageCampaign.setRequestsPerMinute(requestsPerMinuteSpinner.getSelection());
+            job = new RunCoverageCampaignJob("Running CoverAgent on " + Paths.get(projectRootPath).getFileName(),
+                    coverageCampaign);
+        } else {
+            job = new RunCoverAgentJob("Running CoverAgent", args);
+        }
         job.schedule(); 
 
         super.okPressed();
@@ -5,6 +5,9 @@ package test_agent.models;
  * This class is used to store and manage test code generated by the AI.
  */
 public class GeneratedTest {
+    private static final java.util.regex.Pattern TEST_METHOD_PATTERN =
+            java.util.regex.Pattern.compile("\\bvoid\\s+(\\w+)\\s*\\(");
+
     private String testCode;
     private String newImportsCode;
 
@@ -30,6 +33,20 @@ public class GeneratedTest {
         return newImportsCode;
     }
 
+    /**
+     * Extracts the name of the test method declared in the test code, e.g. {@code shouldReturnUser}
+     * for {@code @Test void shouldReturnUser() { ... }}.
+     *
+     * @return The method name, or null if no method declaration is found
+     */
+    public String getTestMethodName() {
+        if (testCode == null) {
+            return null;
+        }
+        java.util.regex.Matcher matcher = TEST_METHOD_PATTERN.matcher(testCode);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
 
     /**
      * Creates a GeneratedTest from a dictionary/map representation.
@@ -0,0 +1,68 @@
+package test_agent.results;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of compiling a single test compilation unit, with its error diagnostics.
+ */
+public class CompilationResult {
+
+    /**
+     * One compiler error, located in the compiled source.
+     */
+    public static class Diagnostic {
+        private final long line;
+        private final long column;
+        private final String message;
+        private final String sourceLine;
+
+        public Diagnostic(long line, long column, String message, String sourceLine) {
+            this.line = line;
+            this.column = column;
+            this.message = message;
+            this.sourceLine = sourceLine;
+        }
+
+        public long getLine() { return line; }
+        public long getColumn() { return column; }
+        public String getMessage() { return message; }
+        public String getSourceLine() { return sourceLine; }
+
+        @Override
+        public String toString() {
+            return "line " + line + ":" + column + ": error: " + message
+                    + (sourceLine != null ? System.lineSeparator() + "    " + sourceLine.trim() : "");
+        }
+    }
+
+    private final boolean success;
+    private final List<Diagnostic> diagnostics;
+    private final String outputDir;
+
+    public CompilationResult(boolean success, List<Diagnostic> diagnostics, String outputDir) {
+        this.success = success;
+        this.diagnostics = Collections.unmodifiableList(new ArrayList<>(diagnostics));
+        this.outputDir = outputDir;
+    }
+
+    public boolean isSuccess() { return success; }
+    public List<Diagnostic> getDiagnostics() { return diagnostics; }
+
+    /**
+     * @return the directory holding the compiled classes of a successful compilation.
+     */
+    public String getOutputDir() { return outputDir; }
+
+    /**
+     * @return the diagnostics as compiler-style text, one error per line.
+     */
+    public String formatDiagnostics() {
+        StringBuilder text = new StringBuilder();
+        for (Diagnostic diagnostic : diagnostics) {
+            text.append(diagnostic).append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+}
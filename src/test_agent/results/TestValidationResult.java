@@ -3,6 +3,7 @@ package test_agent.results;
 import test_agent.models.GeneratedTest;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -26,6 +27,7 @@ public class TestValidationResult {
     private String originalTestFile;
     private String processedTestFile;
     private String errorMessage;
+    private List<CompilationResult.Diagnostic> diagnostics;
 
     /**
      * Private constructor used by the Builder.
@@ -94,6 +96,11 @@ public class TestValidationResult {
             return this;
         }
 
+        public Builder diagnostics(List<CompilationResult.Diagnostic> diagnostics) {
+            result.diagnostics = diagnostics;
+            return this;
+        }
+
         public TestValidationResult build() {
             return result;
         }
@@ -185,6 +192,7 @@ public class TestValidationResult {
         map.put("originalTestFile", originalTestFile);
         map.put("processedTestFile", processedTestFile);
         map.put("errorMessage", errorMessage);
+        map.put("diagnostics", diagnostics);
         return map;
     }
 
@@ -251,6 +259,13 @@ public class TestValidationResult {
         return errorMessage;
     }
 
+    /**
+     * @return the compiler errors of a test that did not compile, or null.
+     */
+    public List<CompilationResult.Diagnostic> getDiagnostics() {
+        return diagnostics;
+    }
+
     @Override
     public String toString() {
         return "TestValidationResult{" +
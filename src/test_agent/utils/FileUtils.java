@@ -5,9 +5,12 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.function.UnaryOperator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * Utility class for file and path related operations.
@@ -39,6 +42,22 @@ public final class FileUtils {
         }
     }
 
+    /**
+     * Deletes a directory and everything below it. Failures are logged and otherwise ignored,
+     * since this is only used for temporary files.
+     * @param directory The directory to delete.
+     */
+    public static void deleteDirectory(Path directory) {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Could not delete " + directory + ": " + e.getMessage());
+        }
+    }
+
     /**
      * Calculates the relative path from a base path to a full path.
      * Handles potential errors during relativization (e.g., different drives on Windows).
@@ -73,6 +92,18 @@ public final class FileUtils {
      * @return A formatted string containing the concatenated contents, or an empty string if the list is null/empty or no files could be read.
      */
     public static String getIncludedFilesContent(List<String> includedFiles) {
+        return getIncludedFilesContent(includedFiles, UnaryOperator.identity());
+    }
+
+    /**
+     * Reads and concatenates the contents of included files like {@link #getIncludedFilesContent(List)},
+     * transforming each file's content before it is added.
+     *
+     * @param includedFiles A list of paths to included files.
+     * @param transform The transformation applied to the content of each file.
+     * @return A formatted string containing the concatenated contents, or an empty string if the list is null/empty or no files could be read.
+     */
+    public static String getIncludedFilesContent(List<String> includedFiles, UnaryOperator<String> transform) {
         if (includedFiles == null || includedFiles.isEmpty()) {
             return "";
         }
@@ -84,7 +115,7 @@ public final class FileUtils {
                 continue;
             }
             outStr.append("file_path: `").append(filePath).append("`\n")
-                    .append("content:\n```\n").append(content).append("\n```\n");
+                    .append("content:\n```\n").append(transform.apply(content)).append("\n```\n");
         }
 
         return outStr.toString().trim();
@@ -0,0 +1,72 @@
+package test_agent.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Utility class for the line-numbered views of files sent to the model.
+ * A file is numbered in a single pass, and the numbered view is cached by the hash of the content, so a source
+ * or test file that does not change between iterations or retries is only numbered once.
+ */
+public final class NumberedText {
+
+    // Numbered views kept in memory; typically the source file and the test file of a run.
+    private static final int MAX_CACHED_TEXTS = 16;
+
+    private static final Map<String, String> cache = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_CACHED_TEXTS;
+        }
+    };
+
+    private NumberedText() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Returns the content with each line prefixed by its number and a space, starting at 1.
+     *
+     * @param content The text to number.
+     * @return The numbered lines, separated by {@code \n}.
+     */
+    public static String of(String content) {
+        String key = hash(content);
+        synchronized (cache) {
+            String numbered = cache.get(key);
+            if (numbered != null) {
+                return numbered;
+            }
+        }
+        String numbered = number(content);
+        synchronized (cache) {
+            cache.put(key, numbered);
+        }
+        return numbered;
+    }
+
+    private static String number(String content) {
+        String[] lines = content.split("\n");
+        StringBuilder numbered = new StringBuilder(content.length() + lines.length * 6);
+        for (int i = 0; i < lines.length; i++) {
+            if (i > 0) {
+                numbered.append('\n');
+            }
+            numbered.append(i + 1).append(' ').append(lines[i]);
+        }
+        return numbered.toString();
+    }
+
+    private static String hash(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+}
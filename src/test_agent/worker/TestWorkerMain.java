@@ -0,0 +1,243 @@
+package test_agent.worker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Entry point of a long-lived test worker JVM.
+ * The worker is started with the project's main classes and dependencies on its class path and, optionally,
+ * a JaCoCo agent. It reads one request per line from stdin and runs the requested test methods through the
+ * JUnit Platform Launcher API in a fresh class loader, so recompiled test classes are picked up without
+ * restarting the JVM.
+ * <p>
+ * This class runs outside the plugin and must only depend on the JDK; JUnit and JaCoCo are reached through
+ * reflection. It must not declare nested or anonymous classes, because it is shipped to the worker as a
+ * single class file.
+ * <p>
+ * Protocol (tab separated, one line per request):
+ * <pre>
+ * RUN &lt;class dirs&gt; &lt;test class&gt; &lt;method,method&gt; &lt;exec output file or -&gt;
+ * RUNEACH &lt;class dirs&gt; &lt;test class&gt; &lt;method,method&gt; &lt;exec output directory or -&gt;
+ * QUIT
+ * </pre>
+ * Each RUN is answered with {@code STATUS <succeeded> <failed> <found>}, zero or more
+ * {@code FAIL <test>: <message>} lines, the heap usage as {@code MEM <used bytes> <max bytes>} and a closing
+ * {@code END} line. Test output goes to stderr.
+ * <p>
+ * RUNEACH runs the methods one after the other as separate coverage sessions: the agent is reset before each
+ * method and its execution data is written to {@code <index>.exec} in the output directory, so the coverage of
+ * every test is known from one request. It is answered like RUN, with the totals of all sessions and one
+ * {@code SESSION <method> <succeeded> <failed> <found>} line per method before the {@code MEM} line.
+ */
+public final class TestWorkerMain {
+
+    private TestWorkerMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Keep stdout for the protocol; anything the tests print goes to stderr.
+        PrintStream protocol = new PrintStream(new FileOutputStream(java.io.FileDescriptor.out), true, "UTF-8");
+        System.setOut(System.err);
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        protocol.println("READY");
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.equals("QUIT")) {
+                break;
+            }
+            String[] parts = line.split("\t", -1);
+            if (parts.length < 5 || !(parts[0].equals("RUN") || parts[0].equals("RUNEACH"))) {
+                protocol.println("STATUS 0 0 0");
+                protocol.println("FAIL worker: malformed request");
+                protocol.println("END");
+                continue;
+            }
+            try {
+                if (parts[0].equals("RUNEACH")) {
+                    runEach(protocol, parts[1], parts[2], parts[3], parts[4]);
+                } else {
+                    run(protocol, parts[1], parts[2], parts[3], parts[4]);
+                }
+            } catch (Throwable t) {
+                protocol.println("STATUS 0 0 0");
+                protocol.println("FAIL worker: " + oneLine(String.valueOf(t)));
+                protocol.println("END");
+            }
+            System.err.flush();
+        }
+    }
+
+    private static void run(PrintStream protocol, String classDirs, String testClass, String methods, String execFile)
+            throws Exception {
+        ClassLoader previous = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader loader = testClassLoader(classDirs)) {
+            Thread.currentThread().setContextClassLoader(loader);
+            Object agent = jacocoAgent();
+            if (agent != null) {
+                agent.getClass().getMethod("reset").invoke(agent);
+            }
+
+            String[] methodNames = methods.isEmpty() ? new String[0] : methods.split(",");
+            Object summary = launch(testClass, methodNames);
+
+            if (agent != null && !execFile.equals("-")) {
+                dumpCoverage(agent, execFile);
+            }
+
+            protocol.println("STATUS " + count(summary, "getTestsSucceededCount") + " "
+                    + count(summary, "getTestsFailedCount") + " " + count(summary, "getTestsFoundCount"));
+            printFailures(protocol, summary);
+            printMemory(protocol);
+            protocol.println("END");
+        } finally {
+            Thread.currentThread().setContextClassLoader(previous);
+        }
+    }
+
+    private static void runEach(PrintStream protocol, String classDirs, String testClass, String methods,
+                                String execDir) throws Exception {
+        ClassLoader previous = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader loader = testClassLoader(classDirs)) {
+            Thread.currentThread().setContextClassLoader(loader);
+            Object agent = jacocoAgent();
+            String[] methodNames = methods.isEmpty() ? new String[0] : methods.split(",");
+            Object[] summaries = new Object[methodNames.length];
+            long succeeded = 0;
+            long failed = 0;
+            long found = 0;
+            for (int i = 0; i < methodNames.length; i++) {
+                if (agent != null) {
+                    agent.getClass().getMethod("reset").invoke(agent);
+                }
+                summaries[i] = launch(testClass, new String[]{methodNames[i]});
+                if (agent != null && !execDir.equals("-")) {
+                    dumpCoverage(agent, new File(execDir, i + ".exec").getPath());
+                }
+                succeeded += count(summaries[i], "getTestsSucceededCount");
+                failed += count(summaries[i], "getTestsFailedCount");
+                found += count(summaries[i], "getTestsFoundCount");
+            }
+
+            protocol.println("STATUS " + succeeded + " " + failed + " " + found);
+            for (Object summary : summaries) {
+                printFailures(protocol, summary);
+            }
+            for (int i = 0; i < methodNames.length; i++) {
+                protocol.println("SESSION " + methodNames[i] + " " + count(summaries[i], "getTestsSucceededCount")
+                        + " " + count(summaries[i], "getTestsFailedCount") + " "
+                        + count(summaries[i], "getTestsFoundCount"));
+            }
+            printMemory(protocol);
+            protocol.println("END");
+        } finally {
+            Thread.currentThread().setContextClassLoader(previous);
+        }
+    }
+
+    private static URLClassLoader testClassLoader(String classDirs) throws Exception {
+        String[] dirs = classDirs.split(File.pathSeparator);
+        URL[] urls = new URL[dirs.length];
+        for (int i = 0; i < dirs.length; i++) {
+            urls[i] = new File(dirs[i]).toURI().toURL();
+        }
+        return new URLClassLoader(urls, TestWorkerMain.class.getClassLoader());
+    }
+
+    /**
+     * Runs the given methods of a test class, or the whole class if none are given, and returns the
+     * launcher's {@code TestExecutionSummary}.
+     */
+    private static Object launch(String testClass, String[] methodNames) throws Exception {
+        // DiscoverySelectors.selectMethod(className, methodName) for each requested method.
+        Class<?> selectors = Class.forName("org.junit.platform.engine.discovery.DiscoverySelectors");
+        Class<?> selectorType = Class.forName("org.junit.platform.engine.DiscoverySelector");
+        Object selectorArray;
+        if (methodNames.length == 0) {
+            selectorArray = Array.newInstance(selectorType, 1);
+            Array.set(selectorArray, 0, selectors.getMethod("selectClass", String.class).invoke(null, testClass));
+        } else {
+            selectorArray = Array.newInstance(selectorType, methodNames.length);
+            Method selectMethod = selectors.getMethod("selectMethod", String.class, String.class);
+            for (int i = 0; i < methodNames.length; i++) {
+                Array.set(selectorArray, i, selectMethod.invoke(null, testClass, methodNames[i]));
+            }
+        }
+
+        Class<?> builderType = Class.forName("org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder");
+        Object builder = builderType.getMethod("request").invoke(null);
+        builder = builderType.getMethod("selectors", selectorArray.getClass()).invoke(builder, selectorArray);
+        Object request = builderType.getMethod("build").invoke(builder);
+
+        Object launcher = Class.forName("org.junit.platform.launcher.core.LauncherFactory")
+                .getMethod("create").invoke(null);
+        Class<?> listenerType = Class.forName("org.junit.platform.launcher.TestExecutionListener");
+        Object listener = Class.forName("org.junit.platform.launcher.listeners.SummaryGeneratingListener")
+                .getConstructor().newInstance();
+        Object listeners = Array.newInstance(listenerType, 1);
+        Array.set(listeners, 0, listener);
+        Class<?> requestType = Class.forName("org.junit.platform.launcher.LauncherDiscoveryRequest");
+        launcher.getClass().getMethod("execute", requestType, listeners.getClass()).invoke(launcher, request, listeners);
+
+        return listener.getClass().getMethod("getSummary").invoke(listener);
+    }
+
+    private static long count(Object summary, String getter) throws Exception {
+        return (Long) summary.getClass().getMethod(getter).invoke(summary);
+    }
+
+    private static void dumpCoverage(Object agent, String execFile) throws Exception {
+        byte[] data = (byte[]) agent.getClass().getMethod("getExecutionData", boolean.class).invoke(agent, true);
+        try (OutputStream out = new FileOutputStream(execFile)) {
+            out.write(data);
+        }
+    }
+
+    private static void printFailures(PrintStream protocol, Object summary) throws Exception {
+        for (Object failure : (List<?>) summary.getClass().getMethod("getFailures").invoke(summary)) {
+            Object identifier = failure.getClass().getMethod("getTestIdentifier").invoke(failure);
+            Object name = identifier.getClass().getMethod("getDisplayName").invoke(identifier);
+            Throwable exception = (Throwable) failure.getClass().getMethod("getException").invoke(failure);
+            protocol.println("FAIL " + name + ": " + oneLine(describe(exception)));
+        }
+    }
+
+    private static void printMemory(PrintStream protocol) {
+        Runtime runtime = Runtime.getRuntime();
+        protocol.println("MEM " + (runtime.totalMemory() - runtime.freeMemory()) + " " + runtime.maxMemory());
+    }
+
+    /**
+     * Returns the JaCoCo agent runtime ({@code org.jacoco.agent.rt.RT.getAgent()}), or null if no agent is attached.
+     */
+    private static Object jacocoAgent() {
+        try {
+            return Class.forName("org.jacoco.agent.rt.RT").getMethod("getAgent").invoke(null);
+        } catch (Exception | LinkageError e) {
+            return null;
+        }
+    }
+
+    private static String describe(Throwable exception) {
+        StringBuilder text = new StringBuilder(String.valueOf(exception));
+        StackTraceElement[] trace = exception.getStackTrace();
+        for (int i = 0; i < Math.min(trace.length, 8); i++) {
+            text.append(" | at ").append(trace[i]);
+        }
+        return text.toString();
+    }
+
+    private static String oneLine(String text) {
+        return text.replace("\r", "").replace("\n", " | ").replace("\t", " ");
+    }
+}